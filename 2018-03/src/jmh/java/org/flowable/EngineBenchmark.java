@@ -0,0 +1,113 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Recorder;
+import org.flowable.runnable.AllSequentialServiceTasks;
+import org.flowable.runnable.BenchmarkRunnable;
+import org.flowable.runnable.ManyVariablesRunnable;
+import org.flowable.runnable.StartToEndRunnable;
+import org.flowable.runnable.SubprocessesRunnable;
+import org.flowable.runnable.TerminateUserTasksRunnable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs the benchmark scenarios as JMH benchmarks against an in-memory H2 database,
+ * using the same engine configuration as the regular benchmark (org.flowable.Benchmark).
+ *
+ * Build with 'mvn clean package -Pjmh' and run with 'java -jar target/flowable-benchmark-jmh.jar',
+ * e.g. '-bm sample -t 4 -p historyLevel=none' to change the mode, the number of threads or the engine settings.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 10, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 2, jvmArgs = { "-Xms1024m", "-Xmx1024m" })
+@State(Scope.Benchmark)
+public class EngineBenchmark {
+
+    @Param({ "audit" })
+    public String historyLevel;
+
+    @Param({ "true" })
+    public String treeFetch;
+
+    protected Recorder recorder = new Recorder(Output.HIGHEST_TRACKABLE_LATENCY, Output.SIGNIFICANT_DIGITS);
+
+    @Setup(Level.Trial)
+    public void createProcessEngine() {
+        Properties properties = new Properties();
+        properties.put("jdbc-url", "jdbc:h2:mem:flowable-jmh;DB_CLOSE_DELAY=-1");
+        properties.put("jdbc-driver", "org.h2.Driver");
+        properties.put("jdbc-user", "sa");
+        properties.put("jdbc-password", "");
+        properties.put("history-level", historyLevel);
+        properties.put("tree-fetch", treeFetch);
+        org.flowable.Benchmark.properties = properties;
+
+        org.flowable.Benchmark.createProcessEngine();
+        org.flowable.Benchmark.deployProcesses();
+    }
+
+    @TearDown(Level.Trial)
+    public void closeProcessEngine() {
+        org.flowable.Benchmark.closeProcessEngine();
+    }
+
+    @Benchmark
+    public long startToEnd() {
+        return run(new StartToEndRunnable());
+    }
+
+    @Benchmark
+    public long allSequentialServiceTasks() {
+        return run(new AllSequentialServiceTasks());
+    }
+
+    @Benchmark
+    public long parallelSubprocesses() {
+        return run(new SubprocessesRunnable());
+    }
+
+    @Benchmark
+    public long manyVariables() {
+        return run(new ManyVariablesRunnable());
+    }
+
+    @Benchmark
+    public long terminateUserTasks() {
+        return run(new TerminateUserTasksRunnable());
+    }
+
+    // JMH measures the time itself, the end time is returned so JMH consumes it
+    protected long run(BenchmarkRunnable benchmarkRunnable) {
+        return benchmarkRunnable.run(recorder, System.nanoTime());
+    }
+
+}
@@ -0,0 +1,98 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.flowable.engine.impl.cfg.ProcessEngineConfigurationImpl;
+
+/**
+ * Async executor configuration for the processes with async continuations. The properties 'async-executor-pool-size', 
+ * 'async-executor-page-size' (number of jobs acquired per query) and 'async-executor-acquire-wait-time' (ms between acquisitions 
+ * when no jobs are due) can be comma separated lists, every combination is run as a separate row in the output.
+ */
+public class AsyncExecutorSettings {
+
+    protected int poolSize;
+    protected int pageSize;
+    protected int acquireWaitTimeInMs;
+
+    public AsyncExecutorSettings(int poolSize, int pageSize, int acquireWaitTimeInMs) {
+        this.poolSize = poolSize;
+        this.pageSize = pageSize;
+        this.acquireWaitTimeInMs = acquireWaitTimeInMs;
+    }
+
+    public static List<AsyncExecutorSettings> getSweep() {
+        List<AsyncExecutorSettings> sweep = new ArrayList<>();
+        for (Integer poolSize : getValues("async-executor-pool-size", "10")) {
+            for (Integer pageSize : getValues("async-executor-page-size", "1")) {
+                for (Integer acquireWaitTime : getValues("async-executor-acquire-wait-time", "10000")) {
+                    sweep.add(new AsyncExecutorSettings(poolSize, pageSize, acquireWaitTime));
+                }
+            }
+        }
+        return sweep;
+    }
+
+    protected static List<Integer> getValues(String property, String defaultValue) {
+        List<Integer> values = new ArrayList<>();
+        for (String value : Benchmark.properties.getProperty(property, defaultValue).split(",")) {
+            values.add(Integer.valueOf(value.trim()));
+        }
+        return values;
+    }
+
+    public void apply(ProcessEngineConfigurationImpl processEngineConfiguration) {
+        processEngineConfiguration.setAsyncExecutorActivate(true);
+        processEngineConfiguration.setAsyncExecutorCorePoolSize(poolSize);
+        processEngineConfiguration.setAsyncExecutorMaxPoolSize(poolSize);
+        processEngineConfiguration.setAsyncExecutorThreadPoolQueueSize(Math.max(100, 2 * pageSize));
+        processEngineConfiguration.setAsyncExecutorMaxAsyncJobsDuePerAcquisition(pageSize);
+        processEngineConfiguration.setAsyncExecutorDefaultAsyncJobAcquireWaitTime(acquireWaitTimeInMs);
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getAcquireWaitTimeInMs() {
+        return acquireWaitTimeInMs;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof AsyncExecutorSettings)) {
+            return false;
+        }
+        AsyncExecutorSettings otherSettings = (AsyncExecutorSettings) other;
+        return poolSize == otherSettings.poolSize && pageSize == otherSettings.pageSize && acquireWaitTimeInMs == otherSettings.acquireWaitTimeInMs;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * poolSize + pageSize) + acquireWaitTimeInMs;
+    }
+
+    @Override
+    public String toString() {
+        return "pool=" + poolSize + ";page=" + pageSize + ";wait=" + acquireWaitTimeInMs + "ms"; // no commas, it ends up in csv files and histogram tags
+    }
+
+}
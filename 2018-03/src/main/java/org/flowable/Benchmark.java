@@ -16,31 +16,41 @@ package org.flowable;
 import java.io.FileInputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import javax.sql.DataSource;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.commons.math3.util.Precision;
+import org.flowable.BenchmarkExecutors.BoundedExecutorService;
+import org.flowable.command.CommandMetrics;
 import org.flowable.engine.HistoryService;
 import org.flowable.engine.ManagementService;
 import org.flowable.engine.ProcessEngine;
 import org.flowable.engine.RepositoryService;
 import org.flowable.engine.RuntimeService;
 import org.flowable.engine.TaskService;
+import org.flowable.engine.common.impl.interceptor.CommandInterceptor;
 import org.flowable.engine.common.impl.history.HistoryLevel;
 import org.flowable.engine.impl.cfg.ProcessEngineConfigurationImpl;
 import org.flowable.engine.impl.cfg.StandaloneProcessEngineConfiguration;
-import org.flowable.runnable.AllSequentialServiceTasks;
+import org.flowable.engine.repository.DeploymentBuilder;
+import org.flowable.jdbc.InstrumentedDataSource;
+import org.flowable.jdbc.JdbcMetrics;
+import org.flowable.jdbc.PoolMetrics;
 import org.flowable.runnable.BenchmarkRunnable;
-import org.flowable.runnable.ManyVariablesRunnable;
-import org.flowable.runnable.StartToEndRunnable;
-import org.flowable.runnable.SubprocessesRunnable;
-import org.flowable.runnable.TerminateUserTasksRunnable;
+import org.flowable.scenario.Scenario;
+import org.flowable.scenario.Scenarios;
 
 import com.zaxxer.hikari.HikariDataSource;
 
@@ -55,6 +65,21 @@ public class Benchmark {
     public static ManagementService managementService;
     public static HistoryService historyService;
     
+    public static AsyncExecutorSettings asyncExecutorSettings;
+    protected static AsyncExecutorSettings processEngineAsyncExecutorSettings;
+    
+    public static int poolSize = 50;
+    protected static int processEnginePoolSize;
+    public static long dataSize;
+    protected static long populatedDataSize; // the data size of the rows in the database of the current engine
+    protected static Integer processEngineDefinitionCacheLimit;
+    public static MeteredProcessDefinitionCache definitionCache;
+    
+    public static JdbcMetrics jdbcMetrics;
+    public static CommandMetrics commandMetrics;
+    public static PoolMetrics poolMetrics;
+    public static ResourceMetrics resourceMetrics;
+    
     public static void main(String[] args) throws Exception {
         
         properties = new Properties();
@@ -65,81 +90,522 @@ public class Benchmark {
         int nrOfIterations = Integer.valueOf(properties.getProperty("iterations"));
         String outputName = properties.getProperty("outputname");
         
-        List<String> processes = Arrays.asList("startToEnd", "allSequentialServiceTasks", "parallelSubprocesses", "manyVariables", "terminateUserTasks");
+        List<String> processes = getProcesses();
+        if (properties.getProperty("load-mode", "closed").equalsIgnoreCase("mixed")) {
+            processes = new ArrayList<>(MixedWorkloadBenchmark.getWeights().keySet()); // warmed up one by one
+        }
+        ConfigurationMatrix configurationMatrix = new ConfigurationMatrix(properties);
 
-        System.out.println("Running iterations for warming up JVM");
-        executeBenchmark(true, minNrOfThreads, maxNrOfThreads, 1000, null, processes); // warming up with 1000 iterations
+        if (configurationMatrix.isMatrix()) {
+            System.out.println("Running " + configurationMatrix.getConfigurations().size() + " configurations, baseline is " 
+                    + configurationMatrix.getConfigurationNames().get(configurationMatrix.getBaselineIndex()));
+        }
+
+        poolSize = getPoolSizes().get(0);
+        if (properties.getProperty("cluster-nodes") != null) {
+            if (configurationMatrix.isMatrix()) {
+                throw new RuntimeException("Configuration matrices are not supported in cluster mode");
+            }
+            ClusterBenchmark.execute(outputName, processes);
+            System.out.println("All done.");
+            return;
+        }
+        
+        properties = configurationMatrix.getConfigurations().get(0).getProperties();
+        String warmup = properties.getProperty("warmup", "auto");
+        if (warmup.equalsIgnoreCase("auto")) {
+            System.out.println("Warming up JVM until the throughput is stable");
+            executeWarmup(maxNrOfThreads, processes);
+        } else {
+            System.out.println("Running iterations for warming up JVM");
+            executeBenchmark(true, minNrOfThreads, maxNrOfThreads, Integer.valueOf(warmup), null, processes);
+        }
         System.out.println("JVM warmup done");
-        executeBenchmark(false, minNrOfThreads, maxNrOfThreads, nrOfIterations, outputName, processes);
+        
+        List<Output> outputs = new ArrayList<>();
+        for (ConfigurationMatrix.Configuration configuration : configurationMatrix.getConfigurations()) {
+            properties = configuration.getProperties();
+            poolSize = getPoolSizes().get(0);
+            String configurationOutputName = outputName;
+            if (configurationMatrix.isMatrix()) {
+                System.out.println();
+                System.out.println("Configuration " + configuration.getName());
+                configurationOutputName = configuration.getOutputName(outputName);
+                if (processEngine != null) {
+                    closeProcessEngine(); // the engine of the previous configuration can't be reused
+                }
+            }
+            
+            String loadMode = properties.getProperty("load-mode", "closed");
+            if (loadMode.equalsIgnoreCase("open")) {
+                outputs.add(OpenLoopBenchmark.execute(configurationOutputName, processes));
+            } else if (loadMode.equalsIgnoreCase("soak")) {
+                outputs.add(SoakBenchmark.execute(configurationOutputName, processes, maxNrOfThreads));
+            } else if (loadMode.equalsIgnoreCase("mixed")) {
+                outputs.add(MixedWorkloadBenchmark.execute(configurationOutputName, minNrOfThreads, maxNrOfThreads, nrOfIterations));
+            } else {
+                outputs.add(executeBenchmark(false, minNrOfThreads, maxNrOfThreads, nrOfIterations, configurationOutputName, processes));
+            }
+        }
+        
+        if (configurationMatrix.isMatrix()) {
+            System.out.println("Writing combined output");
+            Output.writeCombinedOutput(outputName, configurationMatrix.getConfigurationNames(), outputs, configurationMatrix.getBaselineIndex());
+        }
+        
+        if (properties.getProperty("compare-baseline") != null) {
+            boolean regression = false;
+            for (Output output : outputs) {
+                regression |= ResultComparison.compareToBaseline(properties, output);
+            }
+            if (regression) {
+                System.out.println("All done, with regressions.");
+                System.exit(1);
+            }
+        }
         System.out.println("All done.");
     }
 
-    protected static void executeBenchmark(boolean warmup, int minNrOfThreads, int maxNrOfThreads, int nrOfIterations, String outputName, List<String> processes) throws Exception {
-        Output output = new Output(outputName, maxNrOfThreads, nrOfIterations);
+    protected static Output executeBenchmark(boolean warmup, int minNrOfThreads, int maxNrOfThreads, int nrOfIterations, String outputName, List<String> processes) throws Exception {
+        Output output = new Output(outputName, maxNrOfThreads);
+        List<String> executors = BenchmarkExecutors.getExecutors();
+        
+        List<Integer> poolSizes = getPoolSizes();
+        List<Long> dataSizes = warmup ? Collections.singletonList(0L) : getDataSizes();
+        Map<String, Set<Integer>> settingsNameThreads = new LinkedHashMap<>(); // for the data size scaling
+        
+        // The data size is the outer loop: the populated rows are kept between the cells with engine-reset=truncate
+        for (Long size : dataSizes) {
+            dataSize = size;
         
-        for (int nrOfThreads = minNrOfThreads; nrOfThreads <= maxNrOfThreads; nrOfThreads++) {
+            for (String executor : executors) {
             
-            for (int processIndex = 0; processIndex < processes.size(); processIndex++) {
-                
-                String process = processes.get(processIndex);
-                
-                System.out.println();
-                System.out.println("Setting up the process engine for process " + process);
-                createProcessEngine();
-                deployProcesses();
-                
-                System.out.println("Creating executor service for process " + process + " with " + nrOfThreads + " threads");
-                ThreadFactory threadFactory = Executors.defaultThreadFactory();
-                ExecutorService executorService = new ThreadPoolExecutor(nrOfThreads, nrOfThreads, 10L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
-                
-                System.out.println("Creating runnables for process " + process);
-                ArrayList<BenchmarkRunnable> runnables = new ArrayList<BenchmarkRunnable>(nrOfIterations);
-                for (int runnableIndex = 0; runnableIndex < nrOfIterations; runnableIndex++) {
-                    runnables.add(createRunnable(process));
+                for (int nrOfThreads = minNrOfThreads; nrOfThreads <= maxNrOfThreads; nrOfThreads++) {
+                    
+                    for (int processIndex = 0; processIndex < processes.size(); processIndex++) {
+                        
+                        String process = processes.get(processIndex);
+                        Scenario scenario = getScenario(process);
+                        
+                        List<AsyncExecutorSettings> asyncExecutorSettingsSweep = getAsyncExecutorSettingsSweep(process);
+                        for (AsyncExecutorSettings settings : asyncExecutorSettingsSweep) {
+                            asyncExecutorSettings = settings;
+                            for (Object variant : scenario.getVariants()) {
+                                String settingsName = getOutputName(process, executor, executors) + scenario.getVariantName(variant);
+                                if (asyncExecutorSettingsSweep.size() > 1) {
+                                    settingsName += "[" + settings + "]";
+                                }
+                                if (!settingsNameThreads.containsKey(settingsName)) {
+                                    settingsNameThreads.put(settingsName, new LinkedHashSet<Integer>());
+                                }
+                                settingsNameThreads.get(settingsName).add(nrOfThreads);
+                                
+                                String variantName = getDataSizeOutputName(settingsName, size, dataSizes);
+                                for (Integer connections : poolSizes) {
+                                    poolSize = connections;
+                                    executeCell(output, process, variant, getPoolSizeOutputName(variantName, connections, poolSizes), executor, nrOfThreads, nrOfIterations);
+                                }
+                                if (poolSizes.size() > 1) {
+                                    addBestPoolSize(output, variantName, poolSizes, nrOfThreads);
+                                }
+                            }
+                        }
+                        
+                    }
+                    
                 }
                 
-                System.out.println("Submitting runnables for process " + process);
-                long startTime = System.currentTimeMillis();
-                for (int runnableIndex = 0; runnableIndex < runnables.size(); runnableIndex++) {
-                    executorService.submit(runnables.get(runnableIndex));
+            }
+        }
+        dataSize = 0;
+        
+        if (dataSizes.size() > 1) {
+            for (Map.Entry<String, Set<Integer>> entry : settingsNameThreads.entrySet()) {
+                for (Integer nrOfThreads : entry.getValue()) {
+                    for (Integer connections : poolSizes) {
+                        addDataSizeScaling(output, entry.getKey(), dataSizes, connections, poolSizes, nrOfThreads);
+                    }
                 }
-                
-                executorService.shutdown();
-                executorService.awaitTermination(60, TimeUnit.MINUTES);
-                long endTime = System.currentTimeMillis();
-                
-                long totalTime = endTime - startTime;
-                
-                System.out.println("Calculating metrics ...");
-                output.addResults(process, nrOfThreads, nrOfIterations, totalTime, runnables);
-                System.out.println(nrOfIterations + " iterations for process " + process + " with " + nrOfThreads + " threads completed");
-                System.out.println("Took " + totalTime + " ms");
-                
             }
-            
         }
         
         if (!warmup) {
             System.out.println("Done. Writing output.");
             output.writeOutput();
         }
+        return output;
+    }
+    
+    /**
+     * Executes one cell of the benchmark: the given number of iterations of one variant of a process with the given number of threads, on an empty database.
+     */
+    protected static void executeCell(Output output, String process, Object variant, String outputProcessName, String executor, int nrOfThreads, int nrOfIterations) throws Exception {
+        System.out.println();
+        System.out.println("Setting up the process engine for process " + process);
+        Scenario scenario = getScenario(process);
+        prepareProcessEngine(scenario.getDefinitionCacheLimit(variant));
+        String column = String.valueOf(nrOfThreads);
+        
+        System.out.println("Creating " + executor + " executor service for process " + process + " with " + nrOfThreads + " threads");
+        BoundedExecutorService executorService = BenchmarkExecutors.createExecutorService(executor, nrOfThreads);
+        
+        // A single runnable for all iterations, which records the timings in fixed-size histograms per time window
+        CellExecution cellExecution = new CellExecution(output, outputProcessName, column, executorService);
+        BenchmarkRunnable benchmarkRunnable = scenario.createRunnable(variant);
+        benchmarkRunnable.prepare();
+        RecordedIteration iteration = new RecordedIteration(benchmarkRunnable, cellExecution.getTimeSeries().getRecorder());
+        
+        System.out.println("Submitting iterations for process " + process);
+        cellExecution.execute(iteration, nrOfIterations);
+        long totalTime = cellExecution.getDurationInMs();
+        
+        System.out.println("Calculating metrics ...");
+        cellExecution.getTimeSeries().addResults(output, outputProcessName, column, nrOfIterations, totalTime);
+        benchmarkRunnable.addResults(output, outputProcessName, column, nrOfIterations);
+        cellExecution.addResults(nrOfIterations, totalTime);
+        System.out.println(nrOfIterations + " iterations for process " + process + " with " + nrOfThreads + " threads completed");
+        System.out.println("Took " + totalTime + " ms");
+    }
+    
+    /**
+     * Runs every process with the maximum number of threads until the throughput is stable 
+     * (see {@link TimeSeries}) or 'warmup-max-duration' seconds (300 by default) have passed.
+     */
+    protected static void executeWarmup(int nrOfThreads, List<String> processes) throws Exception {
+        long maxWarmupDurationInMs = TimeUnit.SECONDS.toMillis(Long.valueOf(properties.getProperty("warmup-max-duration", "300")));
+        String executor = BenchmarkExecutors.getExecutors().get(0);
+        
+        for (String process : processes) {
+            asyncExecutorSettings = getAsyncExecutorSettingsSweep(process).get(0);
+            poolSize = getPoolSizes().get(0);
+            Scenario scenario = getScenario(process);
+            Object variant = scenario.getVariants().get(0);
+            prepareProcessEngine(scenario.getDefinitionCacheLimit(variant));
+            ExecutorService executorService = BenchmarkExecutors.createExecutorService(executor, nrOfThreads);
+            TimeSeries timeSeries = TimeSeries.create();
+            BenchmarkRunnable benchmarkRunnable = scenario.createRunnable(variant);
+            benchmarkRunnable.prepare();
+            RecordedIteration iteration = new RecordedIteration(benchmarkRunnable, timeSeries.getRecorder());
+            
+            long startTime = System.currentTimeMillis();
+            timeSeries.start();
+            long nrOfIterations = 0;
+            while (!timeSeries.isSteady() && System.currentTimeMillis() - startTime < maxWarmupDurationInMs) {
+                executorService.execute(iteration); // blocks while all threads are busy, so this doesn't spin
+                nrOfIterations++;
+            }
+            
+            executorService.shutdown();
+            executorService.awaitTermination(60, TimeUnit.MINUTES);
+            timeSeries.stop();
+            System.out.println("Warmup of process " + process + ": " + nrOfIterations + " iterations in " + (System.currentTimeMillis() - startTime) + " ms" 
+                    + (timeSeries.isSteady() ? "" : ", throughput NOT stable"));
+        }
+    }
+    
+    /**
+     * A property of the configuration, or the default when there's no configuration (e.g. in the unit tests).
+     */
+    public static String getProperty(String name, String defaultValue) {
+        return properties != null ? properties.getProperty(name, defaultValue) : defaultValue;
+    }
+    
+    /**
+     * The processes to run, from the 'processes' property (all processes without async continuations by default).
+     */
+    public static List<String> getProcesses() {
+        List<String> processes = new ArrayList<>();
+        for (String process : properties.getProperty("processes", "startToEnd,allSequentialServiceTasks,parallelSubprocesses,manyVariables,terminateUserTasks").split(",")) {
+            processes.add(process.trim());
+        }
+        return processes;
+    }
+    
+    /**
+     * The async executor settings to run the process with, a list with only null for processes without async continuations.
+     */
+    protected static List<AsyncExecutorSettings> getAsyncExecutorSettingsSweep(String process) {
+        if (getScenario(process).isAsync()) {
+            return AsyncExecutorSettings.getSweep();
+        }
+        return Collections.singletonList(null);
+    }
+    
+    /**
+     * The maximum sizes of the connection pool to run every process with, from the 'pool-size' property (50 by default).
+     */
+    public static List<Integer> getPoolSizes() {
+        List<Integer> poolSizes = new ArrayList<>();
+        for (String poolSize : properties.getProperty("pool-size", "50").split(",")) {
+            try {
+                poolSizes.add(Integer.valueOf(poolSize.trim()));
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("Invalid pool size : " + poolSize);
+            }
+            if (poolSizes.get(poolSizes.size() - 1) < 2) {
+                // The engine fetches new id blocks in a separate transaction, on a second connection
+                throw new RuntimeException("Invalid pool size : " + poolSize + ", the engine needs at least 2 connections");
+            }
+        }
+        return poolSizes;
+    }
+    
+    protected static String getPoolSizeOutputName(String variantName, int poolSize, List<Integer> poolSizes) {
+        if (poolSizes.size() > 1) {
+            return variantName + "[connections=" + poolSize + "]";
+        }
+        return variantName;
+    }
+    
+    /**
+     * Compares the cells of the pool size sweep for one process and number of threads, 
+     * the pool size with the highest throughput is written to '[outputname]-poolsizes.csv'.
+     */
+    protected static void addBestPoolSize(Output output, String variantName, List<Integer> poolSizes, int nrOfThreads) {
+        int columnIndex = output.getColumns().indexOf(String.valueOf(nrOfThreads));
+        int bestPoolSize = -1;
+        double bestThroughput = -1;
+        int worstPoolSize = -1;
+        double worstThroughput = Double.MAX_VALUE;
+        for (Integer size : poolSizes) {
+            Output.ProcessOutput processOutput = output.getProcessOutput(getPoolSizeOutputName(variantName, size, poolSizes));
+            if (processOutput == null) {
+                continue;
+            }
+            double throughput = processOutput.getThroughputPerSeconds()[columnIndex];
+            if (throughput > bestThroughput) {
+                bestThroughput = throughput;
+                bestPoolSize = size;
+            }
+            if (throughput < worstThroughput) {
+                worstThroughput = throughput;
+                worstPoolSize = size;
+            }
+        }
+        
+        if (bestPoolSize > 0) {
+            double connectionsPerThread = ((double) bestPoolSize) / nrOfThreads;
+            System.out.println("Best pool size for " + variantName + " with " + nrOfThreads + " threads: " + bestPoolSize 
+                    + " connections (" + Precision.round(connectionsPerThread, 2) + " per thread)");
+            output.addDetail("poolsizes", "process,threads,bestPoolSize,connectionsPerThread,throughputPerSecond,worstPoolSize,worstThroughputPerSecond",
+                    Output.csvValue(variantName) + "," + nrOfThreads + "," + bestPoolSize + "," + Precision.round(connectionsPerThread, 3) + "," 
+                    + Precision.round(bestThroughput, 2) + "," + worstPoolSize + "," + Precision.round(worstThroughput, 2));
+        }
+    }
+    
+    /**
+     * The numbers of process instances to populate the database with before every cell, from the 'data-sizes' property (none by default).
+     */
+    public static List<Long> getDataSizes() {
+        List<Long> dataSizes = new ArrayList<>();
+        for (String dataSize : properties.getProperty("data-sizes", "0").split(",")) {
+            try {
+                dataSizes.add(Long.valueOf(dataSize.trim()));
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("Invalid data size : " + dataSize);
+            }
+        }
+        return dataSizes;
+    }
+    
+    protected static String getDataSizeOutputName(String settingsName, long dataSize, List<Long> dataSizes) {
+        if (dataSizes.size() > 1 || dataSize > 0) {
+            return settingsName + "[data=" + dataSize + "]";
+        }
+        return settingsName;
+    }
+    
+    /**
+     * Compares the cells of the data size sweep for one process, number of threads and pool size to the smallest data size,
+     * written to '[outputname]-datasizes.csv'.
+     */
+    protected static void addDataSizeScaling(Output output, String settingsName, List<Long> dataSizes, int poolSize, List<Integer> poolSizes, int nrOfThreads) {
+        int columnIndex = output.getColumns().indexOf(String.valueOf(nrOfThreads));
+        Output.ProcessOutput baseline = null;
+        for (Long size : dataSizes) {
+            String variantName = getPoolSizeOutputName(getDataSizeOutputName(settingsName, size, dataSizes), poolSize, poolSizes);
+            Output.ProcessOutput processOutput = output.getProcessOutput(variantName);
+            if (processOutput == null) {
+                continue;
+            }
+            if (baseline == null) {
+                baseline = processOutput;
+            }
+            
+            double throughput = processOutput.getThroughputPerSeconds()[columnIndex];
+            double average = processOutput.getAverages()[columnIndex];
+            double baselineThroughput = baseline.getThroughputPerSeconds()[columnIndex];
+            double baselineAverage = baseline.getAverages()[columnIndex];
+            output.addDetail("datasizes", "process,threads,dataSize,throughputPerSecond,averageMs,p99Ms,relativeThroughput,relativeAverage",
+                    Output.csvValue(getPoolSizeOutputName(settingsName, poolSize, poolSizes)) + "," + nrOfThreads + "," + size + "," 
+                    + Precision.round(throughput, 2) + "," + Precision.round(average, 3) + "," 
+                    + Precision.round(processOutput.getMetric(Output.ProcessOutput.P99)[columnIndex], 3) + "," 
+                    + (baselineThroughput > 0 ? Precision.round(throughput / baselineThroughput, 3) : 0) + "," 
+                    + (baselineAverage > 0 ? Precision.round(average / baselineAverage, 3) : 0));
+        }
+    }
+    
+    /**
+     * The name of the process in the output: when sweeping over multiple executors, the executor is added so the rows can be told apart.
+     */
+    protected static String getOutputName(String process, String executor, List<String> executors) {
+        if (executors.size() > 1) {
+            return process + "[" + executor + "]";
+        }
+        return process;
+    }
+
+    /**
+     * Called right before the clock of a benchmark cell starts, resets the optional metrics collectors.
+     */
+    protected static void startCellMetrics() {
+        if (jdbcMetrics != null) {
+            jdbcMetrics.reset();
+        }
+        if (commandMetrics != null) {
+            commandMetrics.reset();
+        }
+        if (poolMetrics != null) {
+            poolMetrics.start();
+        }
+        if (resourceMetrics != null) {
+            resourceMetrics.start();
+        }
+    }
+    
+    /**
+     * Called when all iterations of a cell are done, while the threads that executed them are still alive.
+     */
+    protected static void stopCellMetrics() {
+        if (resourceMetrics != null) {
+            resourceMetrics.stop();
+        }
+    }
+    
+    /**
+     * Called when a benchmark cell is done, adds the metrics of the optional collectors as extra rows to the output.
+     */
+    protected static void addCellMetrics(Output output, String process, String column, long nrOfIterations, Histogram histogram) {
+        if (jdbcMetrics != null) {
+            jdbcMetrics.addResults(output, process, column, nrOfIterations, histogram.getMean() * histogram.getTotalCount());
+        }
+        if (commandMetrics != null) {
+            commandMetrics.addResults(output, process, column, nrOfIterations);
+        }
+        if (poolMetrics != null) {
+            poolMetrics.addResults(output, process, column, nrOfIterations);
+        }
+        if (resourceMetrics != null) {
+            resourceMetrics.addResults(output, process, column, nrOfIterations);
+        }
+    }
+    
+    /**
+     * Work item for one iteration. The same instance is submitted for every iteration of a cell, so the harness itself
+     * allocates next to nothing per iteration and doesn't need to keep anything but the histogram.
+     */
+    protected static class RecordedIteration implements Runnable {
+        
+        protected BenchmarkRunnable benchmarkRunnable;
+        protected Recorder recorder;
+        
+        public RecordedIteration(BenchmarkRunnable benchmarkRunnable, Recorder recorder) {
+            this.benchmarkRunnable = benchmarkRunnable;
+            this.recorder = recorder;
+        }
+        
+        public void run() {
+            benchmarkRunnable.run(recorder, System.nanoTime());
+        }
+        
+    }
+
+    /**
+     * Gives the next benchmark cell an empty database: with engine-reset=drop-create (the default) a new engine is built
+     * on a freshly created schema, with engine-reset=truncate the current engine and connection pool are kept 
+     * and only the runtime and history tables are emptied. With a data size, the database is then bulk loaded (see {@link DataPopulator}):
+     * once per data size with engine-reset=truncate, the next cells only delete the rows the previous cell created.
+     * The definition cache limit is the one of the scenario variant (see {@link Scenario#getDefinitionCacheLimit}), null for the engine default.
+     */
+    protected static void prepareProcessEngine(Integer definitionCacheLimit) {
+        String engineReset = properties.getProperty("engine-reset", "drop-create");
+        boolean sameAsyncExecutorSettings = asyncExecutorSettings == null ? processEngineAsyncExecutorSettings == null : asyncExecutorSettings.equals(processEngineAsyncExecutorSettings);
+        if (processEngine != null && engineReset.equalsIgnoreCase("truncate") && sameAsyncExecutorSettings && poolSize == processEnginePoolSize
+                && Objects.equals(definitionCacheLimit, processEngineDefinitionCacheLimit)) {
+            DataPopulator dataPopulator = dataSize > 0 && dataSize == populatedDataSize ? DataPopulator.create(dataSize) : null;
+            if (dataPopulator != null) {
+                System.out.println("Deleting the rows of the previous cell, keeping the populated data");
+                DatabaseReset.deleteNonPopulatedRows(processEngine);
+            }
+            if (dataPopulator == null || !dataPopulator.isPopulated(getUninstrumentedDataSource(processEngine))) {
+                System.out.println("Truncating runtime and history tables");
+                DatabaseReset.truncateRuntimeAndHistoryTables(processEngine);
+                populatedDataSize = 0;
+            }
+        } else {
+            createProcessEngine(definitionCacheLimit);
+            deployProcesses();
+        }
+        
+        if (dataSize > 0 && dataSize != populatedDataSize) {
+            DataPopulator.create(dataSize).populate(processEngine, getUninstrumentedDataSource(processEngine));
+            populatedDataSize = dataSize;
+        }
     }
 
     protected static ProcessEngine createProcessEngine() {
+        return createProcessEngine(null);
+    }
+
+    protected static ProcessEngine createProcessEngine(Integer definitionCacheLimit) {
         
         if (processEngine != null) {
             System.out.println("Closing current process engine");
-            processEngine.close();
-            ((HikariDataSource) processEngine.getProcessEngineConfiguration().getDataSource()).close(); // just to be extra sure
-            processEngine = null;
+            closeProcessEngine();
         }
         
         System.out.println("Creating new process engine");
+        populatedDataSize = 0;
         ProcessEngineConfigurationImpl processEngineConfiguration = new StandaloneProcessEngineConfiguration();
-        processEngineConfiguration.setDataSource(createDatabsource());
-        processEngineConfiguration.setDatabaseSchemaUpdate("drop-create");
+        HikariDataSource hikariDataSource = createDatabsource();
+        processEnginePoolSize = poolSize;
+        if (Boolean.valueOf(properties.getProperty("pool-metrics"))) {
+            System.out.println("Recording connection pool metrics");
+            poolMetrics = new PoolMetrics(hikariDataSource, Long.valueOf(properties.getProperty("window-duration", "1000")));
+        } else {
+            poolMetrics = null;
+        }
+        if (Boolean.valueOf(properties.getProperty("resource-metrics", "true"))) {
+            resourceMetrics = ResourceMetrics.create();
+        } else {
+            resourceMetrics = null;
+        }
+        
+        DataSource dataSource = hikariDataSource;
+        if (Boolean.valueOf(properties.getProperty("jdbc-metrics"))) {
+            System.out.println("Instrumenting JDBC calls");
+            jdbcMetrics = new JdbcMetrics();
+            dataSource = new InstrumentedDataSource(dataSource, jdbcMetrics);
+        } else {
+            jdbcMetrics = null;
+        }
+        processEngineConfiguration.setDataSource(dataSource);
+        processEngineConfiguration.setDatabaseSchemaUpdate(properties.getProperty("database-schema-update", "drop-create"));
         processEngineConfiguration.setEnableEventDispatcher(false);
         
+        if (Boolean.valueOf(properties.getProperty("command-metrics"))) {
+            System.out.println("Timing engine commands");
+            commandMetrics = new CommandMetrics();
+            List<CommandInterceptor> preCommandInterceptors = new ArrayList<>();
+            preCommandInterceptors.add(commandMetrics.createTimingInterceptor());
+            processEngineConfiguration.setCustomPreCommandInterceptors(preCommandInterceptors);
+            List<CommandInterceptor> postCommandInterceptors = new ArrayList<>();
+            postCommandInterceptors.add(commandMetrics.createExecutionTimingInterceptor());
+            processEngineConfiguration.setCustomPostCommandInterceptors(postCommandInterceptors);
+        } else {
+            commandMetrics = null;
+        }
+        
         String historyLevel = (String) properties.get("history-level");
         System.out.println("History level = " + historyLevel);
         if (historyLevel.equalsIgnoreCase("none")) {
@@ -156,11 +622,33 @@ public class Benchmark {
             System.out.println("Running with async history enabled, grouping = " + enableGrouping + "," + "gzip = " + enableGzip + ", threshold = " + groupThreshold);
             processEngineConfiguration.setAsyncHistoryEnabled(true);
             processEngineConfiguration.setAsyncExecutorActivate(true);
+            processEngineConfiguration.setAsyncHistoryExecutorActivate(true);
             processEngineConfiguration.setAsyncHistoryJsonGroupingEnabled(enableGrouping);
             processEngineConfiguration.setAsyncHistoryJsonGzipCompressionEnabled(enableGzip);
             processEngineConfiguration.setAsyncHistoryJsonGroupingThreshold(groupThreshold);
         }
         
+        if (asyncExecutorSettings != null) {
+            System.out.println("Async executor " + asyncExecutorSettings);
+            asyncExecutorSettings.apply(processEngineConfiguration);
+        }
+        processEngineAsyncExecutorSettings = asyncExecutorSettings;
+        
+        if (definitionCacheLimit != null) {
+            System.out.println("Process definition cache limit = " + definitionCacheLimit);
+            definitionCache = new MeteredProcessDefinitionCache(definitionCacheLimit);
+            processEngineConfiguration.setProcessDefinitionCache(definitionCache);
+            List<CommandInterceptor> preCommandInterceptors = new ArrayList<>();
+            preCommandInterceptors.add(definitionCache.createInterceptor());
+            if (processEngineConfiguration.getCustomPreCommandInterceptors() != null) {
+                preCommandInterceptors.addAll(processEngineConfiguration.getCustomPreCommandInterceptors());
+            }
+            processEngineConfiguration.setCustomPreCommandInterceptors(preCommandInterceptors);
+        } else {
+            definitionCache = null;
+        }
+        processEngineDefinitionCacheLimit = definitionCacheLimit;
+        
         boolean enableTreeFetch = Boolean.valueOf(properties.getProperty("tree-fetch"));
         if (!enableTreeFetch) {
             processEngineConfiguration.getPerformanceSettings().setEnableEagerExecutionTreeFetching(false);
@@ -177,6 +665,27 @@ public class Benchmark {
         return processEngine;
     }
 
+    protected static void closeProcessEngine() {
+        if (poolMetrics != null) {
+            poolMetrics.stop();
+        }
+        processEngine.close();
+        
+        ((HikariDataSource) getUninstrumentedDataSource(processEngine)).close(); // just to be extra sure
+        processEngine = null;
+    }
+    
+    /**
+     * The connection pool of the engine, without the JDBC instrumentation.
+     */
+    protected static DataSource getUninstrumentedDataSource(ProcessEngine processEngine) {
+        DataSource dataSource = processEngine.getProcessEngineConfiguration().getDataSource();
+        if (dataSource instanceof InstrumentedDataSource) {
+            dataSource = ((InstrumentedDataSource) dataSource).getDelegate();
+        }
+        return dataSource;
+    }
+
     protected static HikariDataSource createDatabsource() {
         String jdbcUrl = properties.getProperty("jdbc-url");
         String jdbcDriver = properties.getProperty("jdbc-driver");
@@ -188,35 +697,27 @@ public class Benchmark {
         dataSource.setDriverClassName(jdbcDriver);
         dataSource.setUsername(jdbcUsername);
         dataSource.setPassword(jdbcPassword);
-        dataSource.setMaximumPoolSize(50);
+        System.out.println("Connection pool size = " + poolSize);
+        dataSource.setMaximumPoolSize(poolSize);
         return dataSource;
     }
     
+    /**
+     * Deploys the processes of all scenarios (see {@link Scenarios}) and the process of the populated data in one deployment.
+     */
     protected static void deployProcesses() {
-        repositoryService.createDeployment()
-            .addClasspathResource("allSequentialServiceTasks.bpmn20.xml")
-            .addClasspathResource("manyVariables.bpmn20.xml")
-            .addClasspathResource("parallelSubprocesses.bpmn20.xml")
-            .addClasspathResource("startToEnd.bpmn20.xml")
-            .addClasspathResource("terminateUserTasks.bpmn20.xml")
-            .deploy();
+        DeploymentBuilder deploymentBuilder = repositoryService.createDeployment().addClasspathResource("populatedUserTask.bpmn20.xml");
+        Scenarios.addResources(deploymentBuilder);
+        deploymentBuilder.deploy();
         System.out.println("Deployment done");
     }
     
-    protected static BenchmarkRunnable createRunnable(String process) {
-        if (process.equals("startToEnd")) {
-            return new StartToEndRunnable();
-        } else if (process.equals("allSequentialServiceTasks")) {
-            return new AllSequentialServiceTasks();
-        } else if (process.equals("parallelSubprocesses")) {
-            return new SubprocessesRunnable();
-        } else if (process.equals("manyVariables")) {
-            return new ManyVariablesRunnable();
-        } else if (process.equals("terminateUserTasks")) {
-            return new TerminateUserTasksRunnable();
-        } else {
+    protected static Scenario getScenario(String process) {
+        Scenario scenario = Scenarios.getScenario(process);
+        if (scenario == null) {
             throw new RuntimeException("Invalid process : " + process);
         }
+        return scenario;
     }
     
 
@@ -0,0 +1,173 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the executor service the iterations of one benchmark cell are submitted to, based on the 'executor' property:
+ *
+ * - fixed: a fixed size thread pool with an unbounded queue (the original behaviour)
+ * - forkjoin: a work-stealing ForkJoinPool with the number of threads as parallelism
+ * - virtual: a new virtual thread per iteration, with at most 'number of threads' iterations running concurrently.
+ *   Needs to run on a JDK with virtual threads (21+), the executor is looked up reflectively so the build itself doesn't require it.
+ *
+ * All of them are bounded: at most a few iterations per thread are queued at any time and the submitter blocks until
+ * there is room again, so the memory used by the harness doesn't grow with the number of iterations.
+ * The open loop must never block its scheduler, so it asks for a queue that holds all iterations of a step instead.
+ */
+public class BenchmarkExecutors {
+
+    public static final String FIXED = "fixed";
+    public static final String FORK_JOIN = "forkjoin";
+    public static final String VIRTUAL = "virtual";
+
+    // Number of iterations per thread that can be submitted before the submitter blocks, so threads never wait for work
+    protected static final int QUEUED_ITERATIONS_PER_THREAD = 2;
+
+    public static List<String> getExecutors() {
+        List<String> executors = new ArrayList<>();
+        for (String executor : Benchmark.properties.getProperty("executor", FIXED).split(",")) {
+            executors.add(executor.trim().toLowerCase());
+        }
+        return executors;
+    }
+
+    public static BoundedExecutorService createExecutorService(String executor, int nrOfThreads) {
+        if (executor.equals(FIXED)) {
+            return new BoundedExecutorService(new ThreadPoolExecutor(nrOfThreads, nrOfThreads, 10L, TimeUnit.SECONDS, 
+                    new LinkedBlockingQueue<Runnable>(), Executors.defaultThreadFactory()), nrOfThreads * QUEUED_ITERATIONS_PER_THREAD);
+        } else if (executor.equals(FORK_JOIN)) {
+            return new BoundedExecutorService(Executors.newWorkStealingPool(nrOfThreads), nrOfThreads * QUEUED_ITERATIONS_PER_THREAD);
+        } else if (executor.equals(VIRTUAL)) {
+            return new BoundedExecutorService(createVirtualThreadPerTaskExecutor(), nrOfThreads);
+        } else {
+            throw new RuntimeException("Invalid executor : " + executor);
+        }
+    }
+
+    /**
+     * Like {@link #createExecutorService(String, int)}, but with room for the given number of queued iterations on top of the running ones,
+     * so that submitting up to that many iterations never blocks. The virtual executor then runs on a fixed pool of virtual threads,
+     * otherwise every queued iteration would get its own running thread.
+     */
+    public static BoundedExecutorService createExecutorService(String executor, int nrOfThreads, long maxQueuedIterations) {
+        int maxConcurrentTasks = (int) Math.min(nrOfThreads + maxQueuedIterations, Integer.MAX_VALUE);
+        if (executor.equals(FIXED)) {
+            return new BoundedExecutorService(new ThreadPoolExecutor(nrOfThreads, nrOfThreads, 10L, TimeUnit.SECONDS, 
+                    new LinkedBlockingQueue<Runnable>(), Executors.defaultThreadFactory()), maxConcurrentTasks);
+        } else if (executor.equals(FORK_JOIN)) {
+            return new BoundedExecutorService(Executors.newWorkStealingPool(nrOfThreads), maxConcurrentTasks);
+        } else if (executor.equals(VIRTUAL)) {
+            return new BoundedExecutorService(Executors.newFixedThreadPool(nrOfThreads, createVirtualThreadFactory()), maxConcurrentTasks);
+        } else {
+            throw new RuntimeException("Invalid executor : " + executor);
+        }
+    }
+
+    protected static ThreadFactory createVirtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException("Virtual threads are not supported by this JVM (" + System.getProperty("java.version") + "), use Java 21 or later", e);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Could not create virtual thread factory", e);
+        }
+    }
+
+    protected static ExecutorService createVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException("Virtual threads are not supported by this JVM (" + System.getProperty("java.version") + "), use Java 21 or later", e);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Could not create virtual thread executor", e);
+        }
+    }
+
+    /**
+     * Limits the number of tasks queued or running on the delegate, blocking the submitter when all permits are taken.
+     * Without this, a thread-per-task executor would start all iterations at once and the thread count sweep would be meaningless.
+     */
+    public static class BoundedExecutorService extends AbstractExecutorService {
+
+        protected ExecutorService delegate;
+        protected int maxConcurrentTasks;
+        protected Semaphore permits;
+
+        public BoundedExecutorService(ExecutorService delegate, int maxConcurrentTasks) {
+            this.delegate = delegate;
+            this.maxConcurrentTasks = maxConcurrentTasks;
+            this.permits = new Semaphore(maxConcurrentTasks);
+        }
+
+        public void execute(final Runnable command) {
+            permits.acquireUninterruptibly();
+            try {
+                delegate.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            command.run();
+                        } finally {
+                            permits.release();
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        /**
+         * Blocks until all submitted tasks are done, without shutting down: the threads of the delegate are still alive afterwards.
+         */
+        public void awaitIdle() {
+            permits.acquireUninterruptibly(maxConcurrentTasks);
+            permits.release(maxConcurrentTasks);
+        }
+
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+
+    }
+
+}
@@ -0,0 +1,118 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import java.util.concurrent.TimeUnit;
+
+import org.flowable.BenchmarkExecutors.BoundedExecutorService;
+
+/**
+ * The lifecycle of one measured cell, the same for the closed loop, open loop, mixed workload and soak modes:
+ * the cell metrics, the time series, the history job monitor and the flight recording are started before the first
+ * iteration is submitted and stopped when the last one has completed. The latencies are added to the output by the mode itself.
+ */
+public class CellExecution {
+
+    protected Output output;
+    protected String outputProcessName;
+    protected String column;
+    protected BoundedExecutorService executorService;
+    protected TimeSeries timeSeries;
+    protected HistoryMonitor historyMonitor;
+    protected FlightRecording flightRecording;
+    protected long startTime;
+    protected long endTime;
+
+    public CellExecution(Output output, String outputProcessName, String column, BoundedExecutorService executorService) {
+        this(output, outputProcessName, column, executorService, TimeSeries.create());
+    }
+
+    public CellExecution(Output output, String outputProcessName, String column, BoundedExecutorService executorService, TimeSeries timeSeries) {
+        this.output = output;
+        this.outputProcessName = outputProcessName;
+        this.column = column;
+        this.executorService = executorService;
+        this.timeSeries = timeSeries;
+        this.historyMonitor = HistoryMonitor.create(Benchmark.processEngine);
+        this.flightRecording = FlightRecording.create(output, outputProcessName, column);
+    }
+
+    /**
+     * Submits the iteration the given number of times and returns when all iterations have completed and the executor service is shut down.
+     */
+    public void execute(Runnable iteration, long nrOfIterations) throws InterruptedException {
+        Benchmark.startCellMetrics();
+        if (flightRecording != null) {
+            flightRecording.start();
+        }
+        startTime = System.nanoTime();
+        timeSeries.start();
+        if (historyMonitor != null) {
+            historyMonitor.start();
+        }
+        submitIterations(iteration, nrOfIterations);
+
+        executorService.awaitIdle();
+        Benchmark.stopCellMetrics();
+        executorService.shutdown();
+        executorService.awaitTermination(60, TimeUnit.MINUTES);
+        endTime = System.nanoTime();
+        timeSeries.stop();
+        if (historyMonitor != null) {
+            historyMonitor.drain(); // part of the cell metrics, the history jobs are part of the cost of the process
+        }
+        if (flightRecording != null) {
+            flightRecording.stop(); // the recording covers the drain, it is only written in addResults
+        }
+    }
+
+    /**
+     * Submits all iterations at once, the executor service blocks while all threads are busy (closed loop).
+     */
+    protected void submitIterations(Runnable iteration, long nrOfIterations) {
+        for (long iterationIndex = 0; iterationIndex < nrOfIterations; iterationIndex++) {
+            executorService.execute(iteration);
+        }
+    }
+
+    /**
+     * Adds the results of the history jobs, the cell metrics and the flight recording, for the given duration of the load.
+     */
+    public void addResults(long nrOfIterations, long totalTimeInMs) {
+        if (historyMonitor != null) {
+            historyMonitor.addResults(output, outputProcessName, column, nrOfIterations, totalTimeInMs);
+        }
+        Benchmark.addCellMetrics(output, outputProcessName, column, nrOfIterations, timeSeries.getHistogram());
+        if (flightRecording != null) {
+            flightRecording.save();
+            flightRecording.addResults(output, outputProcessName, column, nrOfIterations);
+        }
+    }
+
+    public TimeSeries getTimeSeries() {
+        return timeSeries;
+    }
+
+    /**
+     * The System.nanoTime() at which the first iteration was submitted.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getDurationInMs() {
+        return TimeUnit.NANOSECONDS.toMillis(endTime - startTime);
+    }
+
+}
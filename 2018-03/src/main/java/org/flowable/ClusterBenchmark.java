@@ -0,0 +1,459 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.flowable.Benchmark.RecordedIteration;
+import org.flowable.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.flowable.runnable.BenchmarkRunnable;
+import org.flowable.scenario.Scenario;
+
+/**
+ * Runs the benchmark on several engine nodes (JVMs) sharing one database, to see how the throughput scales with the number of nodes
+ * and how much the nodes get in each other's way (optimistic locking on the runtime tables, job acquisition, ...).
+ *
+ * The coordinator (the regular main class with 'cluster-nodes' set) creates the schema and the deployments, launches the worker JVMs 
+ * (or waits for them to attach when 'cluster-launch-workers' is false) and then, for every process and number of nodes, 
+ * lets all participating workers start at the same moment and merges the histograms they send back.
+ * Only the first worker prepares a cell (e.g. the inbox backlog or the deployments of the definition cache process), 
+ * the others pick up their share of it (see {@link BenchmarkRunnable#attach(int, int)}).
+ * 
+ * A worker is started with 'java -cp ... org.flowable.ClusterBenchmark host:port' and uses the config.properties in its working directory,
+ * which needs to point to the same database. The database is never recreated by a worker.
+ * 
+ * The coordinator listens on localhost when it launches the workers itself, on 'cluster-bind-address' (all interfaces by default) otherwise.
+ * The connections are not authenticated, so the port must not be reachable from outside the benchmark network; 
+ * only the messages of this class are accepted when deserializing.
+ */
+public class ClusterBenchmark {
+
+    public static final String NODES = "nodes";
+
+    protected static final String READY = "ready";
+    protected static final String GO = "go";
+    protected static final String STOP = "stop";
+
+    protected static final int WORKER_CONNECT_TIMEOUT_IN_MS = (int) TimeUnit.MINUTES.toMillis(5);
+
+    public static void execute(String outputName, List<String> processes) throws Exception {
+        List<Integer> nodeCounts = new ArrayList<>();
+        for (String nodeCount : Benchmark.properties.getProperty("cluster-nodes").split(",")) {
+            nodeCounts.add(Integer.valueOf(nodeCount.trim()));
+        }
+        int maxNrOfNodes = Collections.max(nodeCounts);
+        int nrOfThreads = Integer.valueOf(Benchmark.properties.getProperty("cluster-threads", Benchmark.properties.getProperty("max-threads")));
+        int nrOfIterations = Integer.valueOf(Benchmark.properties.getProperty("iterations"));
+        int nrOfWarmupIterations = Integer.valueOf(Benchmark.properties.getProperty("cluster-warmup-iterations", "1000"));
+        int port = Integer.valueOf(Benchmark.properties.getProperty("cluster-port", "0"));
+        boolean launchWorkers = Boolean.valueOf(Benchmark.properties.getProperty("cluster-launch-workers", "true"));
+        String bindAddress = Benchmark.properties.getProperty("cluster-bind-address", launchWorkers ? "localhost" : null);
+        String executor = BenchmarkExecutors.getExecutors().get(0);
+
+        List<String> columns = new ArrayList<>();
+        for (Integer nodeCount : nodeCounts) {
+            columns.add(String.valueOf(nodeCount));
+        }
+        Output output = new Output(outputName, columns);
+
+        System.out.println("Setting up the shared database");
+        Benchmark.createProcessEngine();
+        Benchmark.deployProcesses();
+        stopJobExecutors((ProcessEngineConfigurationImpl) Benchmark.processEngine.getProcessEngineConfiguration()); // the coordinator doesn't execute anything
+
+        List<Process> workerProcesses = new ArrayList<>();
+        List<WorkerConnection> workers = new ArrayList<>();
+        try (ServerSocket serverSocket = new ServerSocket(port, 50, bindAddress != null ? InetAddress.getByName(bindAddress) : null)) {
+            serverSocket.setSoTimeout(WORKER_CONNECT_TIMEOUT_IN_MS);
+            if (launchWorkers) {
+                for (int nodeIndex = 1; nodeIndex <= maxNrOfNodes; nodeIndex++) {
+                    workerProcesses.add(launchWorker(nodeIndex, serverSocket.getLocalPort()));
+                }
+            } else {
+                System.out.println("Waiting for " + maxNrOfNodes + " workers to connect on " + serverSocket.getInetAddress().getHostAddress() + ":" + serverSocket.getLocalPort());
+            }
+
+            for (int nodeIndex = 1; nodeIndex <= maxNrOfNodes; nodeIndex++) {
+                workers.add(new WorkerConnection(serverSocket.accept()));
+                System.out.println("Worker " + nodeIndex + " connected");
+            }
+
+            for (String process : processes) {
+
+                System.out.println();
+                System.out.println("Warming up " + maxNrOfNodes + " nodes with process " + process);
+                executeCell(workers, new CellRequest(process, executor, nrOfThreads, nrOfWarmupIterations));
+
+                for (Integer nodeCount : nodeCounts) {
+                    System.out.println("Truncating runtime and history tables"); // the job executors of all workers are stopped
+                    DatabaseReset.truncateRuntimeAndHistoryTables(Benchmark.processEngine);
+
+                    System.out.println("Running " + nrOfIterations + " iterations of process " + process + " on each of " + nodeCount + " nodes with " + nrOfThreads + " threads");
+                    List<NodeResult> nodeResults = executeCell(workers.subList(0, nodeCount), new CellRequest(process, executor, nrOfThreads, nrOfIterations));
+                    long clusterDurationInMs = getClusterDurationInMs(nodeResults);
+
+                    addResults(output, process, String.valueOf(nodeCount), nodeResults, clusterDurationInMs);
+                    System.out.println("Took " + clusterDurationInMs + " ms");
+                }
+            }
+
+        } finally {
+            for (WorkerConnection worker : workers) {
+                worker.close();
+            }
+            for (Process workerProcess : workerProcesses) {
+                if (!workerProcess.waitFor(1, TimeUnit.MINUTES)) {
+                    workerProcess.destroy();
+                }
+            }
+            Benchmark.closeProcessEngine();
+        }
+
+        System.out.println("Done. Writing output.");
+        output.writeOutput();
+    }
+
+    protected static Process launchWorker(int nodeIndex, int port) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        for (String jvmArg : Benchmark.properties.getProperty("cluster-worker-jvm-args", "").split(" ")) {
+            if (!jvmArg.trim().isEmpty()) {
+                command.add(jvmArg.trim());
+            }
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ClusterBenchmark.class.getName());
+        command.add("localhost:" + port);
+
+        File logFile = new File("worker-" + nodeIndex + ".log");
+        System.out.println("Launching worker " + nodeIndex + ", logging to " + logFile.getName());
+        return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(logFile).start();
+    }
+
+    /**
+     * Lets the first worker prepare the cell (e.g. the inbox backlog), then the other workers pick up their share of its data, 
+     * starts them together once every one of them is ready and waits for their results. 
+     * The workers stop their job executors before they send their results, so nothing runs on the database once this returns.
+     */
+    protected static List<NodeResult> executeCell(List<WorkerConnection> workers, CellRequest cellRequest) throws Exception {
+        for (int nodeIndex = 0; nodeIndex < workers.size(); nodeIndex++) {
+            workers.get(nodeIndex).send(cellRequest.forNode(nodeIndex, workers.size()));
+            if (nodeIndex == 0) {
+                workers.get(nodeIndex).receive(); // READY, the cell is prepared
+            }
+        }
+        for (WorkerConnection worker : workers.subList(1, workers.size())) {
+            worker.receive(); // READY
+        }
+        for (WorkerConnection worker : workers) {
+            worker.send(GO);
+        }
+
+        List<NodeResult> nodeResults = new ArrayList<>();
+        for (WorkerConnection worker : workers) {
+            nodeResults.add((NodeResult) worker.receive());
+        }
+        return nodeResults;
+    }
+
+    /**
+     * The time between GO and the moment the slowest node was done: the duration of every node is measured by the node itself from GO on, 
+     * so the engine preparation, the handshake and sending the results back aren't included.
+     */
+    protected static long getClusterDurationInMs(List<NodeResult> nodeResults) {
+        long clusterDurationInMs = 0;
+        for (NodeResult nodeResult : nodeResults) {
+            clusterDurationInMs = Math.max(clusterDurationInMs, nodeResult.getDurationInMs());
+        }
+        return clusterDurationInMs;
+    }
+
+    /**
+     * Adds the cluster-wide results (all histograms merged, throughput over the time until the slowest node was done) as the process row 
+     * and the results of every node as 'process[nodeX]' rows.
+     */
+    protected static void addResults(Output output, String process, String column, List<NodeResult> nodeResults, long clusterDurationInMs) {
+        Histogram clusterHistogram = Output.createHistogram();
+        long totalNrOfIterations = 0;
+        for (NodeResult nodeResult : nodeResults) {
+            clusterHistogram.add(nodeResult.getHistogram());
+            totalNrOfIterations += nodeResult.getNrOfIterations();
+        }
+        output.addResults(process, column, totalNrOfIterations, clusterDurationInMs, clusterHistogram);
+        output.addMeasurement(process, column, NODES, nodeResults.size());
+
+        for (int nodeIndex = 0; nodeIndex < nodeResults.size(); nodeIndex++) {
+            NodeResult nodeResult = nodeResults.get(nodeIndex);
+            output.addResults(process + "[node" + (nodeIndex + 1) + "]", column, nodeResult.getNrOfIterations(), nodeResult.getDurationInMs(), nodeResult.getHistogram());
+        }
+    }
+
+    protected static void startJobExecutors(ProcessEngineConfigurationImpl processEngineConfiguration) {
+        if (processEngineConfiguration.isAsyncExecutorActivate() && processEngineConfiguration.getAsyncExecutor() != null 
+                && !processEngineConfiguration.getAsyncExecutor().isActive()) {
+            processEngineConfiguration.getAsyncExecutor().start();
+        }
+        if (processEngineConfiguration.isAsyncHistoryExecutorActivate() && processEngineConfiguration.getAsyncHistoryExecutor() != null 
+                && !processEngineConfiguration.getAsyncHistoryExecutor().isActive()) {
+            processEngineConfiguration.getAsyncHistoryExecutor().start();
+        }
+    }
+
+    protected static void stopJobExecutors(ProcessEngineConfigurationImpl processEngineConfiguration) {
+        if (processEngineConfiguration.getAsyncExecutor() != null && processEngineConfiguration.getAsyncExecutor().isActive()) {
+            processEngineConfiguration.getAsyncExecutor().shutdown();
+        }
+        if (processEngineConfiguration.getAsyncHistoryExecutor() != null && processEngineConfiguration.getAsyncHistoryExecutor().isActive()) {
+            processEngineConfiguration.getAsyncHistoryExecutor().shutdown();
+        }
+    }
+
+    /**
+     * Worker entry point: 'java -cp ... org.flowable.ClusterBenchmark coordinatorHost:port'.
+     */
+    public static void main(String[] args) throws Exception {
+        Benchmark.properties = new Properties();
+        Benchmark.properties.load(new InputStreamReader(new FileInputStream("config.properties"), "UTF-8"));
+        Benchmark.properties.put("database-schema-update", "false"); // created by the coordinator
+        Benchmark.properties.put("jdbc-metrics", "false");
+        Benchmark.properties.put("command-metrics", "false");
+        Benchmark.properties.put("pool-metrics", "false");
+        if (!Benchmark.properties.containsKey("async-completion-poll-interval")) {
+            Benchmark.properties.put("async-completion-poll-interval", "20"); // the last job can run on another node
+        }
+        Benchmark.poolSize = Benchmark.getPoolSizes().get(0);
+
+        for (String process : Benchmark.getProcesses()) {
+            if (Benchmark.getScenario(process).isAsync()) {
+                Benchmark.asyncExecutorSettings = AsyncExecutorSettings.getSweep().get(0);
+            }
+        }
+
+        String[] coordinatorAddress = args[0].split(":");
+        System.out.println("Creating process engine");
+        Benchmark.createProcessEngine();
+        ProcessEngineConfigurationImpl processEngineConfiguration = (ProcessEngineConfigurationImpl) Benchmark.processEngine.getProcessEngineConfiguration();
+
+        try (WorkerConnection coordinator = new WorkerConnection(new Socket(coordinatorAddress[0], Integer.valueOf(coordinatorAddress[1])))) {
+            System.out.println("Connected to coordinator " + args[0]);
+            Object message;
+            while (!STOP.equals(message = coordinator.receive())) {
+                CellRequest cellRequest = (CellRequest) message;
+                System.out.println("Running " + cellRequest.getNrOfIterations() + " iterations of process " + cellRequest.getProcess());
+                startJobExecutors(processEngineConfiguration);
+
+                ExecutorService executorService = BenchmarkExecutors.createExecutorService(cellRequest.getExecutor(), cellRequest.getNrOfThreads());
+                Recorder recorder = new Recorder(Output.HIGHEST_TRACKABLE_LATENCY, Output.SIGNIFICANT_DIGITS);
+                Scenario scenario = Benchmark.getScenario(cellRequest.getProcess());
+                BenchmarkRunnable benchmarkRunnable = scenario.createRunnable(scenario.getVariants().get(0));
+                if (cellRequest.getNodeIndex() == 0) {
+                    benchmarkRunnable.prepare();
+                }
+                if (cellRequest.getNrOfNodes() > 1) {
+                    benchmarkRunnable.attach(cellRequest.getNodeIndex(), cellRequest.getNrOfNodes());
+                }
+                RecordedIteration iteration = new RecordedIteration(benchmarkRunnable, recorder);
+                coordinator.send(READY);
+                coordinator.receive(); // GO
+
+                long startTime = System.currentTimeMillis();
+                for (int iterationIndex = 0; iterationIndex < cellRequest.getNrOfIterations(); iterationIndex++) {
+                    executorService.execute(iteration);
+                }
+                executorService.shutdown();
+                executorService.awaitTermination(60, TimeUnit.MINUTES);
+                long durationInMs = System.currentTimeMillis() - startTime;
+                stopJobExecutors(processEngineConfiguration); // the coordinator truncates the tables once all nodes are done
+
+                coordinator.send(new NodeResult(cellRequest.getNrOfIterations(), durationInMs, recorder.getIntervalHistogram()));
+                System.out.println("Took " + durationInMs + " ms");
+            }
+
+        } finally {
+            Benchmark.closeProcessEngine();
+        }
+    }
+
+    protected static class WorkerConnection implements AutoCloseable {
+
+        protected Socket socket;
+        protected ObjectOutputStream outputStream;
+        protected ObjectInputStream inputStream;
+
+        public WorkerConnection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.outputStream = new ObjectOutputStream(socket.getOutputStream());
+            this.outputStream.flush(); // the other side blocks on the stream header
+            this.inputStream = new MessageInputStream(socket.getInputStream());
+        }
+
+        public void send(Object message) throws IOException {
+            outputStream.writeObject(message);
+            outputStream.flush();
+            outputStream.reset();
+        }
+
+        public Object receive() throws IOException, ClassNotFoundException {
+            return inputStream.readObject();
+        }
+
+        public void close() throws IOException {
+            try {
+                if (!socket.isClosed() && !socket.isOutputShutdown()) {
+                    send(STOP);
+                }
+            } catch (IOException e) {
+                // worker already gone
+            } finally {
+                socket.close();
+            }
+        }
+
+    }
+
+    /**
+     * Only deserializes the messages exchanged between the coordinator and the workers.
+     */
+    protected static class MessageInputStream extends ObjectInputStream {
+
+        protected static final List<String> ALLOWED_CLASSES = Arrays.asList(String.class.getName(), CellRequest.class.getName(), 
+                NodeResult.class.getName(), byte[].class.getName());
+
+        public MessageInputStream(InputStream inputStream) throws IOException {
+            super(inputStream);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass objectStreamClass) throws IOException, ClassNotFoundException {
+            if (!ALLOWED_CLASSES.contains(objectStreamClass.getName())) {
+                throw new InvalidClassException(objectStreamClass.getName(), "Not a cluster benchmark message");
+            }
+            return super.resolveClass(objectStreamClass);
+        }
+
+    }
+
+    public static class CellRequest implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        protected String process;
+        protected String executor;
+        protected int nrOfThreads;
+        protected int nrOfIterations;
+        protected int nodeIndex;
+        protected int nrOfNodes = 1;
+
+        public CellRequest(String process, String executor, int nrOfThreads, int nrOfIterations) {
+            this.process = process;
+            this.executor = executor;
+            this.nrOfThreads = nrOfThreads;
+            this.nrOfIterations = nrOfIterations;
+        }
+
+        /**
+         * The same cell for the given one of the nodes, the first one prepares it.
+         */
+        public CellRequest forNode(int nodeIndex, int nrOfNodes) {
+            CellRequest cellRequest = new CellRequest(process, executor, nrOfThreads, nrOfIterations);
+            cellRequest.nodeIndex = nodeIndex;
+            cellRequest.nrOfNodes = nrOfNodes;
+            return cellRequest;
+        }
+
+        public String getProcess() {
+            return process;
+        }
+
+        public String getExecutor() {
+            return executor;
+        }
+
+        public int getNrOfThreads() {
+            return nrOfThreads;
+        }
+
+        public int getNrOfIterations() {
+            return nrOfIterations;
+        }
+
+        public int getNodeIndex() {
+            return nodeIndex;
+        }
+
+        public int getNrOfNodes() {
+            return nrOfNodes;
+        }
+
+    }
+
+    public static class NodeResult implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        protected long nrOfIterations;
+        protected long durationInMs;
+        protected byte[] encodedHistogram; // histograms don't survive plain serialization between JVMs, the compressed encoding does
+
+        public NodeResult(long nrOfIterations, long durationInMs, Histogram histogram) {
+            this.nrOfIterations = nrOfIterations;
+            this.durationInMs = durationInMs;
+            ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+            int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+            this.encodedHistogram = Arrays.copyOf(buffer.array(), length);
+        }
+
+        public long getNrOfIterations() {
+            return nrOfIterations;
+        }
+
+        public long getDurationInMs() {
+            return durationInMs;
+        }
+
+        public Histogram getHistogram() {
+            try {
+                return Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(encodedHistogram), 0);
+            } catch (DataFormatException e) {
+                throw new RuntimeException("Could not decode histogram", e);
+            }
+        }
+
+    }
+
+}
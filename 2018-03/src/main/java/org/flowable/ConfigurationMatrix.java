@@ -0,0 +1,125 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Expands the engine configuration properties that are given as a comma separated list (e.g. 'history-level=none,audit' and 'tree-fetch=true,false') 
+ * into the cross product of all values. The benchmark is run once for every configuration, 
+ * each with the properties of the configuration and its own output files.
+ */
+public class ConfigurationMatrix {
+
+    public static final List<String> MATRIX_PROPERTIES = Arrays.asList("history-level", "async-history", "async-history-grouping", 
+            "async-history-gzip", "async-history-grouping-threshold", "tree-fetch");
+
+    protected List<Configuration> configurations = new ArrayList<>();
+    protected String baseline;
+
+    public ConfigurationMatrix(Properties properties) {
+        configurations.add(new Configuration("", properties));
+        for (String property : MATRIX_PROPERTIES) {
+            String value = properties.getProperty(property);
+            if (value != null && value.contains(",")) {
+                List<Configuration> expandedConfigurations = new ArrayList<>();
+                for (Configuration configuration : configurations) {
+                    for (String singleValue : value.split(",")) {
+                        expandedConfigurations.add(configuration.with(property, singleValue.trim()));
+                    }
+                }
+                configurations = expandedConfigurations;
+            }
+        }
+        baseline = properties.getProperty("matrix-baseline", "1");
+    }
+
+    public List<Configuration> getConfigurations() {
+        return configurations;
+    }
+
+    public boolean isMatrix() {
+        return configurations.size() > 1;
+    }
+
+    /**
+     * The configuration the others are compared to: 'matrix-baseline' is either the name of a configuration (e.g. 'history-level=audit;tree-fetch=true') 
+     * or its 1-based position in the matrix. The first configuration by default.
+     */
+    public int getBaselineIndex() {
+        for (int configurationIndex = 0; configurationIndex < configurations.size(); configurationIndex++) {
+            if (configurations.get(configurationIndex).getName().equals(baseline)) {
+                return configurationIndex;
+            }
+        }
+        try {
+            int baselineIndex = Integer.valueOf(baseline) - 1;
+            if (baselineIndex >= 0 && baselineIndex < configurations.size()) {
+                return baselineIndex;
+            }
+        } catch (NumberFormatException e) {
+            // not a position either
+        }
+        throw new RuntimeException("Invalid matrix-baseline : " + baseline);
+    }
+
+    public List<String> getConfigurationNames() {
+        List<String> names = new ArrayList<>();
+        for (Configuration configuration : configurations) {
+            names.add(configuration.getName());
+        }
+        return names;
+    }
+
+    public static class Configuration {
+
+        protected String name;
+        protected Properties properties;
+
+        public Configuration(String name, Properties properties) {
+            this.name = name;
+            this.properties = properties;
+        }
+
+        protected Configuration with(String property, String value) {
+            Properties configurationProperties = new Properties();
+            configurationProperties.putAll(properties);
+            configurationProperties.setProperty(property, value);
+            return new Configuration(name.isEmpty() ? property + "=" + value : name + ";" + property + "=" + value, configurationProperties);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Properties getProperties() {
+            return properties;
+        }
+
+        /**
+         * The output file for this configuration: the configured one with the configuration added, e.g. results-history-level_none_tree-fetch_false.csv.
+         */
+        public String getOutputName(String outputName) {
+            int extensionIndex = outputName.lastIndexOf('.');
+            String baseName = extensionIndex > 0 ? outputName.substring(0, extensionIndex) : outputName;
+            String extension = extensionIndex > 0 ? outputName.substring(extensionIndex) : "";
+            return baseName + "-" + name.replaceAll("[^A-Za-z0-9.-]", "_") + extension;
+        }
+
+    }
+
+}
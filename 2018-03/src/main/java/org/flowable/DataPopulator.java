@@ -0,0 +1,309 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+import javax.sql.DataSource;
+
+import org.flowable.engine.ProcessEngine;
+
+/**
+ * Bulk loads process instances of the 'populatedUserTask' process (start, user task, end) with batched JDBC inserts,
+ * so the scenarios can be run against tables of production size instead of empty ones.
+ * 
+ * Every instance gets its history (process, activity, task and variable instances), the given fraction of them is still open
+ * and also gets its runtime rows (process instance and child execution, user task and variables). The ids are prefixed with 'bulk-',
+ * the engine's own ids are numeric so they can't collide, and the rows a cell created can be deleted without populating again
+ * (see {@link DatabaseReset#deleteNonPopulatedRows}).
+ */
+public class DataPopulator {
+
+    public static final String PROCESS_DEFINITION_KEY = "populatedUserTask";
+    public static final String ID_PREFIX = "bulk-";
+
+    protected static final String INSERT_EXECUTION = "insert into ACT_RU_EXECUTION (ID_, REV_, PROC_INST_ID_, BUSINESS_KEY_, PARENT_ID_, PROC_DEF_ID_, "
+            + "ROOT_PROC_INST_ID_, ACT_ID_, IS_ACTIVE_, IS_CONCURRENT_, IS_SCOPE_, IS_EVENT_SCOPE_, IS_MI_ROOT_, SUSPENSION_STATE_, TENANT_ID_, "
+            + "START_ACT_ID_, START_TIME_, IS_COUNT_ENABLED_) values (?, 1, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 1, '', ?, ?, ?)";
+    protected static final String INSERT_TASK = "insert into ACT_RU_TASK (ID_, REV_, EXECUTION_ID_, PROC_INST_ID_, PROC_DEF_ID_, NAME_, TASK_DEF_KEY_, "
+            + "PRIORITY_, CREATE_TIME_, SUSPENSION_STATE_, TENANT_ID_, IS_COUNT_ENABLED_, VAR_COUNT_, ID_LINK_COUNT_, SUB_TASK_COUNT_) "
+            + "values (?, 1, ?, ?, ?, 'Task', 'task', 50, ?, 1, '', ?, 0, 0, 0)";
+    protected static final String INSERT_VARIABLE = "insert into ACT_RU_VARIABLE (ID_, REV_, TYPE_, NAME_, EXECUTION_ID_, PROC_INST_ID_, TEXT_) "
+            + "values (?, 1, 'string', ?, ?, ?, ?)";
+    protected static final String INSERT_HISTORIC_PROCESS_INSTANCE = "insert into ACT_HI_PROCINST (ID_, REV_, PROC_INST_ID_, BUSINESS_KEY_, PROC_DEF_ID_, "
+            + "START_TIME_, END_TIME_, DURATION_, START_ACT_ID_, END_ACT_ID_, TENANT_ID_) values (?, 1, ?, ?, ?, ?, ?, ?, 'start', ?, '')";
+    protected static final String INSERT_HISTORIC_ACTIVITY_INSTANCE = "insert into ACT_HI_ACTINST (ID_, REV_, PROC_DEF_ID_, PROC_INST_ID_, EXECUTION_ID_, "
+            + "ACT_ID_, TASK_ID_, ACT_NAME_, ACT_TYPE_, START_TIME_, END_TIME_, DURATION_, TENANT_ID_) values (?, 1, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, '')";
+    protected static final String INSERT_HISTORIC_TASK_INSTANCE = "insert into ACT_HI_TASKINST (ID_, REV_, PROC_DEF_ID_, TASK_DEF_KEY_, PROC_INST_ID_, "
+            + "EXECUTION_ID_, NAME_, START_TIME_, END_TIME_, DURATION_, PRIORITY_, TENANT_ID_, LAST_UPDATED_TIME_) values (?, 1, ?, 'task', ?, ?, 'Task', ?, ?, ?, 50, '', ?)";
+    protected static final String INSERT_HISTORIC_VARIABLE_INSTANCE = "insert into ACT_HI_VARINST (ID_, REV_, PROC_INST_ID_, EXECUTION_ID_, NAME_, "
+            + "VAR_TYPE_, TEXT_, CREATE_TIME_, LAST_UPDATED_TIME_) values (?, 1, ?, ?, ?, 'string', ?, ?, ?)";
+
+    // Duration of a populated instance, the start times are spread over the past (one instance per second)
+    protected static final long INSTANCE_DURATION_IN_MS = 60000L;
+
+    protected long nrOfInstances;
+    protected double openInstanceRatio;
+    protected int nrOfVariables;
+    protected int batchSize;
+    protected boolean history;
+
+    protected String processDefinitionId;
+    protected long startTime;
+
+    public DataPopulator(long nrOfInstances, double openInstanceRatio, int nrOfVariables, int batchSize, boolean history) {
+        this.nrOfInstances = nrOfInstances;
+        this.openInstanceRatio = openInstanceRatio;
+        this.nrOfVariables = nrOfVariables;
+        this.batchSize = batchSize;
+        this.history = history;
+    }
+
+    /**
+     * Configured with 'data-open-ratio' (0.01 by default), 'data-variables' (5) and 'data-batch-size' (1000). 
+     * No history is populated with history level none.
+     */
+    public static DataPopulator create(long nrOfInstances) {
+        return new DataPopulator(nrOfInstances, 
+                Double.valueOf(Benchmark.properties.getProperty("data-open-ratio", "0.01")),
+                Integer.valueOf(Benchmark.properties.getProperty("data-variables", "5")),
+                Integer.valueOf(Benchmark.properties.getProperty("data-batch-size", "1000")),
+                !"none".equalsIgnoreCase(Benchmark.properties.getProperty("history-level")));
+    }
+
+    public void populate(ProcessEngine processEngine, DataSource dataSource) {
+        processDefinitionId = processEngine.getRepositoryService().createProcessDefinitionQuery()
+                .processDefinitionKey(PROCESS_DEFINITION_KEY).latestVersion().singleResult().getId();
+        startTime = System.currentTimeMillis() - nrOfInstances * 1000L - INSTANCE_DURATION_IN_MS;
+        long nrOfOpenInstances = getNrOfOpenInstances();
+
+        System.out.println("Populating " + nrOfInstances + " process instances (" + nrOfOpenInstances + " open) with " + nrOfVariables + " variables each");
+        long populationStartTime = System.currentTimeMillis();
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                // The open instances first, the executions must be inserted before the tasks and variables referencing them
+                for (long batchStart = 0; batchStart < nrOfOpenInstances; batchStart += batchSize) {
+                    insertRuntimeBatch(connection, batchStart, Math.min(batchStart + batchSize, nrOfOpenInstances));
+                    connection.commit();
+                }
+                if (history) {
+                    for (long batchStart = 0; batchStart < nrOfInstances; batchStart += batchSize) {
+                        insertHistoryBatch(connection, batchStart, Math.min(batchStart + batchSize, nrOfInstances), nrOfOpenInstances);
+                        connection.commit();
+                    }
+                }
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not populate the database", e);
+        }
+
+        long duration = System.currentTimeMillis() - populationStartTime;
+        System.out.println("Populated " + nrOfInstances + " process instances in " + duration + " ms");
+    }
+
+    /**
+     * Whether the populated rows are all still there: a cell can complete the populated tasks (e.g. the task inbox), which ends their instances.
+     */
+    public boolean isPopulated(DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            long nrOfOpenInstances = getNrOfOpenInstances();
+            return countPopulatedRows(statement, "ACT_RU_EXECUTION", "") == 2 * nrOfOpenInstances
+                    && countPopulatedRows(statement, "ACT_RU_TASK", "") == nrOfOpenInstances
+                    && countPopulatedRows(statement, "ACT_RU_VARIABLE", "") == nrOfOpenInstances * nrOfVariables
+                    && (!history || countPopulatedRows(statement, "ACT_HI_PROCINST", " and END_TIME_ is null") == nrOfOpenInstances);
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not check the populated data", e);
+        }
+    }
+
+    protected long countPopulatedRows(Statement statement, String table, String condition) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery("select count(*) from " + table + " where ID_ like '" + ID_PREFIX + "%'" + condition)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    public long getNrOfOpenInstances() {
+        return Math.round(nrOfInstances * openInstanceRatio);
+    }
+
+    protected void insertRuntimeBatch(Connection connection, long from, long to) throws SQLException {
+        try (PreparedStatement executionStatement = connection.prepareStatement(INSERT_EXECUTION);
+                PreparedStatement taskStatement = connection.prepareStatement(INSERT_TASK);
+                PreparedStatement variableStatement = connection.prepareStatement(INSERT_VARIABLE)) {
+
+            for (long i = from; i < to; i++) {
+                String processInstanceId = getProcessInstanceId(i);
+                Timestamp instanceStartTime = getStartTime(i);
+                addExecution(executionStatement, processInstanceId, processInstanceId, null, null, true, instanceStartTime);
+                addExecution(executionStatement, getExecutionId(i), processInstanceId, processInstanceId, "task", false, instanceStartTime);
+
+                taskStatement.setString(1, getTaskId(i));
+                taskStatement.setString(2, getExecutionId(i));
+                taskStatement.setString(3, processInstanceId);
+                taskStatement.setString(4, processDefinitionId);
+                taskStatement.setTimestamp(5, instanceStartTime);
+                taskStatement.setBoolean(6, false);
+                taskStatement.addBatch();
+
+                for (int variableIndex = 0; variableIndex < nrOfVariables; variableIndex++) {
+                    variableStatement.setString(1, processInstanceId + "-var" + variableIndex);
+                    variableStatement.setString(2, "variable_" + variableIndex);
+                    variableStatement.setString(3, processInstanceId);
+                    variableStatement.setString(4, processInstanceId);
+                    variableStatement.setString(5, "value_" + i);
+                    variableStatement.addBatch();
+                }
+            }
+
+            executionStatement.executeBatch();
+            taskStatement.executeBatch();
+            if (nrOfVariables > 0) {
+                variableStatement.executeBatch();
+            }
+        }
+    }
+
+    protected void addExecution(PreparedStatement statement, String id, String processInstanceId, String parentId, String activityId, 
+            boolean scope, Timestamp instanceStartTime) throws SQLException {
+        
+        statement.setString(1, id);
+        statement.setString(2, processInstanceId);
+        statement.setString(3, parentId == null ? processInstanceId : null); // business key on the process instance only
+        statement.setString(4, parentId);
+        statement.setString(5, processDefinitionId);
+        statement.setString(6, processInstanceId);
+        statement.setString(7, activityId);
+        statement.setBoolean(8, true);
+        statement.setBoolean(9, false);
+        statement.setBoolean(10, scope);
+        statement.setBoolean(11, false);
+        statement.setBoolean(12, false);
+        statement.setString(13, "start");
+        statement.setTimestamp(14, instanceStartTime);
+        statement.setBoolean(15, false);
+        statement.addBatch();
+    }
+
+    protected void insertHistoryBatch(Connection connection, long from, long to, long nrOfOpenInstances) throws SQLException {
+        try (PreparedStatement processInstanceStatement = connection.prepareStatement(INSERT_HISTORIC_PROCESS_INSTANCE);
+                PreparedStatement activityInstanceStatement = connection.prepareStatement(INSERT_HISTORIC_ACTIVITY_INSTANCE);
+                PreparedStatement taskInstanceStatement = connection.prepareStatement(INSERT_HISTORIC_TASK_INSTANCE);
+                PreparedStatement variableInstanceStatement = connection.prepareStatement(INSERT_HISTORIC_VARIABLE_INSTANCE)) {
+
+            for (long i = from; i < to; i++) {
+                boolean open = i < nrOfOpenInstances;
+                String processInstanceId = getProcessInstanceId(i);
+                Timestamp instanceStartTime = getStartTime(i);
+                Timestamp instanceEndTime = open ? null : new Timestamp(instanceStartTime.getTime() + INSTANCE_DURATION_IN_MS);
+
+                processInstanceStatement.setString(1, processInstanceId);
+                processInstanceStatement.setString(2, processInstanceId);
+                processInstanceStatement.setString(3, processInstanceId);
+                processInstanceStatement.setString(4, processDefinitionId);
+                processInstanceStatement.setTimestamp(5, instanceStartTime);
+                setEnd(processInstanceStatement, 6, instanceEndTime, INSTANCE_DURATION_IN_MS);
+                processInstanceStatement.setString(8, open ? null : "end");
+                processInstanceStatement.addBatch();
+
+                addActivityInstance(activityInstanceStatement, i, "start", null, "startEvent", instanceStartTime, instanceStartTime);
+                addActivityInstance(activityInstanceStatement, i, "task", getTaskId(i), "userTask", instanceStartTime, instanceEndTime);
+                if (!open) {
+                    addActivityInstance(activityInstanceStatement, i, "end", null, "endEvent", instanceEndTime, instanceEndTime);
+                }
+
+                taskInstanceStatement.setString(1, getTaskId(i));
+                taskInstanceStatement.setString(2, processDefinitionId);
+                taskInstanceStatement.setString(3, processInstanceId);
+                taskInstanceStatement.setString(4, getExecutionId(i));
+                taskInstanceStatement.setTimestamp(5, instanceStartTime);
+                setEnd(taskInstanceStatement, 6, instanceEndTime, INSTANCE_DURATION_IN_MS);
+                taskInstanceStatement.setTimestamp(8, instanceEndTime != null ? instanceEndTime : instanceStartTime);
+                taskInstanceStatement.addBatch();
+
+                for (int variableIndex = 0; variableIndex < nrOfVariables; variableIndex++) {
+                    variableInstanceStatement.setString(1, processInstanceId + "-var" + variableIndex);
+                    variableInstanceStatement.setString(2, processInstanceId);
+                    variableInstanceStatement.setString(3, processInstanceId);
+                    variableInstanceStatement.setString(4, "variable_" + variableIndex);
+                    variableInstanceStatement.setString(5, "value_" + i);
+                    variableInstanceStatement.setTimestamp(6, instanceStartTime);
+                    variableInstanceStatement.setTimestamp(7, instanceStartTime);
+                    variableInstanceStatement.addBatch();
+                }
+            }
+
+            processInstanceStatement.executeBatch();
+            activityInstanceStatement.executeBatch();
+            taskInstanceStatement.executeBatch();
+            if (nrOfVariables > 0) {
+                variableInstanceStatement.executeBatch();
+            }
+        }
+    }
+
+    protected void addActivityInstance(PreparedStatement statement, long i, String activityId, String taskId, String activityType, 
+            Timestamp activityStartTime, Timestamp activityEndTime) throws SQLException {
+        
+        statement.setString(1, getProcessInstanceId(i) + "-" + activityId);
+        statement.setString(2, processDefinitionId);
+        statement.setString(3, getProcessInstanceId(i));
+        statement.setString(4, activityType.equals("userTask") ? getExecutionId(i) : getProcessInstanceId(i));
+        statement.setString(5, activityId);
+        statement.setString(6, taskId);
+        statement.setString(7, activityId);
+        statement.setString(8, activityType);
+        statement.setTimestamp(9, activityStartTime);
+        setEnd(statement, 10, activityEndTime, activityEndTime != null ? activityEndTime.getTime() - activityStartTime.getTime() : 0);
+        statement.addBatch();
+    }
+
+    // Sets the end time and the duration (the next parameter), both null for instances that are still open
+    protected void setEnd(PreparedStatement statement, int parameterIndex, Timestamp endTime, long duration) throws SQLException {
+        statement.setTimestamp(parameterIndex, endTime);
+        if (endTime != null) {
+            statement.setLong(parameterIndex + 1, duration);
+        } else {
+            statement.setNull(parameterIndex + 1, Types.BIGINT);
+        }
+    }
+
+    protected String getProcessInstanceId(long i) {
+        return ID_PREFIX + i;
+    }
+
+    protected String getExecutionId(long i) {
+        return ID_PREFIX + i + "-execution";
+    }
+
+    protected String getTaskId(long i) {
+        return ID_PREFIX + i + "-task";
+    }
+
+    protected Timestamp getStartTime(long i) {
+        return new Timestamp(startTime + i * 1000L);
+    }
+
+}
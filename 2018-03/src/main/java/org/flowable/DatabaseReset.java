@@ -0,0 +1,157 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.flowable.job.service.impl.asyncexecutor.AsyncExecutor;
+
+/**
+ * Empties the runtime (ACT_RU_*) and history (ACT_HI_*) tables of a running engine, keeping the deployments,
+ * the id block and the connection pool. Much faster than building a new engine with drop-create.
+ */
+public class DatabaseReset {
+
+    // Deleted last, the other runtime tables reference them
+    protected static final List<String> PARENT_TABLES = Arrays.asList("ACT_RU_TASK", "ACT_RU_EXECUTION");
+
+    public static void truncateRuntimeAndHistoryTables(ProcessEngine processEngine) {
+        resetRuntimeAndHistoryTables(processEngine, false);
+    }
+
+    /**
+     * Deletes the runtime and history rows of which the id doesn't start with 'bulk-', keeping the rows of the {@link DataPopulator}.
+     */
+    public static void deleteNonPopulatedRows(ProcessEngine processEngine) {
+        resetRuntimeAndHistoryTables(processEngine, true);
+    }
+
+    protected static void resetRuntimeAndHistoryTables(ProcessEngine processEngine, boolean keepPopulatedRows) {
+        ProcessEngineConfigurationImpl processEngineConfiguration = (ProcessEngineConfigurationImpl) processEngine.getProcessEngineConfiguration();
+
+        // The job executors would otherwise fail on the jobs that disappear from under them
+        AsyncExecutor asyncExecutor = processEngineConfiguration.getAsyncExecutor();
+        AsyncExecutor asyncHistoryExecutor = processEngineConfiguration.getAsyncHistoryExecutor();
+        boolean asyncExecutorActive = asyncExecutor != null && asyncExecutor.isActive();
+        boolean asyncHistoryExecutorActive = asyncHistoryExecutor != null && asyncHistoryExecutor.isActive();
+        if (asyncExecutorActive) {
+            asyncExecutor.shutdown();
+        }
+        if (asyncHistoryExecutorActive) {
+            asyncHistoryExecutor.shutdown();
+        }
+
+        List<String> tables = new ArrayList<>();
+        for (String table : processEngine.getManagementService().getTableCount().keySet()) {
+            String upperCaseTable = table.toUpperCase();
+            if (upperCaseTable.startsWith("ACT_RU_") || upperCaseTable.startsWith("ACT_HI_")) {
+                tables.add(table);
+            }
+        }
+
+        if (keepPopulatedRows) {
+            deleteNonPopulatedRows(processEngineConfiguration.getDataSource(), processEngineConfiguration.getDatabaseType(), tables);
+        } else {
+            truncateTables(processEngineConfiguration.getDataSource(), processEngineConfiguration.getDatabaseType(), tables);
+        }
+
+        if (asyncExecutorActive) {
+            asyncExecutor.start();
+        }
+        if (asyncHistoryExecutorActive) {
+            asyncHistoryExecutor.start();
+        }
+    }
+
+    protected static void truncateTables(DataSource dataSource, String databaseType, List<String> tables) {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(true);
+
+            if ("postgres".equals(databaseType)) {
+                // A single statement truncating all tables is allowed to ignore the foreign keys between them
+                statement.execute("TRUNCATE TABLE " + String.join(", ", tables));
+
+            } else if ("mysql".equals(databaseType) || "h2".equals(databaseType)) {
+                statement.execute("mysql".equals(databaseType) ? "SET FOREIGN_KEY_CHECKS = 0" : "SET REFERENTIAL_INTEGRITY FALSE");
+                try {
+                    for (String table : tables) {
+                        statement.execute("TRUNCATE TABLE " + table);
+                    }
+                } finally {
+                    statement.execute("mysql".equals(databaseType) ? "SET FOREIGN_KEY_CHECKS = 1" : "SET REFERENTIAL_INTEGRITY TRUE");
+                }
+
+            } else {
+                throw new RuntimeException("Truncating the tables is not supported for database type " + databaseType + ", use engine-reset=drop-create");
+            }
+
+            // Byte arrays are shared between the deployments and the runtime/history data (variables, job payloads, ...)
+            statement.execute("DELETE FROM ACT_GE_BYTEARRAY WHERE DEPLOYMENT_ID_ IS NULL");
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not truncate runtime and history tables", e);
+        }
+    }
+
+    protected static void deleteNonPopulatedRows(DataSource dataSource, String databaseType, List<String> tables) {
+        List<String> orderedTables = new ArrayList<>();
+        for (String table : tables) {
+            if (!PARENT_TABLES.contains(table.toUpperCase())) {
+                orderedTables.add(table);
+            }
+        }
+        for (String parentTable : PARENT_TABLES) {
+            for (String table : tables) {
+                if (table.equalsIgnoreCase(parentTable)) {
+                    orderedTables.add(table);
+                }
+            }
+        }
+
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(true);
+            boolean foreignKeyChecks = "mysql".equals(databaseType) || "h2".equals(databaseType);
+            if (!foreignKeyChecks && !"postgres".equals(databaseType)) {
+                throw new RuntimeException("Keeping the populated data is not supported for database type " + databaseType + ", use engine-reset=drop-create");
+            }
+            if (foreignKeyChecks) {
+                statement.execute("mysql".equals(databaseType) ? "SET FOREIGN_KEY_CHECKS = 0" : "SET REFERENTIAL_INTEGRITY FALSE");
+            }
+            try {
+                // One statement per table, the executions referencing each other are deleted together
+                for (String table : orderedTables) {
+                    statement.execute("DELETE FROM " + table + " WHERE ID_ NOT LIKE '" + DataPopulator.ID_PREFIX + "%'");
+                }
+            } finally {
+                if (foreignKeyChecks) {
+                    statement.execute("mysql".equals(databaseType) ? "SET FOREIGN_KEY_CHECKS = 1" : "SET REFERENTIAL_INTEGRITY TRUE");
+                }
+            }
+            statement.execute("DELETE FROM ACT_GE_BYTEARRAY WHERE DEPLOYMENT_ID_ IS NULL");
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not delete the runtime and history rows", e);
+        }
+    }
+
+}
@@ -0,0 +1,47 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import org.flowable.engine.common.impl.context.Context;
+import org.flowable.engine.common.impl.interceptor.AbstractCommandInterceptor;
+import org.flowable.engine.common.impl.interceptor.Command;
+import org.flowable.engine.common.impl.interceptor.CommandConfig;
+
+/**
+ * First interceptor of the chain (a custom pre command interceptor): when the outermost command ends, 
+ * also when it failed while loading a definition, the miss state the {@link MeteredProcessDefinitionCache} keeps for the thread is cleared, 
+ * so it never carries over to the next command on that thread.
+ */
+public class DefinitionCacheInterceptor extends AbstractCommandInterceptor {
+
+    protected MeteredProcessDefinitionCache definitionCache;
+
+    public DefinitionCacheInterceptor(MeteredProcessDefinitionCache definitionCache) {
+        this.definitionCache = definitionCache;
+    }
+
+    @Override
+    public <T> T execute(CommandConfig config, Command<T> command) {
+        if (Context.getCommandContext() != null) {
+            return next.execute(config, command); // nested command, the outermost one clears
+        }
+
+        try {
+            return next.execute(config, command);
+        } finally {
+            definitionCache.clearMiss();
+        }
+    }
+
+}
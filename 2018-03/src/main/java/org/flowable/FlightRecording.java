@@ -0,0 +1,244 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.math3.util.Precision;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * A Java Flight Recorder recording of one cell, enabled with 'jfr=true'. The recording uses the JFR settings 
+ * 'jfr-settings' ('profile' by default, or the path of a .jfc file) and is saved as '[outputname]-jfr/[process]-[column].jfr'.
+ * 
+ * Afterwards the recording is summarised into '[outputname]-profile.csv', with the top 'jfr-summary-size' entries of:
+ * 
+ * - cpu: the methods most often on top of the stack in the execution samples
+ * - allocation: the allocation sites (the first frame outside the JDK) with the most sampled bytes (jdk.ObjectAllocationSample
+ *   from Java 16, the TLAB events before)
+ * - lock: the monitors and park classes (with the first frame outside the JDK) threads waited the longest for, above the threshold of the settings
+ * 
+ * and the rows 'socketReadMsPerInstance' and 'socketReadsPerInstance': all socket reads are recorded, which are the JDBC round trips
+ * for a database on the network.
+ */
+public class FlightRecording {
+
+    public static final String CPU = "cpu";
+    public static final String ALLOCATION = "allocation";
+    public static final String LOCK = "lock";
+
+    protected static final List<String> IGNORED_METHODS = Arrays.asList("java.util.concurrent.ThreadPoolExecutor.getTask", 
+            "java.util.concurrent.ForkJoinPool.awaitWork", "org.flowable.BenchmarkExecutors$BoundedExecutorService.execute", 
+            "org.flowable.BenchmarkExecutors$BoundedExecutorService.awaitIdle");
+
+    protected Recording recording;
+    protected Path recordingFile;
+    protected int summarySize;
+    protected Map<String, Map<String, Double>> summaries = new HashMap<>();
+    protected long socketReadTimeInNanos;
+    protected long socketReadCount;
+
+    public FlightRecording(String settings, Path recordingFile, int summarySize) {
+        try {
+            Configuration configuration = new File(settings).isFile() ? Configuration.create(Paths.get(settings)) : Configuration.getConfiguration(settings);
+            this.recording = new Recording(configuration);
+        } catch (IOException | ParseException e) {
+            throw new RuntimeException("Invalid JFR settings : " + settings, e);
+        }
+        recording.enable("jdk.SocketRead").withThreshold(Duration.ZERO).withoutStackTrace();
+        recording.setName(recordingFile.getFileName().toString());
+        this.recordingFile = recordingFile;
+        this.summarySize = summarySize;
+    }
+
+    /**
+     * @return the recording of the cell, or null when 'jfr' isn't enabled or for the warmup, which has no output file
+     */
+    public static FlightRecording create(Output output, String process, String column) {
+        if (!Boolean.valueOf(Benchmark.getProperty("jfr", "false")) || output.outputFileName == null) {
+            return null;
+        }
+        File directory = new File(output.getBaseFileName() + "-jfr");
+        directory.mkdirs();
+        String fileName = (process + "-" + column).replaceAll("[^A-Za-z0-9=,._-]", "_") + ".jfr";
+        return new FlightRecording(Benchmark.getProperty("jfr-settings", "profile"), new File(directory, fileName).toPath(), 
+                Integer.valueOf(Benchmark.getProperty("jfr-summary-size", "10")));
+    }
+
+    public void start() {
+        recording.start();
+    }
+
+    public void stop() {
+        recording.stop();
+    }
+
+    /**
+     * Writes the stopped recording to its file and summarises it: done after the cell, the parsing takes a while for long cells.
+     */
+    public void save() {
+        try {
+            recording.dump(recordingFile);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write " + recordingFile, e);
+        } finally {
+            recording.close();
+        }
+        System.out.println("Flight recording written to " + recordingFile);
+        summarize();
+    }
+
+    protected void summarize() {
+        summaries.put(CPU, new HashMap<String, Double>());
+        summaries.put(ALLOCATION, new HashMap<String, Double>());
+        summaries.put(LOCK, new HashMap<String, Double>());
+        try (RecordingFile events = new RecordingFile(recordingFile)) {
+            while (events.hasMoreEvents()) {
+                RecordedEvent event = events.readEvent();
+                String eventType = event.getEventType().getName();
+                if (isIgnored(event.getStackTrace())) {
+                    continue;
+                }
+                if (eventType.equals("jdk.ExecutionSample")) {
+                    add(CPU, getMethod(event.getStackTrace(), false), 1);
+                } else if (eventType.equals("jdk.ObjectAllocationSample")) {
+                    add(ALLOCATION, getMethod(event.getStackTrace(), true), event.getLong("weight"));
+                } else if (eventType.equals("jdk.ObjectAllocationInNewTLAB")) {
+                    add(ALLOCATION, getMethod(event.getStackTrace(), true), event.getLong("tlabSize"));
+                } else if (eventType.equals("jdk.ObjectAllocationOutsideTLAB")) {
+                    add(ALLOCATION, getMethod(event.getStackTrace(), true), event.getLong("allocationSize"));
+                } else if (eventType.equals("jdk.JavaMonitorEnter")) {
+                    add(LOCK, "monitor " + getClassName(event, "monitorClass") + " in " + getMethod(event.getStackTrace(), true), event.getDuration().toNanos());
+                } else if (eventType.equals("jdk.ThreadPark")) {
+                    add(LOCK, "park " + getClassName(event, "parkedClass") + " in " + getMethod(event.getStackTrace(), true), event.getDuration().toNanos());
+                } else if (eventType.equals("jdk.SocketRead")) {
+                    socketReadTimeInNanos += event.getDuration().toNanos();
+                    socketReadCount++;
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read " + recordingFile, e);
+        }
+    }
+
+    /**
+     * Events of the recorder itself and threads waiting for work (idle pool threads, the benchmark waiting for a free thread) aren't part of the cell.
+     */
+    protected boolean isIgnored(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) {
+            return false;
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            String method = frame.getMethod().getType().getName() + "." + frame.getMethod().getName();
+            if (method.startsWith("jdk.jfr.") || IGNORED_METHODS.contains(method)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected void add(String category, String name, double value) {
+        Map<String, Double> summary = summaries.get(category);
+        Double currentValue = summary.get(name);
+        summary.put(name, currentValue != null ? currentValue + value : value);
+    }
+
+    /**
+     * The top frame of the stack trace, or the first one outside the JDK for allocations (the top frame is mostly in a collection class).
+     */
+    protected String getMethod(RecordedStackTrace stackTrace, boolean skipJdkFrames) {
+        if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+            return "unknown";
+        }
+        RecordedFrame selectedFrame = stackTrace.getFrames().get(0);
+        if (skipJdkFrames) {
+            for (RecordedFrame frame : stackTrace.getFrames()) {
+                String className = frame.getMethod().getType().getName();
+                if (!className.startsWith("java.") && !className.startsWith("jdk.") && !className.startsWith("sun.")) {
+                    selectedFrame = frame;
+                    break;
+                }
+            }
+        }
+        return selectedFrame.getMethod().getType().getName() + "." + selectedFrame.getMethod().getName() 
+                + (selectedFrame.isJavaFrame() ? ":" + selectedFrame.getLineNumber() : "");
+    }
+
+    protected String getClassName(RecordedEvent event, String field) {
+        return event.hasField(field) && event.getClass(field) != null ? event.getClass(field).getName() : "unknown";
+    }
+
+    /**
+     * The names with the highest values of the category, highest first.
+     */
+    public List<Map.Entry<String, Double>> getTop(String category) {
+        List<Map.Entry<String, Double>> entries = new ArrayList<>(summaries.get(category).entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Double>>() {
+            public int compare(Map.Entry<String, Double> entry1, Map.Entry<String, Double> entry2) {
+                return Double.compare(entry2.getValue(), entry1.getValue());
+            }
+        });
+        return entries.subList(0, Math.min(summarySize, entries.size()));
+    }
+
+    public void addResults(Output output, String process, String column, long nrOfIterations) {
+        output.addMeasurement(process, column, "socketReadMsPerInstance", nrOfIterations > 0 ? Output.toMillis(socketReadTimeInNanos) / nrOfIterations : 0);
+        output.addMeasurement(process, column, "socketReadsPerInstance", nrOfIterations > 0 ? ((double) socketReadCount) / nrOfIterations : 0);
+
+        String header = "process,column,category,rank,name,value,unit,percentage";
+        for (String category : new String[] { CPU, ALLOCATION, LOCK }) {
+            double total = 0;
+            for (double value : summaries.get(category).values()) {
+                total += value;
+            }
+            List<Map.Entry<String, Double>> top = getTop(category);
+            System.out.println("Top " + category + " (" + process + ", " + column + "):");
+            for (int rank = 0; rank < top.size(); rank++) {
+                String unit = CPU.equals(category) ? "samples" : ALLOCATION.equals(category) ? "bytes" : "ms";
+                double value = LOCK.equals(category) ? Output.toMillis(top.get(rank).getValue()) : top.get(rank).getValue();
+                double percentage = total > 0 ? 100.0 * top.get(rank).getValue() / total : 0;
+                System.out.println("  " + Precision.round(percentage, 1) + "% " + top.get(rank).getKey());
+                output.addDetail("profile", header, Output.csvValue(process) + "," + column + "," + category + "," + (rank + 1) + ","
+                        + Output.csvValue(top.get(rank).getKey()) + "," + Precision.round(value, 3) + "," + unit + "," + Precision.round(percentage, 2));
+            }
+        }
+    }
+
+    public Path getRecordingFile() {
+        return recordingFile;
+    }
+
+    public long getSocketReadCount() {
+        return socketReadCount;
+    }
+
+}
@@ -0,0 +1,112 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.flowable.engine.HistoryService;
+import org.flowable.engine.history.HistoricProcessInstance;
+
+/**
+ * Deletes the history of process instances that ended more than 'soak-history-retention' seconds ago, every 'soak-history-cleanup-interval' seconds,
+ * like a production cleanup job would. The instances are deleted one by one through the history service (cascading to their activities, tasks 
+ * and variables), in pages of 'soak-history-cleanup-batch-size', while the load keeps running.
+ */
+public class HistoryCleaner {
+
+    protected HistoryService historyService;
+    protected long intervalInMs;
+    protected long retentionInMs;
+    protected int batchSize;
+    protected ScheduledExecutorService scheduler;
+    protected AtomicLong runs = new AtomicLong();
+    protected AtomicLong deletedInstances = new AtomicLong();
+    protected AtomicLong cleanupTimeInMs = new AtomicLong();
+
+    public HistoryCleaner(HistoryService historyService, long intervalInMs, long retentionInMs, int batchSize) {
+        this.historyService = historyService;
+        this.intervalInMs = intervalInMs;
+        this.retentionInMs = retentionInMs;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return the cleaner, or null when 'soak-history-cleanup-interval' isn't set
+     */
+    public static HistoryCleaner create(HistoryService historyService) {
+        long intervalInSeconds = Long.valueOf(Benchmark.getProperty("soak-history-cleanup-interval", "0"));
+        if (intervalInSeconds <= 0) {
+            return null;
+        }
+        return new HistoryCleaner(historyService, TimeUnit.SECONDS.toMillis(intervalInSeconds), 
+                TimeUnit.SECONDS.toMillis(Long.valueOf(Benchmark.getProperty("soak-history-retention", "3600"))),
+                Integer.valueOf(Benchmark.getProperty("soak-history-cleanup-batch-size", "1000")));
+    }
+
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                try {
+                    cleanup();
+                } catch (RuntimeException e) {
+                    System.out.println("History cleanup failed: " + e.getMessage()); // retried next time, the soak keeps running
+                }
+            }
+        }, intervalInMs, intervalInMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(10, TimeUnit.MINUTES);
+    }
+
+    public void cleanup() {
+        long startTime = System.currentTimeMillis();
+        Date endedBefore = new Date(startTime - retentionInMs);
+        long deleted = 0;
+        List<HistoricProcessInstance> historicProcessInstances;
+        do {
+            historicProcessInstances = historyService.createHistoricProcessInstanceQuery().finished().finishedBefore(endedBefore).listPage(0, batchSize);
+            for (HistoricProcessInstance historicProcessInstance : historicProcessInstances) {
+                historyService.deleteHistoricProcessInstance(historicProcessInstance.getId());
+                deleted++;
+            }
+        } while (historicProcessInstances.size() == batchSize && (scheduler == null || !scheduler.isShutdown()));
+        
+        long duration = System.currentTimeMillis() - startTime;
+        runs.incrementAndGet();
+        deletedInstances.addAndGet(deleted);
+        cleanupTimeInMs.addAndGet(duration);
+        System.out.println("History cleanup deleted " + deleted + " process instances in " + duration + " ms");
+    }
+
+    public long getRuns() {
+        return runs.get();
+    }
+
+    public long getDeletedInstances() {
+        return deletedInstances.get();
+    }
+
+    public long getCleanupTimeInMs() {
+        return cleanupTimeInMs.get();
+    }
+
+}
@@ -0,0 +1,230 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.math3.util.Precision;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.impl.cfg.ProcessEngineConfigurationImpl;
+
+/**
+ * Follows the async history jobs (ACT_RU_HISTORY_JOB) of a benchmark cell: the backlog and the age of the oldest history job are sampled 
+ * while the load runs and, once the load has stopped, until the backlog is drained. The age of the oldest job is the history lag:
+ * how long ago the runtime data was committed of which the history data still doesn't exist.
+ * 
+ * The queries go straight to the connection pool, so they don't show up in the JDBC or command metrics.
+ */
+public class HistoryMonitor {
+
+    public static final String MAX_LAG = "historyMaxLagMs";
+    public static final String BACKLOG_AT_LOAD_END = "historyBacklogAtLoadEnd";
+    public static final String DRAIN_SECONDS = "historyDrainSeconds";
+    public static final String DRAIN_THROUGHPUT = "historyDrainJobsPerSecond";
+    public static final String THROUGHPUT_INCLUDING_HISTORY = "throughputIncludingHistoryPerSecond";
+    public static final String FAILED_SAMPLES = "historyFailedSamples";
+
+    protected static final String LOAD = "load";
+    protected static final String DRAIN = "drain";
+
+    protected DataSource dataSource;
+    protected long sampleIntervalInMs;
+    protected long maxDrainTimeInMs;
+
+    protected List<Sample> samples = new ArrayList<>();
+    protected ScheduledExecutorService sampler;
+    protected long startTime;
+    protected long loadEndTime;
+    protected long drainEndTime;
+    protected long backlogAtLoadEnd;
+    protected AtomicLong failedSamples = new AtomicLong();
+
+    public HistoryMonitor(DataSource dataSource, long sampleIntervalInMs, long maxDrainTimeInMs) {
+        this.dataSource = dataSource;
+        this.sampleIntervalInMs = sampleIntervalInMs;
+        this.maxDrainTimeInMs = maxDrainTimeInMs;
+    }
+
+    /**
+     * @return a monitor sampling every 'window-duration' ms, or null when async history isn't enabled for the engine
+     */
+    public static HistoryMonitor create(ProcessEngine processEngine) {
+        if (!((ProcessEngineConfigurationImpl) processEngine.getProcessEngineConfiguration()).isAsyncHistoryEnabled()) {
+            return null;
+        }
+        return new HistoryMonitor(Benchmark.getUninstrumentedDataSource(processEngine),
+                Long.valueOf(Benchmark.getProperty("window-duration", "1000")),
+                TimeUnit.SECONDS.toMillis(Long.valueOf(Benchmark.getProperty("history-max-drain-time", "1800"))));
+    }
+
+    public void start() {
+        startTime = System.nanoTime();
+        sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                trySample(LOAD); // an exception would cancel all later samples
+            }
+        }, 0, sampleIntervalInMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * To be called when the load has stopped: keeps sampling until no history jobs are left (or the max drain time has passed).
+     */
+    public void drain() throws InterruptedException {
+        loadEndTime = System.nanoTime();
+        sampler.shutdown();
+        sampler.awaitTermination(1, TimeUnit.MINUTES);
+
+        Sample sample = trySample(DRAIN);
+        Sample loadEndSample = sample;
+        while ((sample == null || sample.getBacklog() > 0) && System.nanoTime() - loadEndTime < TimeUnit.MILLISECONDS.toNanos(maxDrainTimeInMs)) {
+            Thread.sleep(sampleIntervalInMs);
+            sample = trySample(DRAIN);
+            if (loadEndSample == null) {
+                loadEndSample = sample;
+            }
+        }
+        drainEndTime = System.nanoTime();
+        backlogAtLoadEnd = loadEndSample != null ? loadEndSample.getBacklog() : 0;
+        System.out.println("History job backlog at the end of the load: " + backlogAtLoadEnd);
+        if (sample == null || sample.getBacklog() > 0) {
+            System.out.println("History job backlog NOT drained after " + maxDrainTimeInMs + " ms, " + (sample != null ? sample.getBacklog() + " jobs left" : "the last sample failed"));
+        }
+    }
+
+    /**
+     * @return the sample, or null when the query failed (e.g. a pool timeout under load): logged and counted, the next sample is taken as usual
+     */
+    protected Sample trySample(String phase) {
+        try {
+            return sample(phase);
+        } catch (RuntimeException e) {
+            failedSamples.incrementAndGet();
+            System.out.println("History job sample failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    protected Sample sample(String phase) {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("select count(*), min(CREATE_TIME_) from ACT_RU_HISTORY_JOB")) {
+            resultSet.next();
+            long backlog = resultSet.getLong(1);
+            Timestamp oldestCreateTime = resultSet.getTimestamp(2);
+            long oldestJobAgeInMs = oldestCreateTime != null ? Math.max(0L, System.currentTimeMillis() - oldestCreateTime.getTime()) : 0L;
+
+            Sample sample = new Sample(System.nanoTime() - startTime, phase, backlog, oldestJobAgeInMs);
+            synchronized (samples) {
+                samples.add(sample);
+            }
+            return sample;
+
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not query the history job backlog", e);
+        }
+    }
+
+    public List<Sample> getSamples() {
+        synchronized (samples) {
+            return new ArrayList<>(samples);
+        }
+    }
+
+    public long getMaxLagInMs() {
+        long maxLag = 0;
+        for (Sample sample : getSamples()) {
+            maxLag = Math.max(maxLag, sample.getOldestJobAgeInMs());
+        }
+        return maxLag;
+    }
+
+    public long getBacklogAtLoadEnd() {
+        return backlogAtLoadEnd;
+    }
+
+    public long getFailedSamples() {
+        return failedSamples.get();
+    }
+
+    public long getDrainTimeInMs() {
+        return TimeUnit.NANOSECONDS.toMillis(drainEndTime - loadEndTime);
+    }
+
+    /**
+     * Adds the lag, backlog and drain rows to the output and writes every sample to the '[outputname]-history.csv' file.
+     */
+    public void addResults(Output output, String process, String column, long nrOfIterations, long loadDurationInMs) {
+        long drainTimeInMs = getDrainTimeInMs();
+        output.addMeasurement(process, column, MAX_LAG, getMaxLagInMs());
+        output.addMeasurement(process, column, BACKLOG_AT_LOAD_END, backlogAtLoadEnd);
+        output.addMeasurement(process, column, DRAIN_SECONDS, Precision.round(drainTimeInMs / 1000.0, 3));
+        output.addMeasurement(process, column, DRAIN_THROUGHPUT, drainTimeInMs > 0 ? Precision.round(backlogAtLoadEnd * 1000.0 / drainTimeInMs, 2) : 0);
+        output.addMeasurement(process, column, THROUGHPUT_INCLUDING_HISTORY, Precision.round(nrOfIterations * 1000.0 / (loadDurationInMs + drainTimeInMs), 2));
+        output.addMeasurement(process, column, FAILED_SAMPLES, failedSamples.get());
+        if (failedSamples.get() > 0) {
+            System.out.println(failedSamples.get() + " history job samples failed, the lag and backlog are computed from the other samples");
+        }
+
+        for (Sample sample : getSamples()) {
+            output.addDetail("history", "process,column,seconds,phase,backlog,oldestJobAgeMs",
+                    Output.csvValue(process) + "," + column + "," + Precision.round(sample.getTime() / 1000000000.0, 3) + ","
+                    + sample.getPhase() + "," + sample.getBacklog() + "," + sample.getOldestJobAgeInMs());
+        }
+    }
+
+    public static class Sample {
+
+        protected long time; // relative to the start of the cell
+        protected String phase;
+        protected long backlog;
+        protected long oldestJobAgeInMs;
+
+        public Sample(long time, String phase, long backlog, long oldestJobAgeInMs) {
+            this.time = time;
+            this.phase = phase;
+            this.backlog = backlog;
+            this.oldestJobAgeInMs = oldestJobAgeInMs;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public String getPhase() {
+            return phase;
+        }
+
+        public long getBacklog() {
+            return backlog;
+        }
+
+        public long getOldestJobAgeInMs() {
+            return oldestJobAgeInMs;
+        }
+
+    }
+
+}
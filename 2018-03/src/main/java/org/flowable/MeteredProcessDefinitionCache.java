@@ -0,0 +1,122 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.flowable.engine.common.impl.interceptor.CommandInterceptor;
+import org.flowable.engine.common.impl.persistence.deploy.DefaultDeploymentCache;
+import org.flowable.engine.common.impl.persistence.deploy.DeploymentCache;
+import org.flowable.engine.impl.persistence.deploy.ProcessDefinitionCacheEntry;
+
+/**
+ * Process definition cache counting hits and misses. A miss is followed by fetching the deployment resources and parsing the BPMN,
+ * after which the engine adds the definition to the cache: the time from the miss to that add on the same thread is the cost of the miss.
+ * The engine looks the definition up again right after adding it, that lookup is not counted as a hit.
+ * This state is kept per thread until the command ends (see {@link DefinitionCacheInterceptor}), also when loading the definition failed.
+ * A lookup is done for every step of a process instance, so the hit rate counts lookups, not process instances.
+ */
+public class MeteredProcessDefinitionCache implements DeploymentCache<ProcessDefinitionCacheEntry> {
+
+    protected DefaultDeploymentCache<ProcessDefinitionCacheEntry> delegate;
+    protected LongAdder hits = new LongAdder();
+    protected LongAdder misses = new LongAdder();
+    protected Recorder missRecorder = new Recorder(Output.HIGHEST_TRACKABLE_LATENCY, Output.SIGNIFICANT_DIGITS);
+    protected ThreadLocal<Long> missStartTime = new ThreadLocal<>();
+    protected ThreadLocal<String> addedId = new ThreadLocal<>();
+
+    /**
+     * @param limit the maximum number of cached definitions, no limit when 0 or less (like the engine's processDefinitionCacheLimit)
+     */
+    public MeteredProcessDefinitionCache(int limit) {
+        this.delegate = limit > 0 ? new DefaultDeploymentCache<ProcessDefinitionCacheEntry>(limit) : new DefaultDeploymentCache<ProcessDefinitionCacheEntry>();
+    }
+
+    public ProcessDefinitionCacheEntry get(String id) {
+        ProcessDefinitionCacheEntry cacheEntry = delegate.get(id);
+        if (cacheEntry != null) {
+            if (id.equals(addedId.get())) {
+                addedId.remove();
+            } else {
+                hits.increment();
+            }
+        } else if (missStartTime.get() == null) {
+            misses.increment(); // the engine can look the definition up more than once before loading it
+            missStartTime.set(System.nanoTime());
+        }
+        return cacheEntry;
+    }
+
+    public boolean contains(String id) {
+        return delegate.contains(id);
+    }
+
+    public void add(String id, ProcessDefinitionCacheEntry object) {
+        delegate.add(id, object);
+        Long startTime = missStartTime.get();
+        if (startTime != null) {
+            missRecorder.recordValue(Math.min(System.nanoTime() - startTime, Output.HIGHEST_TRACKABLE_LATENCY));
+            missStartTime.remove();
+            addedId.set(id);
+        }
+    }
+
+    public void remove(String id) {
+        delegate.remove(id);
+    }
+
+    public void clear() {
+        delegate.clear();
+    }
+
+    /**
+     * Forgets a miss that was not followed by an add and the definition that was just added, called when a command ends.
+     */
+    public void clearMiss() {
+        missStartTime.remove();
+        addedId.remove();
+    }
+
+    public CommandInterceptor createInterceptor() {
+        return new DefinitionCacheInterceptor(this);
+    }
+
+    public void reset() {
+        hits.reset();
+        misses.reset();
+        missRecorder.reset();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * The miss costs recorded since the previous call.
+     */
+    public Histogram getMissHistogram() {
+        return missRecorder.getIntervalHistogram();
+    }
+
+    public int size() {
+        return delegate.size();
+    }
+
+}
@@ -0,0 +1,189 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.flowable.BenchmarkExecutors.BoundedExecutorService;
+import org.flowable.runnable.BenchmarkRunnable;
+import org.flowable.scenario.Scenario;
+
+/**
+ * Mixed workload mode (load-mode=mixed): the processes of the 'mix' property run interleaved on one engine and connection pool,
+ * every iteration picks one of them with the given weights, e.g. 'mix=startToEnd:50,manyVariables:30,parallelSubprocesses:20'.
+ * 
+ * For every thread count the 'iterations' are spread over the processes. The output has a 'mix' row with the latency and throughput of all 
+ * iterations together and a 'mix[process]' row per process with its own latency, throughput and share of the iterations.
+ * Compared to the same processes run one at a time, this shows how they get in each other's way (locks, connections, caches).
+ */
+public class MixedWorkloadBenchmark {
+
+    public static final String MIX = "mix";
+    public static final String SHARE = "sharePercent";
+
+    public static Output execute(String outputName, int minNrOfThreads, int maxNrOfThreads, int nrOfIterations) throws Exception {
+        Map<String, Double> weights = getWeights();
+        Output output = new Output(outputName, maxNrOfThreads);
+        List<String> executors = BenchmarkExecutors.getExecutors();
+
+        for (String executor : executors) {
+            for (int nrOfThreads = minNrOfThreads; nrOfThreads <= maxNrOfThreads; nrOfThreads++) {
+                System.out.println();
+                System.out.println("Setting up the process engine for mix " + weights);
+                prepareProcessEngine(new ArrayList<>(weights.keySet()));
+                executeCell(output, weights, Benchmark.getOutputName(MIX, executor, executors), executor, nrOfThreads, nrOfIterations);
+            }
+        }
+
+        System.out.println("Done. Writing output.");
+        output.writeOutput();
+        return output;
+    }
+
+    /**
+     * The processes of the 'mix' property with their weight, in the given order.
+     */
+    public static Map<String, Double> getWeights() {
+        String mix = Benchmark.properties.getProperty("mix");
+        if (mix == null || mix.trim().isEmpty()) {
+            throw new RuntimeException("Invalid mix : the mix property is required with load-mode=mixed");
+        }
+        Map<String, Double> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] processAndWeight = entry.trim().split(":");
+            if (processAndWeight.length != 2 || weights.containsKey(processAndWeight[0].trim())) {
+                throw new RuntimeException("Invalid mix entry : " + entry);
+            }
+            try {
+                weights.put(processAndWeight[0].trim(), Double.valueOf(processAndWeight[1].trim()));
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("Invalid mix entry : " + entry);
+            }
+            if (weights.get(processAndWeight[0].trim()) <= 0) {
+                throw new RuntimeException("Invalid mix entry : " + entry);
+            }
+        }
+        return weights;
+    }
+
+    protected static void executeCell(Output output, Map<String, Double> weights, String outputProcessName, String executor, 
+            int nrOfThreads, int nrOfIterations) throws Exception {
+
+        List<String> processes = new ArrayList<>(weights.keySet());
+        String column = String.valueOf(nrOfThreads);
+
+        BenchmarkRunnable[] benchmarkRunnables = new BenchmarkRunnable[processes.size()];
+        Recorder[] recorders = new Recorder[processes.size()];
+        double[] cumulativeWeights = new double[processes.size()];
+        double totalWeight = 0;
+        for (int i = 0; i < processes.size(); i++) {
+            Scenario scenario = Benchmark.getScenario(processes.get(i));
+            benchmarkRunnables[i] = scenario.createRunnable(scenario.getVariants().get(0));
+            benchmarkRunnables[i].prepare();
+            recorders[i] = new Recorder(Output.HIGHEST_TRACKABLE_LATENCY, Output.SIGNIFICANT_DIGITS);
+            totalWeight += weights.get(processes.get(i));
+            cumulativeWeights[i] = totalWeight;
+        }
+
+        System.out.println("Creating " + executor + " executor service for mix with " + nrOfThreads + " threads");
+        BoundedExecutorService executorService = BenchmarkExecutors.createExecutorService(executor, nrOfThreads);
+        CellExecution cellExecution = new CellExecution(output, outputProcessName, column, executorService);
+        MixedIteration iteration = new MixedIteration(benchmarkRunnables, recorders, cumulativeWeights, cellExecution.getTimeSeries().getRecorder());
+
+        System.out.println("Submitting iterations for mix");
+        cellExecution.execute(iteration, nrOfIterations);
+        long totalTime = cellExecution.getDurationInMs();
+
+        System.out.println("Calculating metrics ...");
+        cellExecution.getTimeSeries().addResults(output, outputProcessName, column, nrOfIterations, totalTime);
+        cellExecution.addResults(nrOfIterations, totalTime);
+
+        // All iterations of the cell, not only the steady state of the time series
+        for (int i = 0; i < processes.size(); i++) {
+            String processOutputName = outputProcessName + "[" + processes.get(i) + "]";
+            Histogram histogram = recorders[i].getIntervalHistogram();
+            long processIterations = histogram.getTotalCount();
+            output.addResults(processOutputName, column, processIterations, totalTime, histogram);
+            output.addMeasurement(processOutputName, column, SHARE, 100.0 * processIterations / nrOfIterations);
+            benchmarkRunnables[i].addResults(output, processOutputName, column, processIterations);
+            System.out.println("Process " + processes.get(i) + ": " + processIterations + " iterations, average " 
+                    + TimeUnit.NANOSECONDS.toMicros((long) histogram.getMean()) / 1000.0 + " ms");
+        }
+        System.out.println(nrOfIterations + " iterations for mix with " + nrOfThreads + " threads completed");
+        System.out.println("Took " + totalTime + " ms");
+    }
+
+    /**
+     * Uses the first variant of every process in the mix and the async executor settings of the first async process.
+     */
+    protected static void prepareProcessEngine(List<String> processes) {
+        AsyncExecutorSettings asyncExecutorSettings = null;
+        Integer definitionCacheLimit = null;
+        for (String process : processes) {
+            Scenario scenario = Benchmark.getScenario(process);
+            Integer scenarioDefinitionCacheLimit = scenario.getDefinitionCacheLimit(scenario.getVariants().get(0));
+            if (scenarioDefinitionCacheLimit != null) {
+                definitionCacheLimit = scenarioDefinitionCacheLimit;
+            }
+            if (asyncExecutorSettings == null) {
+                asyncExecutorSettings = Benchmark.getAsyncExecutorSettingsSweep(process).get(0);
+            }
+        }
+        Benchmark.asyncExecutorSettings = asyncExecutorSettings;
+        Benchmark.prepareProcessEngine(definitionCacheLimit);
+    }
+
+    /**
+     * Work item for one iteration of the mix: picks a process with the weights and records its latency for the process and the whole mix.
+     */
+    protected static class MixedIteration implements Runnable {
+
+        protected BenchmarkRunnable[] benchmarkRunnables;
+        protected Recorder[] recorders;
+        protected double[] cumulativeWeights;
+        protected Recorder mixRecorder;
+
+        public MixedIteration(BenchmarkRunnable[] benchmarkRunnables, Recorder[] recorders, double[] cumulativeWeights, Recorder mixRecorder) {
+            this.benchmarkRunnables = benchmarkRunnables;
+            this.recorders = recorders;
+            this.cumulativeWeights = cumulativeWeights;
+            this.mixRecorder = mixRecorder;
+        }
+
+        public void run() {
+            int index = pick(ThreadLocalRandom.current().nextDouble() * cumulativeWeights[cumulativeWeights.length - 1]);
+            long startTime = System.nanoTime();
+            long endTime = benchmarkRunnables[index].run(recorders[index], startTime);
+            mixRecorder.recordValue(Math.min(endTime - startTime, Output.HIGHEST_TRACKABLE_LATENCY));
+        }
+
+        protected int pick(double value) {
+            for (int i = 0; i < cumulativeWeights.length - 1; i++) {
+                if (value < cumulativeWeights[i]) {
+                    return i;
+                }
+            }
+            return cumulativeWeights.length - 1;
+        }
+
+    }
+
+}
@@ -0,0 +1,166 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.flowable.Benchmark.RecordedIteration;
+import org.flowable.BenchmarkExecutors.BoundedExecutorService;
+import org.flowable.Output.ProcessOutput;
+import org.flowable.runnable.BenchmarkRunnable;
+import org.flowable.scenario.Scenario;
+
+/**
+ * Open-loop (constant arrival rate) mode: instead of letting a fixed number of threads run as fast as they can,
+ * a scheduler submits a new iteration at fixed intervals for every target rate. Latency is measured from the
+ * moment the iteration was supposed to start, so queueing delay is included (no coordinated omission).
+ *
+ * The target rates are executed as a stepped ramp, one step per rate, each for a fixed duration.
+ */
+public class OpenLoopBenchmark {
+
+    public static final String OFFERED_THROUGHPUT = "offeredPerSecond";
+    public static final String KEEPING_UP = "keepingUp";
+
+    protected static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    public static Output execute(String outputName, List<String> processes) throws Exception {
+        List<Integer> targetRates = new ArrayList<>();
+        for (String targetRate : Benchmark.properties.getProperty("target-rates", "300").split(",")) {
+            targetRates.add(Integer.valueOf(targetRate.trim()));
+        }
+        int nrOfThreads = Integer.valueOf(Benchmark.properties.getProperty("open-loop-threads", Benchmark.properties.getProperty("max-threads")));
+        int stepDurationInSeconds = Integer.valueOf(Benchmark.properties.getProperty("rate-step-duration", "60"));
+        double tolerance = Double.valueOf(Benchmark.properties.getProperty("open-loop-tolerance", "0.05"));
+
+        List<String> columns = new ArrayList<>();
+        for (Integer targetRate : targetRates) {
+            columns.add(String.valueOf(targetRate));
+        }
+        Output output = new Output(outputName, columns);
+        List<String> executors = BenchmarkExecutors.getExecutors();
+
+        for (String executor : executors) {
+
+            for (String process : processes) {
+
+                System.out.println();
+                System.out.println("Setting up the process engine for process " + process);
+                Benchmark.asyncExecutorSettings = Benchmark.getAsyncExecutorSettingsSweep(process).get(0);
+                Scenario scenario = Benchmark.getScenario(process);
+                Object variant = scenario.getVariants().get(0);
+
+                String outputProcessName = Benchmark.getOutputName(process, executor, executors) + scenario.getVariantName(variant);
+                Integer maxSustainedRate = null;
+                for (Integer targetRate : targetRates) {
+                    // Every step starts from the same tables, otherwise the later (higher) rates run against the rows of all earlier steps
+                    Benchmark.prepareProcessEngine(scenario.getDefinitionCacheLimit(variant));
+                    boolean keepingUp = executeStep(output, process, variant, outputProcessName, executor, nrOfThreads, targetRate, stepDurationInSeconds, tolerance);
+                    if (keepingUp) {
+                        maxSustainedRate = targetRate;
+                    }
+                }
+
+                if (maxSustainedRate != null) {
+                    System.out.println("Process " + outputProcessName + " keeps up with an offered load of up to " + maxSustainedRate + " instances/s");
+                } else {
+                    System.out.println("Process " + outputProcessName + " does not keep up with any of the offered loads");
+                }
+            }
+        }
+
+        System.out.println("Done. Writing output.");
+        output.writeOutput();
+        return output;
+    }
+
+    protected static boolean executeStep(Output output, String process, Object variant, String outputProcessName, String executor, int nrOfThreads, 
+            int targetRate, int stepDurationInSeconds, double tolerance) throws Exception {
+
+        long nrOfIterations = (long) targetRate * stepDurationInSeconds;
+        System.out.println("Offering " + targetRate + " instances/s of process " + process + " for " + stepDurationInSeconds
+                + " seconds using " + nrOfThreads + " " + executor + " threads");
+
+        // Room for all iterations of the step, so the scheduler never waits for a free thread and the offered rate stays the target rate
+        BoundedExecutorService executorService = BenchmarkExecutors.createExecutorService(executor, nrOfThreads, nrOfIterations);
+        String column = String.valueOf(targetRate);
+        AtomicLong lastEndTime = new AtomicLong();
+        CellExecution cellExecution = new CellExecution(output, outputProcessName, column, executorService) {
+
+            // Every iteration is submitted at its intended start time and timed from it, if no thread is free it waits in the queue
+            protected void submitIterations(Runnable iteration, long nrOfIterations) {
+                RecordedIteration recordedIteration = (RecordedIteration) iteration;
+                for (long iterationIndex = 0; iterationIndex < nrOfIterations; iterationIndex++) {
+                    long intendedStartTime = startTime + (iterationIndex * NANOS_PER_SECOND) / targetRate;
+                    long waitTime;
+                    while ((waitTime = intendedStartTime - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(waitTime);
+                    }
+                    executorService.execute(new ScheduledIteration(recordedIteration.benchmarkRunnable, intendedStartTime, recordedIteration.recorder, lastEndTime));
+                }
+            }
+
+        };
+        BenchmarkRunnable benchmarkRunnable = Benchmark.getScenario(process).createRunnable(variant);
+        benchmarkRunnable.prepare();
+
+        cellExecution.execute(new RecordedIteration(benchmarkRunnable, cellExecution.getTimeSeries().getRecorder()), nrOfIterations);
+
+        // The offered load is fixed, so the whole step is reported, the time series shows whether and when the latency drifted
+        long totalTimeInMs = TimeUnit.NANOSECONDS.toMillis(lastEndTime.get() - cellExecution.getStartTime());
+        TimeSeries timeSeries = cellExecution.getTimeSeries();
+        Histogram histogram = timeSeries.getHistogram();
+        output.addResults(outputProcessName, column, nrOfIterations, totalTimeInMs, histogram);
+        timeSeries.addTimeSeries(output, outputProcessName, column);
+        benchmarkRunnable.addResults(output, outputProcessName, column, nrOfIterations);
+        cellExecution.addResults(nrOfIterations, totalTimeInMs);
+
+        double achievedRate = output.getProcessOutput(outputProcessName).getMetric(ProcessOutput.THROUGHPUT)[output.getColumns().indexOf(column)];
+        boolean keepingUp = achievedRate >= targetRate * (1.0 - tolerance);
+        output.addMeasurement(outputProcessName, column, OFFERED_THROUGHPUT, targetRate);
+        output.addMeasurement(outputProcessName, column, KEEPING_UP, keepingUp ? 1 : 0);
+
+        System.out.println("Offered " + targetRate + "/s, achieved " + Math.round(achievedRate) + "/s, p99 latency from intended start "
+                + TimeUnit.NANOSECONDS.toMillis(histogram.getValueAtPercentile(99.0)) + " ms" + (keepingUp ? "" : " (NOT keeping up)"));
+        return keepingUp;
+    }
+
+    protected static class ScheduledIteration implements Runnable {
+
+        protected BenchmarkRunnable benchmarkRunnable;
+        protected long intendedStartTime;
+        protected Recorder recorder;
+        protected AtomicLong lastEndTime;
+
+        public ScheduledIteration(BenchmarkRunnable benchmarkRunnable, long intendedStartTime, Recorder recorder, AtomicLong lastEndTime) {
+            this.benchmarkRunnable = benchmarkRunnable;
+            this.intendedStartTime = intendedStartTime;
+            this.recorder = recorder;
+            this.lastEndTime = lastEndTime;
+        }
+
+        public void run() {
+            long endTime = benchmarkRunnable.run(recorder, intendedStartTime);
+            lastEndTime.accumulateAndGet(endTime, Math::max);
+        }
+
+    }
+
+}
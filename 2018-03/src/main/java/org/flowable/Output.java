@@ -13,51 +13,134 @@
 package org.flowable;
 
 import java.io.IOException;
+import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
 import org.apache.commons.math3.util.Precision;
-import org.flowable.runnable.BenchmarkRunnable;
 
 public class Output {
 
+    // Latencies are recorded in nanoseconds, anything slower than an hour is clamped
+    public static final long HIGHEST_TRACKABLE_LATENCY = TimeUnit.HOURS.toNanos(1);
+    public static final int SIGNIFICANT_DIGITS = 3;
+
+    public static final double NANOS_PER_MILLI = 1000000.0;
+
     protected String outputFileName;
-    protected int maxNrOfThreads;
-    protected int nrOfIterations;
+    protected List<String> columns;
     protected List<ProcessOutput> processOutputs = new ArrayList<>();
+    protected List<Histogram> histograms = new ArrayList<>();
+    
+    // Free-form csv rows that don't fit the process/metric layout, written to a separate file per detail name
+    protected Map<String, String> detailHeaders = new LinkedHashMap<>();
+    protected Map<String, List<String>> details = new LinkedHashMap<>();
+
+    public Output(String outputFileName, int maxNrOfThreads) {
+        this.outputFileName = outputFileName;
+        this.columns = new ArrayList<>();
+        for (int i = 1; i <= maxNrOfThreads; i++) {
+            columns.add(String.valueOf(i));
+        }
+    }
     
-    public Output(String outputFileName, int maxNrOfThreads, int nrOfIterations) {
+    /**
+     * For sweeps over something else than the number of threads (e.g. the target rate in open-loop mode).
+     */
+    public Output(String outputFileName, List<String> columns) {
         this.outputFileName = outputFileName;
-        this.maxNrOfThreads = maxNrOfThreads;
-        this.nrOfIterations = nrOfIterations;
+        this.columns = columns;
     }
     
-    public void addResults(String process, int nrOfThreads, int nrOfIterations, long totalDurationInMs, List<BenchmarkRunnable> benchmarkRunnables) {
+    public static Histogram createHistogram() {
+        return new Histogram(HIGHEST_TRACKABLE_LATENCY, SIGNIFICANT_DIGITS);
+    }
+
+    public static void recordLatency(Histogram histogram, long latencyInNanos) {
+        histogram.recordValue(Math.max(0L, Math.min(latencyInNanos, HIGHEST_TRACKABLE_LATENCY)));
+    }
         
-        double[] timings = new double[benchmarkRunnables.size()];
-        for (int i = 0; i < benchmarkRunnables.size(); i++) {
-            timings[i] = benchmarkRunnables.get(i).getEndTime() - benchmarkRunnables.get(i).getStartTime();
+    public void addResults(String process, String column, long nrOfIterations, long totalDurationInMs, Histogram histogram) {
+        long endTimeStamp = System.currentTimeMillis();
+        histogram.setStartTimeStamp(endTimeStamp - totalDurationInMs);
+        histogram.setEndTimeStamp(endTimeStamp);
+        histogram.setTag(getHistogramTag(process, column));
+        histograms.add(histogram);
+
+        addMeasurement(process, column, ProcessOutput.AVERAGE, toMillis(histogram.getMean()));
+        addMeasurement(process, column, ProcessOutput.STDDEV, toMillis(histogram.getStdDeviation()));
+        addMeasurement(process, column, ProcessOutput.P50, toMillis(histogram.getValueAtPercentile(50.0)));
+        addMeasurement(process, column, ProcessOutput.P90, toMillis(histogram.getValueAtPercentile(90.0)));
+        addMeasurement(process, column, ProcessOutput.P99, toMillis(histogram.getValueAtPercentile(99.0)));
+        addMeasurement(process, column, ProcessOutput.P999, toMillis(histogram.getValueAtPercentile(99.9)));
+        addMeasurement(process, column, ProcessOutput.MAX, toMillis(histogram.getMaxValue()));
+        addMeasurement(process, column, ProcessOutput.THROUGHPUT, calculateThroughputPerSecond(totalDurationInMs, nrOfIterations));
+    }
+
+    /**
+     * The tag of the histogram of a cell in the histogram log, which can't contain commas or whitespace.
+     */
+    public static String getHistogramTag(String process, String column) {
+        return (process + "-" + column).replaceAll("[,\\s]", "_");
+    }
+
+    public void addMeasurement(String process, String column, String metric, double value) {
+        int columnIndex = columns.indexOf(column);
+        if (columnIndex < 0) {
+            throw new RuntimeException("Invalid column : " + column);
         }
         
         ProcessOutput processOutput = getProcessOutput(process);
         if (processOutput == null) {
-            processOutput = new ProcessOutput(process, maxNrOfThreads);
+            processOutput = new ProcessOutput(process, columns.size());
             processOutputs.add(processOutput);
         }
+        processOutput.addMeasurement(columnIndex, metric, value);
+    }
+
+    /**
+     * Adds a row to the '[outputname]-[detail].csv' file, e.g. the slowest statements of a cell.
+     */
+    public void addDetail(String detail, String header, String row) {
+        List<String> rows = details.get(detail);
+        if (rows == null) {
+            rows = new ArrayList<>();
+            details.put(detail, rows);
+            detailHeaders.put(detail, header);
+        }
+        rows.add(row);
+    }
+
+    /**
+     * Makes a value safe to put in a csv column: quoted when needed, with all whitespace (e.g. in SQL) collapsed.
+     */
+    public static String csvValue(String value) {
+        String collapsedValue = value.replaceAll("\\s+", " ").trim();
+        if (collapsedValue.contains(",") || collapsedValue.contains("\"")) {
+            return "\"" + collapsedValue.replace("\"", "\"\"") + "\"";
+        }
+        return collapsedValue;
+    }
         
-        DescriptiveStatistics descriptiveStatistics = new DescriptiveStatistics(timings);
-        processOutput.addMeasurement(nrOfThreads, 
-                descriptiveStatistics.getMean(), 
-                descriptiveStatistics.getStandardDeviation(), 
-                calculateThroughputPerSecond(totalDurationInMs, nrOfIterations));
+    public static double toMillis(double nanos) {
+        return nanos / NANOS_PER_MILLI;
     }
     
-    protected ProcessOutput getProcessOutput(String process) {
+    public static double toMillis(double nanos, int scale) {
+        return Precision.round(nanos / NANOS_PER_MILLI, scale);
+    }
+
+    public ProcessOutput getProcessOutput(String process) {
         for (ProcessOutput processOutput : processOutputs) {
             if (processOutput.getName().equals(process)) {
                 return processOutput;
@@ -66,7 +149,7 @@ public class Output {
         return null;
     }
     
-    protected double calculateThroughputPerSecond(long totalDurationInMs, int nrOfIterations) {
+    protected double calculateThroughputPerSecond(long totalDurationInMs, long nrOfIterations) {
         double totalDurationInSeconds = ((double) totalDurationInMs) / 1000.0;
         return ((double) nrOfIterations) / totalDurationInSeconds;
     }
@@ -76,82 +159,195 @@ public class Output {
             
             StringBuilder strb = new StringBuilder();
             strb.append("process,metric,");
-            for (int i = 1; i <= maxNrOfThreads; i++) {
-                strb.append(i);
+            for (String column : columns) {
+                strb.append(column);
                 strb.append(",");
             }
             writer.println(strb.toString());
             
             for (ProcessOutput processOutput : processOutputs) {
-                writeAverages(writer, processOutput);
-                writeStddevs(writer, processOutput);
-                writeThrougput(writer, processOutput);
+                for (String metric : processOutput.getMetrics().keySet()) {
+                    writeMetric(writer, processOutput, metric);
+                }
             }
         } catch (IOException exception) {
             throw new RuntimeException(exception);
         }
+
+        writeHistograms();
+        writeDetails();
+    }
+
+    protected void writeDetails() {
+        for (String detail : details.keySet()) {
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(getDetailFileName(detail)), Charset.forName("UTF-8")))) {
+                writer.println(detailHeaders.get(detail));
+                for (String row : details.get(detail)) {
+                    writer.println(row);
+                }
+            } catch (IOException exception) {
+                throw new RuntimeException(exception);
+            }
+        }
     }
 
-    protected StringBuilder writeAverages(PrintWriter writer, ProcessOutput processOutput) {
+    /**
+     * Writes the results of the same benchmark run with several configurations to one '[outputname]-matrix.csv' file, keyed by configuration.
+     * For the throughput and the latencies the speedup relative to the baseline configuration is added as well (higher is better).
+     */
+    public static void writeCombinedOutput(String outputFileName, List<String> configurations, List<Output> outputs, int baselineIndex) {
+        Output baseline = outputs.get(baselineIndex);
+        String combinedOutputFileName = new Output(outputFileName, baseline.getColumns()).getDetailFileName("matrix");
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(combinedOutputFileName), Charset.forName("UTF-8")))) {
+
         StringBuilder strb = new StringBuilder();
-        strb.append(processOutput.getName());
-        strb.append(",");
-        strb.append("average,");
-        for (double avg : processOutput.getAverages()) {
-            strb.append(Precision.round(avg, 2));
+            strb.append("configuration,process,metric,");
+            for (String column : baseline.getColumns()) {
+                strb.append(column);
             strb.append(",");    
         }
         writer.println(strb.toString());
-        return strb;
+
+            for (int configurationIndex = 0; configurationIndex < outputs.size(); configurationIndex++) {
+                String configuration = csvValue(configurations.get(configurationIndex) + (configurationIndex == baselineIndex ? " (baseline)" : ""));
+                for (ProcessOutput processOutput : outputs.get(configurationIndex).getProcessOutputs()) {
+                    for (String metric : processOutput.getMetrics().keySet()) {
+                        writeCombinedMetric(writer, configuration, processOutput.getName(), metric, processOutput.getMetric(metric));
     }
     
-    protected StringBuilder writeStddevs(PrintWriter writer, ProcessOutput processOutput) {
+                    ProcessOutput baselineProcessOutput = baseline.getProcessOutput(processOutput.getName());
+                    if (baselineProcessOutput != null) {
+                        writeCombinedMetric(writer, configuration, processOutput.getName(), ProcessOutput.THROUGHPUT + "Speedup",
+                                calculateSpeedups(processOutput.getMetric(ProcessOutput.THROUGHPUT), baselineProcessOutput.getMetric(ProcessOutput.THROUGHPUT), true));
+                        for (String latencyMetric : Arrays.asList(ProcessOutput.AVERAGE, ProcessOutput.P50, ProcessOutput.P99)) {
+                            writeCombinedMetric(writer, configuration, processOutput.getName(), latencyMetric + "Speedup",
+                                    calculateSpeedups(processOutput.getMetric(latencyMetric), baselineProcessOutput.getMetric(latencyMetric), false));
+                        }
+                    }
+                }
+            }
+        } catch (IOException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    protected static double[] calculateSpeedups(double[] values, double[] baselineValues, boolean higherIsBetter) {
+        double[] speedups = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            double numerator = higherIsBetter ? values[i] : baselineValues[i];
+            double denominator = higherIsBetter ? baselineValues[i] : values[i];
+            speedups[i] = denominator > 0 ? numerator / denominator : 0;
+        }
+        return speedups;
+    }
+
+    protected static void writeCombinedMetric(PrintWriter writer, String configuration, String process, String metric, double[] values) {
         StringBuilder strb = new StringBuilder();
-        strb.append(processOutput.getName());
+        strb.append(configuration);
+        strb.append(",");
+        strb.append(csvValue(process));
+        strb.append(",");
+        strb.append(metric);
         strb.append(",");
-        strb.append("stddev,");
-        for (double stddev : processOutput.getStddevs()) {
-            strb.append(Precision.round(stddev, 2));
+        for (double value : values) {
+            strb.append(Precision.round(value, 3));
             strb.append(",");    
         }
         writer.println(strb.toString());
-        return strb;
     }
     
-    protected StringBuilder writeThrougput(PrintWriter writer, ProcessOutput processOutput) {
+    protected StringBuilder writeMetric(PrintWriter writer, ProcessOutput processOutput, String metric) {
         StringBuilder strb = new StringBuilder();
-        strb.append(processOutput.getName());
+        strb.append(csvValue(processOutput.getName()));
+        strb.append(",");
+        strb.append(metric);
         strb.append(",");
-        strb.append("throughputPerSecond,");
-        for (double througput : processOutput.getThroughputPerSeconds()) {
-            strb.append(Precision.round(througput, 2));
+        for (double value : processOutput.getMetric(metric)) {
+            strb.append(Precision.round(value, 2));
             strb.append(",");    
         }
         writer.println(strb.toString());
         return strb;
     }
     
+    /**
+     * Writes the raw histograms in the HdrHistogram log format (one tagged interval per process and thread count),
+     * so runs can be compared or re-analysed later with the standard HdrHistogram tooling.
+     */
+    protected void writeHistograms() {
+        if (histograms.isEmpty()) {
+            return;
+        }
+
+        try (PrintStream printStream = new PrintStream(Files.newOutputStream(Paths.get(getHistogramLogFileName())), false, "UTF-8")) {
+            HistogramLogWriter logWriter = new HistogramLogWriter(printStream);
+            long baseTime = histograms.get(0).getStartTimeStamp();
+            logWriter.outputLogFormatVersion();
+            logWriter.outputStartTime(baseTime);
+            logWriter.setBaseTime(baseTime);
+            logWriter.outputLegend();
+            for (Histogram histogram : histograms) {
+                logWriter.outputIntervalHistogram(histogram);
+            }
+        } catch (IOException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    protected String getHistogramLogFileName() {
+        return getBaseFileName() + ".hlog";
+    }
+    
+    protected String getDetailFileName(String detail) {
+        return getBaseFileName() + "-" + detail + ".csv";
+    }
+    
+    protected String getBaseFileName() {
+        int extensionIndex = outputFileName.lastIndexOf('.');
+        return extensionIndex > 0 ? outputFileName.substring(0, extensionIndex) : outputFileName;
+    }
+    
+    public Map<String, List<String>> getDetails() {
+        return details;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public List<Histogram> getHistograms() {
+        return histograms;
+    }
+
+    public List<ProcessOutput> getProcessOutputs() {
+        return processOutputs;
+    }
+
     public static class ProcessOutput {
         
-        protected String process;
+        public static final String AVERAGE = "average";
+        public static final String STDDEV = "stddev";
+        public static final String P50 = "p50";
+        public static final String P90 = "p90";
+        public static final String P99 = "p99";
+        public static final String P999 = "p99.9";
+        public static final String MAX = "max";
+        public static final String THROUGHPUT = "throughputPerSecond";
         
-        // index is the number of threads for these arrays
+        protected String process;
+        protected int nrOfColumns;
         
-        protected double[] averages;
-        protected double[] stddevs;
-        protected double[] throughputPerSeconds;
+        // index is the column (by default the number of threads - 1) for these arrays, 
+        // insertion order is the order of the rows in the output
+        protected Map<String, double[]> metrics = new LinkedHashMap<>();
         
-        public ProcessOutput(String name, int maxNrOfThreads) {
+        public ProcessOutput(String name, int nrOfColumns) {
             this.process = name;
-            this.averages = new double[maxNrOfThreads];
-            this.stddevs = new double[maxNrOfThreads];
-            this.throughputPerSeconds = new double[maxNrOfThreads];
+            this.nrOfColumns = nrOfColumns;
         }
         
-        public void addMeasurement(int nrOfThreads, double average, double stddev, double throughputPerSecond) {
-            averages[nrOfThreads - 1] = average;
-            stddevs[nrOfThreads - 1] = stddev;
-            throughputPerSeconds[nrOfThreads - 1] = throughputPerSecond;
+        public void addMeasurement(int columnIndex, String metric, double value) {
+            getMetric(metric)[columnIndex] = value;
         }
 
         public String getName() {
@@ -162,28 +358,29 @@ public class Output {
             this.process = name;
         }
 
-        public double[] getAverages() {
-            return averages;
+        public Map<String, double[]> getMetrics() {
+            return metrics;
         }
 
-        public void setAverages(double[] averages) {
-            this.averages = averages;
+        public double[] getMetric(String metric) {
+            double[] values = metrics.get(metric);
+            if (values == null) {
+                values = new double[nrOfColumns];
+                metrics.put(metric, values);
         }
-
-        public double[] getStddevs() {
-            return stddevs;
+            return values;
         }
 
-        public void setStddevs(double[] stddevs) {
-            this.stddevs = stddevs;
+        public double[] getAverages() {
+            return getMetric(AVERAGE);
         }
 
-        public double[] getThroughputPerSeconds() {
-            return throughputPerSeconds;
+        public double[] getStddevs() {
+            return getMetric(STDDEV);
         }
 
-        public void setThroughputPerSeconds(double[] throughputPerSeconds) {
-            this.throughputPerSeconds = throughputPerSeconds;
+        public double[] getThroughputPerSeconds() {
+            return getMetric(THROUGHPUT);
         }
         
     }
@@ -0,0 +1,56 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.flowable.engine.common.impl.cfg.TransactionListener;
+import org.flowable.engine.common.impl.cfg.TransactionState;
+import org.flowable.engine.common.impl.context.Context;
+import org.flowable.engine.common.impl.interceptor.CommandContext;
+import org.flowable.engine.delegate.DelegateExecution;
+import org.flowable.engine.delegate.ExecutionListener;
+
+/**
+ * End event listener of the async processes: releases the thread waiting for the process instance (registered by business key)
+ * once the transaction that ended the process instance is committed, so the waiting thread sees the process as completed.
+ */
+public class ProcessCompletionListener implements ExecutionListener {
+
+    protected static ConcurrentMap<String, CountDownLatch> pendingCompletions = new ConcurrentHashMap<>();
+
+    public static CountDownLatch register(String businessKey) {
+        CountDownLatch completion = new CountDownLatch(1);
+        pendingCompletions.put(businessKey, completion);
+        return completion;
+    }
+
+    public static void unregister(String businessKey) {
+        pendingCompletions.remove(businessKey);
+    }
+
+    public void notify(DelegateExecution execution) {
+        final CountDownLatch completion = pendingCompletions.get(execution.getProcessInstanceBusinessKey());
+        if (completion != null) {
+            Context.getTransactionContext().addTransactionListener(TransactionState.COMMITTED, new TransactionListener() {
+                public void execute(CommandContext commandContext) {
+                    completion.countDown();
+                }
+            });
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.math3.util.Precision;
+
+/**
+ * Heap allocation, CPU time and garbage collection of a cell, normalised per process instance.
+ * 
+ * The allocated bytes and CPU time of every live platform thread are read from the (HotSpot) ThreadMXBean when the cell starts and when
+ * all iterations are done, before the executor threads stop, so the engine threads (async executor, history) are included as well.
+ * Threads that ended during the cell and virtual threads are not counted. The garbage collectors are read the same way, the time of
+ * collectors that run concurrently with the application (e.g. 'G1 Concurrent GC', 'ZGC Cycles') is left out of the GC time, it isn't a pause.
+ */
+public class ResourceMetrics {
+
+    protected com.sun.management.ThreadMXBean threadMXBean;
+    protected Map<Long, long[]> threadsAtStart = new HashMap<>();
+    protected long allocatedBytes;
+    protected long cpuTimeInNanos;
+    protected long gcCountAtStart;
+    protected long gcTimeAtStart;
+    protected long gcCount;
+    protected long gcTimeInMs;
+
+    protected ResourceMetrics(com.sun.management.ThreadMXBean threadMXBean) {
+        this.threadMXBean = threadMXBean;
+    }
+
+    /**
+     * @return the metrics, or null when the JVM can't measure the allocated bytes and CPU time of threads
+     */
+    public static ResourceMetrics create() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            System.out.println("Thread allocation and CPU time are not supported by this JVM");
+            return null;
+        }
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threadMXBean.isThreadAllocatedMemorySupported() || !threadMXBean.isThreadCpuTimeSupported()) {
+            System.out.println("Thread allocation and CPU time are not supported by this JVM");
+            return null;
+        }
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        threadMXBean.setThreadCpuTimeEnabled(true);
+        return new ResourceMetrics(threadMXBean);
+    }
+
+    public void start() {
+        threadsAtStart = sampleThreads();
+        gcCountAtStart = sampleGcCount();
+        gcTimeAtStart = sampleGcTime();
+    }
+
+    public void stop() {
+        allocatedBytes = 0;
+        cpuTimeInNanos = 0;
+        for (Map.Entry<Long, long[]> thread : sampleThreads().entrySet()) {
+            long[] atStart = threadsAtStart.get(thread.getKey());
+            long[] atEnd = thread.getValue();
+            allocatedBytes += atStart != null ? atEnd[0] - atStart[0] : atEnd[0]; // started during the cell
+            cpuTimeInNanos += atStart != null ? atEnd[1] - atStart[1] : atEnd[1];
+        }
+        gcCount = sampleGcCount() - gcCountAtStart;
+        gcTimeInMs = sampleGcTime() - gcTimeAtStart;
+    }
+
+    /**
+     * The allocated bytes and CPU time in nanoseconds of every live thread, by thread id.
+     */
+    protected Map<Long, long[]> sampleThreads() {
+        long[] threadIds = threadMXBean.getAllThreadIds();
+        long[] allocatedBytes = threadMXBean.getThreadAllocatedBytes(threadIds);
+        long[] cpuTimes = threadMXBean.getThreadCpuTime(threadIds);
+        Map<Long, long[]> threads = new HashMap<>();
+        for (int i = 0; i < threadIds.length; i++) {
+            if (allocatedBytes[i] >= 0 && cpuTimes[i] >= 0) { // -1 when the thread ended in the meantime
+                threads.put(threadIds[i], new long[] { allocatedBytes[i], cpuTimes[i] });
+            }
+        }
+        return threads;
+    }
+
+    protected long sampleGcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean garbageCollector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, garbageCollector.getCollectionCount());
+        }
+        return count;
+    }
+
+    protected long sampleGcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean garbageCollector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (!isConcurrent(garbageCollector.getName())) {
+                time += Math.max(0, garbageCollector.getCollectionTime());
+            }
+        }
+        return time;
+    }
+
+    protected boolean isConcurrent(String garbageCollectorName) {
+        return garbageCollectorName.contains("Concurrent") || garbageCollectorName.contains("Cycles");
+    }
+
+    public void addResults(Output output, String process, String column, long nrOfIterations) {
+        output.addMeasurement(process, column, "allocatedBytesPerInstance", perIteration(allocatedBytes, nrOfIterations));
+        output.addMeasurement(process, column, "cpuTimeMsPerInstance", Output.toMillis(perIteration(cpuTimeInNanos, nrOfIterations), 3));
+        output.addMeasurement(process, column, "gcCount", gcCount);
+        output.addMeasurement(process, column, "gcTimeMs", gcTimeInMs);
+        output.addMeasurement(process, column, "gcTimeMsPerInstance", Precision.round(perIteration(gcTimeInMs, nrOfIterations), 3));
+    }
+
+    protected double perIteration(long value, long nrOfIterations) {
+        return nrOfIterations > 0 ? ((double) value) / nrOfIterations : 0;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public long getCpuTimeInNanos() {
+        return cpuTimeInNanos;
+    }
+
+    public long getGcCount() {
+        return gcCount;
+    }
+
+}
@@ -0,0 +1,276 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.HdrHistogram.HistogramLogReader;
+import org.apache.commons.math3.distribution.NormalDistribution;
+import org.apache.commons.math3.stat.inference.MannWhitneyUTest;
+import org.apache.commons.math3.util.Precision;
+
+/**
+ * Compares the latencies of two benchmark runs, e.g. before and after a Flowable upgrade, using the raw histograms of the '.hlog' files
+ * (see {@link Output#writeHistograms()}). The histograms are matched on their tag: the process and the column (thread count or offered rate).
+ * 
+ * Per cell the Mann-Whitney U test tells whether the two latency distributions differ, without assuming they are normal (they never are).
+ * The difference of the means is given as a percentage of the baseline mean with a confidence interval ('compare-confidence', 0.95 by default). 
+ * A cell is a regression when the candidate is slower by more than 'compare-threshold' percent (5 by default) and the difference
+ * is significant ('compare-alpha', 0.01 by default).
+ * 
+ * Runs standalone with 'java -cp flowable-benchmark.jar org.flowable.ResultComparison baseline.hlog candidate.hlog [threshold] [alpha]', 
+ * or after a benchmark run when 'compare-baseline' is set. In both cases the process exits with 1 when a regression is found.
+ */
+public class ResultComparison {
+
+    // The samples given to the test are taken from the histogram buckets, larger histograms are scaled down to this many
+    protected static final int MAX_SAMPLES = 100000;
+    
+    protected static final String HEADER = "process,column,baselineCount,candidateCount,baselineAverageMs,candidateAverageMs,averageDeltaPercent,"
+            + "ciLowPercent,ciHighPercent,baselineP50Ms,candidateP50Ms,p50DeltaPercent,baselineP99Ms,candidateP99Ms,p99DeltaPercent,pValue,regression";
+
+    protected double regressionThresholdPercent;
+    protected double alpha;
+    protected double confidence;
+    protected List<CellComparison> cellComparisons = new ArrayList<>();
+    protected List<String> unmatchedTags = new ArrayList<>();
+
+    public ResultComparison(double regressionThresholdPercent, double alpha, double confidence) {
+        this.regressionThresholdPercent = regressionThresholdPercent;
+        this.alpha = alpha;
+        this.confidence = confidence;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: ResultComparison <baseline.hlog> <candidate.hlog> [regression threshold in percent] [alpha]");
+            System.exit(2);
+        }
+        ResultComparison comparison = new ResultComparison(args.length > 2 ? Double.valueOf(args[2]) : 5.0, args.length > 3 ? Double.valueOf(args[3]) : 0.01, 0.95);
+        comparison.compare(readHistograms(args[0]), readHistograms(args[1]));
+        comparison.print();
+        comparison.write(new Output(args[1], Collections.<String>emptyList()).getDetailFileName("comparison"));
+        System.exit(comparison.hasRegression() ? 1 : 0);
+    }
+
+    /**
+     * Compares the histograms of the given (written) output to the 'compare-baseline' histogram log, 
+     * writes '[outputname]-comparison.csv' and returns whether there is a regression.
+     */
+    public static boolean compareToBaseline(Properties properties, Output output) {
+        ResultComparison comparison = new ResultComparison(Double.valueOf(properties.getProperty("compare-threshold", "5")), 
+                Double.valueOf(properties.getProperty("compare-alpha", "0.01")), Double.valueOf(properties.getProperty("compare-confidence", "0.95")));
+        System.out.println("Comparing " + output.getHistogramLogFileName() + " to baseline " + properties.getProperty("compare-baseline"));
+        comparison.compare(readHistograms(properties.getProperty("compare-baseline")), readHistograms(output.getHistogramLogFileName()));
+        comparison.print();
+        comparison.write(output.getDetailFileName("comparison"));
+        return comparison.hasRegression();
+    }
+
+    /**
+     * The histograms of a histogram log by tag, histograms with the same tag are added up.
+     */
+    public static Map<String, Histogram> readHistograms(String fileName) {
+        Map<String, Histogram> histograms = new LinkedHashMap<>();
+        try {
+            HistogramLogReader logReader = new HistogramLogReader(fileName);
+            EncodableHistogram encodableHistogram;
+            while ((encodableHistogram = logReader.nextIntervalHistogram()) != null) {
+                Histogram histogram = (Histogram) encodableHistogram;
+                Histogram existingHistogram = histograms.get(histogram.getTag());
+                if (existingHistogram != null) {
+                    existingHistogram.add(histogram);
+                } else {
+                    histograms.put(histogram.getTag(), histogram);
+                }
+            }
+        } catch (FileNotFoundException e) {
+            throw new RuntimeException("Invalid histogram log : " + fileName, e);
+        }
+        return histograms;
+    }
+
+    public void compare(Map<String, Histogram> baselineHistograms, Map<String, Histogram> candidateHistograms) {
+        MannWhitneyUTest mannWhitneyUTest = new MannWhitneyUTest();
+        double z = new NormalDistribution().inverseCumulativeProbability(1.0 - (1.0 - confidence) / 2.0);
+        for (String tag : candidateHistograms.keySet()) {
+            Histogram baseline = baselineHistograms.get(tag);
+            Histogram candidate = candidateHistograms.get(tag);
+            if (baseline == null || baseline.getTotalCount() == 0 || candidate.getTotalCount() == 0) {
+                unmatchedTags.add(tag);
+                continue;
+            }
+            
+            CellComparison cellComparison = new CellComparison(tag, baseline, candidate);
+            double standardError = Math.sqrt(variance(baseline) / baseline.getTotalCount() + variance(candidate) / candidate.getTotalCount());
+            double delta = candidate.getMean() - baseline.getMean();
+            cellComparison.ciLowPercent = percentOf(delta - z * standardError, baseline.getMean());
+            cellComparison.ciHighPercent = percentOf(delta + z * standardError, baseline.getMean());
+            cellComparison.pValue = mannWhitneyUTest.mannWhitneyUTest(getSamples(baseline), getSamples(candidate));
+            cellComparison.regression = cellComparison.getAverageDeltaPercent() > regressionThresholdPercent && cellComparison.pValue < alpha;
+            cellComparisons.add(cellComparison);
+        }
+        for (String tag : baselineHistograms.keySet()) {
+            if (!candidateHistograms.containsKey(tag)) {
+                unmatchedTags.add(tag);
+            }
+        }
+    }
+
+    /**
+     * The recorded values with their counts, scaled down proportionally when there are more than {@link #MAX_SAMPLES}.
+     */
+    protected static double[] getSamples(Histogram histogram) {
+        double scale = Math.min(1.0, ((double) MAX_SAMPLES) / histogram.getTotalCount());
+        List<Double> samples = new ArrayList<>();
+        double carry = 0;
+        for (HistogramIterationValue iterationValue : histogram.recordedValues()) {
+            carry += iterationValue.getCountAtValueIteratedTo() * scale;
+            double value = histogram.medianEquivalentValue(iterationValue.getValueIteratedTo());
+            while (carry >= 1.0) {
+                samples.add(value);
+                carry -= 1.0;
+            }
+        }
+        double[] sampleArray = new double[samples.size()];
+        for (int i = 0; i < sampleArray.length; i++) {
+            sampleArray[i] = samples.get(i);
+        }
+        return sampleArray;
+    }
+
+    protected static double variance(Histogram histogram) {
+        double standardDeviation = histogram.getStdDeviation();
+        return standardDeviation * standardDeviation;
+    }
+
+    protected static double percentOf(double delta, double baseline) {
+        return baseline > 0 ? 100.0 * delta / baseline : 0;
+    }
+
+    public void print() {
+        for (CellComparison cellComparison : cellComparisons) {
+            System.out.println(cellComparison.tag + ": average " + Precision.round(cellComparison.getAverageDeltaPercent(), 2) + "% ["
+                    + Precision.round(cellComparison.ciLowPercent, 2) + "%, " + Precision.round(cellComparison.ciHighPercent, 2) + "%], p50 "
+                    + Precision.round(cellComparison.getDeltaPercent(50.0), 2) + "%, p99 " + Precision.round(cellComparison.getDeltaPercent(99.0), 2) 
+                    + "%, p = " + Precision.round(cellComparison.pValue, 4) + (cellComparison.regression ? " REGRESSION" : ""));
+        }
+        for (String tag : unmatchedTags) {
+            System.out.println(tag + ": only in one of the runs, not compared");
+        }
+        System.out.println(hasRegression() ? "Regression found (threshold " + regressionThresholdPercent + "%, alpha " + alpha + ")" : "No regression found");
+    }
+
+    public void write(String fileName) {
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(Paths.get(fileName), Charset.forName("UTF-8")))) {
+            writer.println(HEADER);
+            for (CellComparison cellComparison : cellComparisons) {
+                writer.println(cellComparison.toCsv());
+            }
+        } catch (IOException exception) {
+            throw new RuntimeException(exception);
+        }
+    }
+
+    public boolean hasRegression() {
+        for (CellComparison cellComparison : cellComparisons) {
+            if (cellComparison.regression) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public List<CellComparison> getCellComparisons() {
+        return cellComparisons;
+    }
+
+    public List<String> getUnmatchedTags() {
+        return unmatchedTags;
+    }
+
+    public static class CellComparison {
+
+        protected String tag;
+        protected Histogram baseline;
+        protected Histogram candidate;
+        protected double ciLowPercent;
+        protected double ciHighPercent;
+        protected double pValue;
+        protected boolean regression;
+
+        public CellComparison(String tag, Histogram baseline, Histogram candidate) {
+            this.tag = tag;
+            this.baseline = baseline;
+            this.candidate = candidate;
+        }
+
+        public double getAverageDeltaPercent() {
+            return percentOf(candidate.getMean() - baseline.getMean(), baseline.getMean());
+        }
+
+        public double getDeltaPercent(double percentile) {
+            return percentOf(candidate.getValueAtPercentile(percentile) - baseline.getValueAtPercentile(percentile), baseline.getValueAtPercentile(percentile));
+        }
+
+        protected String toCsv() {
+            // The tag is '[process]-[column]', see Output#addResults
+            int separatorIndex = tag.lastIndexOf('-');
+            return Output.csvValue(tag.substring(0, separatorIndex)) + "," + tag.substring(separatorIndex + 1) + ","
+                    + baseline.getTotalCount() + "," + candidate.getTotalCount() + ","
+                    + Output.toMillis(baseline.getMean(), 3) + "," + Output.toMillis(candidate.getMean(), 3) + "," + Precision.round(getAverageDeltaPercent(), 2) + ","
+                    + Precision.round(ciLowPercent, 2) + "," + Precision.round(ciHighPercent, 2) + ","
+                    + Output.toMillis(baseline.getValueAtPercentile(50.0), 3) + "," + Output.toMillis(candidate.getValueAtPercentile(50.0), 3) + "," + Precision.round(getDeltaPercent(50.0), 2) + ","
+                    + Output.toMillis(baseline.getValueAtPercentile(99.0), 3) + "," + Output.toMillis(candidate.getValueAtPercentile(99.0), 3) + "," + Precision.round(getDeltaPercent(99.0), 2) + ","
+                    + Precision.round(pValue, 6) + "," + regression;
+        }
+
+
+        public String getTag() {
+            return tag;
+        }
+
+        public double getCiLowPercent() {
+            return ciLowPercent;
+        }
+
+        public double getCiHighPercent() {
+            return ciHighPercent;
+        }
+
+        public double getPValue() {
+            return pValue;
+        }
+
+        public boolean isRegression() {
+            return regression;
+        }
+
+    }
+
+}
@@ -0,0 +1,366 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.HdrHistogram.Histogram;
+import org.apache.commons.math3.distribution.NormalDistribution;
+import org.apache.commons.math3.stat.regression.SimpleRegression;
+import org.apache.commons.math3.util.Precision;
+import org.flowable.Benchmark.RecordedIteration;
+import org.flowable.BenchmarkExecutors.BoundedExecutorService;
+import org.flowable.runnable.BenchmarkRunnable;
+import org.flowable.scenario.Scenario;
+
+/**
+ * Soak mode (load-mode=soak): every process runs with 'max-threads' threads for 'soak-duration' seconds instead of a number of iterations, 
+ * to see what happens when the history tables grow, indexes fragment and the old generation fills up. Optionally the history is cleaned up 
+ * while it runs (see {@link HistoryCleaner}).
+ * 
+ * The cell runs like any other (see {@link CellExecution}), but with a time series sampled every 'soak-window-duration' seconds, 
+ * so the harness memory doesn't grow with the duration: only the throughput and a few percentiles are kept per window, 
+ * next to one histogram of the whole run. The connection pool samples are summarized per window as well.
+ * 
+ * At the end a linear regression of the window throughput (and p99 latency) on the number of completed instances gives the decay trend,
+ * per million instances. Its p-value isn't used: consecutive windows are correlated (the same table growth, GC cycles and 
+ * checkpoints spanning windows), which makes it far too small. Instead the windows are averaged over 'soak-trend-blocks' (10 by default) 
+ * non-overlapping blocks and a one-sided Mann-Kendall test on the block means gives the p-values. The process is flagged as decaying 
+ * when the throughput goes down significantly ('soak-alpha', 0.01 by default).
+ */
+public class SoakBenchmark {
+
+    public static final String THROUGHPUT_SLOPE = "throughputSlopePerMillion";
+    public static final String THROUGHPUT_CHANGE = "throughputChangePercentPerMillion";
+    public static final String THROUGHPUT_P_VALUE = "throughputTrendPValue";
+    public static final String P99_SLOPE = "p99SlopeMsPerMillion";
+    public static final String P99_P_VALUE = "p99TrendPValue";
+    public static final String DECAYING = "decaying";
+
+    protected static final double NANOS_PER_SECOND = 1000000000.0;
+    protected static final double MILLION = 1000000.0;
+
+    protected long windowDurationInMs;
+    protected double alpha;
+    protected int nrOfTrendBlocks;
+    protected List<SoakWindow> windows = new ArrayList<>();
+    protected long completedInstances;
+
+    public SoakBenchmark(long windowDurationInMs, double alpha, int nrOfTrendBlocks) {
+        this.windowDurationInMs = windowDurationInMs;
+        this.alpha = alpha;
+        this.nrOfTrendBlocks = nrOfTrendBlocks;
+    }
+
+    public static Output execute(String outputName, List<String> processes, int nrOfThreads) throws Exception {
+        long durationInMs = TimeUnit.SECONDS.toMillis(Long.valueOf(Benchmark.properties.getProperty("soak-duration", "3600")));
+        Output output = new Output(outputName, Arrays.asList(String.valueOf(nrOfThreads)));
+        List<String> executors = BenchmarkExecutors.getExecutors();
+
+        for (String executor : executors) {
+            for (String process : processes) {
+                System.out.println();
+                System.out.println("Setting up the process engine for process " + process);
+                Benchmark.asyncExecutorSettings = Benchmark.getAsyncExecutorSettingsSweep(process).get(0);
+                Scenario scenario = Benchmark.getScenario(process);
+                Object variant = scenario.getVariants().get(0);
+                String outputProcessName = Benchmark.getOutputName(process, executor, executors) + scenario.getVariantName(variant);
+                Benchmark.prepareProcessEngine(scenario.getDefinitionCacheLimit(variant));
+
+                SoakBenchmark soakBenchmark = new SoakBenchmark(TimeUnit.SECONDS.toMillis(Long.valueOf(Benchmark.properties.getProperty("soak-window-duration", "60"))),
+                        Double.valueOf(Benchmark.properties.getProperty("soak-alpha", "0.01")),
+                        Integer.valueOf(Benchmark.properties.getProperty("soak-trend-blocks", "10")));
+                soakBenchmark.executeCell(output, process, variant, outputProcessName, executor, nrOfThreads, durationInMs);
+            }
+        }
+
+        System.out.println("Done. Writing output.");
+        output.writeOutput();
+        return output;
+    }
+
+    protected void executeCell(Output output, String process, Object variant, String outputProcessName, String executor, int nrOfThreads, final long durationInMs) throws Exception {
+        String column = String.valueOf(nrOfThreads);
+        System.out.println("Soaking process " + process + " for " + TimeUnit.MILLISECONDS.toSeconds(durationInMs) + " s with " + nrOfThreads + " " + executor + " threads");
+        BoundedExecutorService executorService = BenchmarkExecutors.createExecutorService(executor, nrOfThreads);
+        final HistoryCleaner historyCleaner = HistoryCleaner.create(Benchmark.historyService);
+        if (Benchmark.poolMetrics != null) {
+            Benchmark.poolMetrics.setSummaryIntervalInMs(windowDurationInMs); // one row per soak window instead of one per sample
+        }
+        final AtomicLong nrOfIterations = new AtomicLong();
+        CellExecution cellExecution = new CellExecution(output, outputProcessName, column, executorService, createTimeSeries()) {
+
+            // Submits iterations until the soak duration is over, the executor service blocks while all threads are busy
+            protected void submitIterations(Runnable iteration, long maxNrOfIterations) {
+                if (historyCleaner != null) {
+                    historyCleaner.start();
+                }
+                long endTime = startTime + TimeUnit.MILLISECONDS.toNanos(durationInMs);
+                while (System.nanoTime() < endTime) {
+                    executorService.execute(iteration);
+                    nrOfIterations.incrementAndGet();
+                }
+            }
+
+        };
+        BenchmarkRunnable benchmarkRunnable = Benchmark.getScenario(process).createRunnable(variant);
+        benchmarkRunnable.prepare();
+        RecordedIteration iteration = new RecordedIteration(benchmarkRunnable, cellExecution.getTimeSeries().getRecorder());
+
+        cellExecution.execute(iteration, Long.MAX_VALUE);
+        if (historyCleaner != null) {
+            historyCleaner.stop();
+        }
+
+        long totalTimeInMs = cellExecution.getDurationInMs();
+        output.addResults(outputProcessName, column, nrOfIterations.get(), totalTimeInMs, cellExecution.getTimeSeries().getHistogram());
+        addResults(output, outputProcessName, column);
+        if (historyCleaner != null) {
+            output.addMeasurement(outputProcessName, column, "historyCleanupRuns", historyCleaner.getRuns());
+            output.addMeasurement(outputProcessName, column, "historyInstancesDeleted", historyCleaner.getDeletedInstances());
+            output.addMeasurement(outputProcessName, column, "historyCleanupMs", historyCleaner.getCleanupTimeInMs());
+        }
+        benchmarkRunnable.addResults(output, outputProcessName, column, nrOfIterations.get());
+        cellExecution.addResults(nrOfIterations.get(), totalTimeInMs);
+        System.out.println(nrOfIterations.get() + " iterations for process " + process + " in " + totalTimeInMs + " ms");
+    }
+
+    /**
+     * A time series sampled every soak window, of which every window is also summarized as a {@link SoakWindow} for the trend.
+     */
+    protected TimeSeries createTimeSeries() {
+        return new TimeSeries(windowDurationInMs, Integer.valueOf(Benchmark.getProperty("steady-state-windows", "5")),
+                Double.valueOf(Benchmark.getProperty("steady-state-tolerance", "0.1"))) {
+
+            protected synchronized void addWindow(long windowStartTime, long windowEndTime, Histogram windowHistogram, boolean last) {
+                SoakBenchmark.this.addWindow(windowStartTime, windowEndTime, windowHistogram, last);
+                super.addWindow(windowStartTime, windowEndTime, windowHistogram, last);
+            }
+
+        };
+    }
+
+    protected synchronized void addWindow(long windowStartTime, long windowEndTime, Histogram windowHistogram, boolean last) {
+        completedInstances += windowHistogram.getTotalCount();
+        if (last && windowHistogram.getTotalCount() == 0) {
+            return; // the run ended right after the previous window
+        }
+        SoakWindow window = new SoakWindow(windowStartTime, windowEndTime, windowHistogram.getTotalCount(), completedInstances,
+                windowHistogram.getValueAtPercentile(50.0), windowHistogram.getValueAtPercentile(99.0), windowHistogram.getMaxValue());
+        windows.add(window);
+        System.out.println("Soak " + Precision.round(window.endTime / NANOS_PER_SECOND, 0) + " s: " + Precision.round(window.getThroughputPerSecond(), 1) 
+                + " instances/s, p99 " + Output.toMillis(window.p99, 2) + " ms, " + completedInstances + " instances");
+    }
+
+    // The windows are sampled while the load runs, this is for the tests
+    synchronized void addWindow(SoakWindow window) {
+        windows.add(window);
+    }
+
+    /**
+     * Regression of the window throughput on the completed instances (in millions) at the middle of the window. 
+     * The last window is left out when it is shorter than half a window.
+     */
+    public synchronized SimpleRegression getThroughputTrend() {
+        SimpleRegression regression = new SimpleRegression();
+        for (SoakWindow window : getFullWindows()) {
+            regression.addData(window.getMiddleCompletedInstances() / MILLION, window.getThroughputPerSecond());
+        }
+        return regression;
+    }
+
+    public synchronized SimpleRegression getP99Trend() {
+        SimpleRegression regression = new SimpleRegression();
+        for (SoakWindow window : getFullWindows()) {
+            if (window.count > 0) {
+                regression.addData(window.getMiddleCompletedInstances() / MILLION, Output.toMillis(window.p99));
+            }
+        }
+        return regression;
+    }
+
+    protected List<SoakWindow> getFullWindows() {
+        List<SoakWindow> fullWindows = new ArrayList<>();
+        for (SoakWindow window : windows) {
+            if (window.endTime - window.startTime >= TimeUnit.MILLISECONDS.toNanos(windowDurationInMs) / 2) {
+                fullWindows.add(window);
+            }
+        }
+        return fullWindows;
+    }
+
+    /**
+     * The p-value of a downward trend of the window throughput, see {@link #getMannKendallPValue}.
+     */
+    public synchronized double getThroughputTrendPValue() {
+        List<Double> throughputs = new ArrayList<>();
+        for (SoakWindow window : getFullWindows()) {
+            throughputs.add(window.getThroughputPerSecond());
+        }
+        return getMannKendallPValue(getBlockMeans(throughputs), true);
+    }
+
+    /**
+     * The p-value of an upward trend of the window p99 latency.
+     */
+    public synchronized double getP99TrendPValue() {
+        List<Double> p99s = new ArrayList<>();
+        for (SoakWindow window : getFullWindows()) {
+            if (window.count > 0) {
+                p99s.add((double) window.p99);
+            }
+        }
+        return getMannKendallPValue(getBlockMeans(p99s), false);
+    }
+
+    /**
+     * The means of the values over 'soak-trend-blocks' consecutive blocks with the same number of windows, 
+     * the first windows are left out when the windows can't be split evenly. One block per window when there are fewer windows than blocks.
+     */
+    protected double[] getBlockMeans(List<Double> values) {
+        int nrOfBlocks = Math.min(nrOfTrendBlocks, values.size());
+        if (nrOfBlocks == 0) {
+            return new double[0];
+        }
+        int blockSize = values.size() / nrOfBlocks;
+        int firstIndex = values.size() - nrOfBlocks * blockSize;
+        double[] blockMeans = new double[nrOfBlocks];
+        for (int blockIndex = 0; blockIndex < nrOfBlocks; blockIndex++) {
+            double sum = 0;
+            for (int index = firstIndex + blockIndex * blockSize; index < firstIndex + (blockIndex + 1) * blockSize; index++) {
+                sum += values.get(index);
+            }
+            blockMeans[blockIndex] = sum / blockSize;
+        }
+        return blockMeans;
+    }
+
+    /**
+     * One-sided p-value of the Mann-Kendall trend test: the number of later values above an earlier one minus the number below (S),
+     * with the normal approximation of its distribution under no trend, corrected for ties. It only uses the order of the values, 
+     * so it assumes neither a linear trend nor normal residuals. 1 with fewer than 3 values.
+     */
+    protected static double getMannKendallPValue(double[] values, boolean downward) {
+        int n = values.length;
+        if (n < 3) {
+            return 1.0;
+        }
+        long s = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                s += (long) Math.signum(values[j] - values[i]);
+            }
+        }
+        double variance = n * (n - 1.0) * (2 * n + 5);
+        double[] sortedValues = values.clone();
+        Arrays.sort(sortedValues);
+        for (int i = 0; i < n;) {
+            int tieEnd = i + 1;
+            while (tieEnd < n && sortedValues[tieEnd] == sortedValues[i]) {
+                tieEnd++;
+            }
+            int tieSize = tieEnd - i;
+            variance -= tieSize * (tieSize - 1.0) * (2 * tieSize + 5);
+            i = tieEnd;
+        }
+        variance /= 18;
+        if (s == 0 || variance <= 0) {
+            return 0.5;
+        }
+        double z = (s > 0 ? s - 1 : s + 1) / Math.sqrt(variance); // continuity correction
+        double lowerTail = new NormalDistribution().cumulativeProbability(z);
+        return downward ? lowerTail : 1.0 - lowerTail;
+    }
+
+    /**
+     * A significant downward trend of the throughput.
+     */
+    public boolean isDecaying() {
+        return getThroughputTrendPValue() < alpha;
+    }
+
+    public void addResults(Output output, String process, String column) {
+        SimpleRegression throughputTrend = getThroughputTrend();
+        SimpleRegression p99Trend = getP99Trend();
+        double throughputPValue = getThroughputTrendPValue();
+        boolean decaying = throughputPValue < alpha;
+        output.addMeasurement(process, column, THROUGHPUT_SLOPE, valueOrZero(throughputTrend.getSlope()));
+        output.addMeasurement(process, column, THROUGHPUT_CHANGE, throughputTrend.getIntercept() > 0 ? valueOrZero(100.0 * throughputTrend.getSlope() / throughputTrend.getIntercept()) : 0);
+        output.addMeasurement(process, column, THROUGHPUT_P_VALUE, throughputPValue);
+        output.addMeasurement(process, column, P99_SLOPE, valueOrZero(p99Trend.getSlope()));
+        output.addMeasurement(process, column, P99_P_VALUE, getP99TrendPValue());
+        output.addMeasurement(process, column, DECAYING, decaying ? 1 : 0);
+        System.out.println("Throughput trend of " + process + ": " + Precision.round(valueOrZero(throughputTrend.getSlope()), 2) + " instances/s per million instances, p = " 
+                + Precision.round(throughputPValue, 4) + (decaying ? ", DECAYING" : ""));
+
+        List<SoakWindow> allWindows;
+        synchronized (this) {
+            allWindows = new ArrayList<>(windows);
+        }
+        for (int windowIndex = 0; windowIndex < allWindows.size(); windowIndex++) {
+            SoakWindow window = allWindows.get(windowIndex);
+            output.addDetail("soak", "process,column,window,startSeconds,endSeconds,completions,completedInstances,throughputPerSecond,p50Ms,p99Ms,maxMs",
+                    Output.csvValue(process) + "," + column + "," + windowIndex + ","
+                    + Precision.round(window.startTime / NANOS_PER_SECOND, 3) + ","
+                    + Precision.round(window.endTime / NANOS_PER_SECOND, 3) + ","
+                    + window.count + "," + window.completedInstances + ","
+                    + Precision.round(window.getThroughputPerSecond(), 2) + ","
+                    + Output.toMillis(window.p50, 3) + ","
+                    + Output.toMillis(window.p99, 3) + ","
+                    + Output.toMillis(window.max, 3));
+        }
+    }
+
+    protected double valueOrZero(double value) {
+        return Double.isNaN(value) ? 0 : value; // not enough windows
+    }
+
+    /**
+     * The summary of one window, the histogram itself is not kept.
+     */
+    public static class SoakWindow {
+
+        protected long startTime; // relative to the start of the cell
+        protected long endTime;
+        protected long count;
+        protected long completedInstances; // at the end of the window
+        protected long p50;
+        protected long p99;
+        protected long max;
+
+        public SoakWindow(long startTime, long endTime, long count, long completedInstances, long p50, long p99, long max) {
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.count = count;
+            this.completedInstances = completedInstances;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        public double getThroughputPerSecond() {
+            return endTime > startTime ? count * NANOS_PER_SECOND / (endTime - startTime) : 0;
+        }
+
+        public double getMiddleCompletedInstances() {
+            return completedInstances - count / 2.0;
+        }
+
+    }
+
+}
@@ -0,0 +1,298 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.commons.math3.util.Precision;
+
+/**
+ * Samples the latencies recorded during a benchmark cell in fixed windows ('window-duration' ms, 1000 by default),
+ * so the throughput and latency over time can be written out and the steady state part of the cell can be found:
+ * the first run of 'steady-state-windows' consecutive windows whose throughput stays within 'steady-state-tolerance'
+ * of their average. Everything before that is JIT compilation, pool and cache warmup and is left out of the results.
+ * 
+ * Only a summary of every window is kept, next to a histogram of the whole cell, one of the steady state and the histograms 
+ * of the last 'steady-state-windows' windows (the candidate steady state), so the memory doesn't grow with the duration of the cell.
+ */
+public class TimeSeries {
+
+    public static final String STEADY_STATE_START = "steadyStateStartSeconds";
+    public static final String STEADY_STATE_DURATION = "steadyStateSeconds";
+
+    protected static final double NANOS_PER_SECOND = 1000000000.0;
+
+    protected long windowDurationInMs;
+    protected int nrOfSteadyStateWindows;
+    protected double steadyStateTolerance;
+
+    protected Recorder recorder = new Recorder(Output.HIGHEST_TRACKABLE_LATENCY, Output.SIGNIFICANT_DIGITS);
+    protected List<Window> windows = new ArrayList<>();
+    protected Deque<Histogram> recentHistograms = new ArrayDeque<>(); // of the last windows, the newest last
+    protected Histogram recycledHistogram;
+    protected Histogram histogram = Output.createHistogram();
+    protected Histogram steadyStateHistogram;
+    protected int steadyStateStartIndex = -1;
+    protected ScheduledExecutorService sampler;
+    protected long startTime;
+    protected long lastSampleTime;
+    protected boolean stopped;
+
+    public TimeSeries(long windowDurationInMs, int nrOfSteadyStateWindows, double steadyStateTolerance) {
+        this.windowDurationInMs = windowDurationInMs;
+        this.nrOfSteadyStateWindows = nrOfSteadyStateWindows;
+        this.steadyStateTolerance = steadyStateTolerance;
+    }
+
+    /**
+     * Creates a time series with the window and steady state settings of the benchmark configuration (or the defaults).
+     */
+    public static TimeSeries create() {
+        return new TimeSeries(Long.valueOf(Benchmark.getProperty("window-duration", "1000")),
+                Integer.valueOf(Benchmark.getProperty("steady-state-windows", "5")),
+                Double.valueOf(Benchmark.getProperty("steady-state-tolerance", "0.1")));
+    }
+
+    public Recorder getRecorder() {
+        return recorder;
+    }
+
+    public void start() {
+        startTime = System.nanoTime();
+        lastSampleTime = startTime;
+        recorder.reset();
+        sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                sample(false);
+            }
+        }, windowDurationInMs, windowDurationInMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops sampling, the iterations completed since the last full window end up in a last (partial) window.
+     */
+    public void stop() throws InterruptedException {
+        sampler.shutdown();
+        sampler.awaitTermination(1, TimeUnit.MINUTES);
+        sample(true);
+    }
+
+    protected synchronized void sample(boolean last) {
+        long sampleTime = System.nanoTime();
+        addWindow(lastSampleTime - startTime, sampleTime - startTime, recorder.getIntervalHistogram(recycledHistogram), last);
+        lastSampleTime = sampleTime;
+    }
+
+    /**
+     * Adds the next window. The steady state can only start in the last 'steady-state-windows' windows once the earlier ones are known,
+     * so only their histograms are kept: when they turn out to be stable they are added to the steady state histogram, 
+     * after that every window is added when the next one arrives (the last, partial, window never is).
+     */
+    protected synchronized void addWindow(long windowStartTime, long windowEndTime, Histogram windowHistogram, boolean last) {
+        histogram.add(windowHistogram);
+        windows.add(new Window(windowStartTime, windowEndTime, windowHistogram));
+        recentHistograms.addLast(windowHistogram);
+        recycledHistogram = null;
+        if (last) {
+            stopped = true;
+        } else if (steadyStateStartIndex < 0 && windows.size() >= nrOfSteadyStateWindows 
+                && isStable(windows.subList(windows.size() - nrOfSteadyStateWindows, windows.size()))) {
+            steadyStateStartIndex = windows.size() - nrOfSteadyStateWindows;
+            steadyStateHistogram = Output.createHistogram();
+        }
+
+        int nrOfKeptHistograms = steadyStateStartIndex >= 0 ? 1 : nrOfSteadyStateWindows;
+        while (recentHistograms.size() > nrOfKeptHistograms) {
+            int oldestWindowIndex = windows.size() - recentHistograms.size();
+            Histogram oldestHistogram = recentHistograms.removeFirst();
+            if (steadyStateStartIndex >= 0 && oldestWindowIndex >= steadyStateStartIndex) {
+                steadyStateHistogram.add(oldestHistogram);
+            }
+            recycledHistogram = oldestHistogram;
+        }
+    }
+
+    public synchronized List<Window> getWindows() {
+        return new ArrayList<>(windows);
+    }
+
+    /**
+     * @return the index of the first window of the steady state, or -1 when the throughput hasn't stabilized (yet)
+     */
+    public synchronized int getSteadyStateStartIndex() {
+        return steadyStateStartIndex;
+    }
+
+    public boolean isSteady() {
+        return getSteadyStateStartIndex() >= 0;
+    }
+
+    protected boolean isStable(List<Window> candidateWindows) {
+        double averageThroughput = 0;
+        for (Window window : candidateWindows) {
+            averageThroughput += window.getThroughputPerSecond();
+        }
+        averageThroughput = averageThroughput / candidateWindows.size();
+        if (averageThroughput <= 0) {
+            return false;
+        }
+
+        for (Window window : candidateWindows) {
+            if (Math.abs(window.getThroughputPerSecond() - averageThroughput) > steadyStateTolerance * averageThroughput) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The full windows from the start of the steady state on. The last, partial, window is left out as well: 
+     * in a closed-loop cell that is where the last iterations drain and the throughput drops.
+     * 
+     * @return null when no steady state was found
+     */
+    public synchronized List<Window> getSteadyStateWindows() {
+        if (steadyStateStartIndex < 0) {
+            return null;
+        }
+        return new ArrayList<>(windows.subList(steadyStateStartIndex, stopped ? windows.size() - 1 : windows.size()));
+    }
+
+    /**
+     * The latencies of the steady state windows, except the newest one (the last, partial, window once stopped).
+     * 
+     * @return null when no steady state was found
+     */
+    public synchronized Histogram getSteadyStateHistogram() {
+        return steadyStateHistogram != null ? steadyStateHistogram.copy() : null;
+    }
+
+    /**
+     * All latencies recorded during the cell.
+     */
+    public synchronized Histogram getHistogram() {
+        return histogram.copy();
+    }
+
+    /**
+     * Adds the results of the cell to the output: computed over the steady state windows when a steady state was found,
+     * over the whole cell otherwise. Every window is written to the '[outputname]-timeseries.csv' file.
+     * 
+     * @return the histogram the results were computed with
+     */
+    public Histogram addResults(Output output, String process, String column, long nrOfIterations, long totalDurationInMs) {
+        List<Window> steadyStateWindows = getSteadyStateWindows();
+        Histogram resultHistogram;
+        if (steadyStateWindows != null && !steadyStateWindows.isEmpty()) {
+            Window firstWindow = steadyStateWindows.get(0);
+            Window lastWindow = steadyStateWindows.get(steadyStateWindows.size() - 1);
+            resultHistogram = getSteadyStateHistogram();
+            output.addResults(process, column, resultHistogram.getTotalCount(),
+                    TimeUnit.NANOSECONDS.toMillis(lastWindow.getEndTime() - firstWindow.getStartTime()), resultHistogram);
+            output.addMeasurement(process, column, STEADY_STATE_START, Precision.round(firstWindow.getStartTime() / NANOS_PER_SECOND, 3));
+            output.addMeasurement(process, column, STEADY_STATE_DURATION, Precision.round((lastWindow.getEndTime() - firstWindow.getStartTime()) / NANOS_PER_SECOND, 3));
+            System.out.println("Steady state reached after " + Precision.round(firstWindow.getStartTime() / NANOS_PER_SECOND, 1) + " s");
+
+        } else {
+            resultHistogram = getHistogram();
+            output.addResults(process, column, nrOfIterations, totalDurationInMs, resultHistogram);
+            output.addMeasurement(process, column, STEADY_STATE_START, -1);
+            output.addMeasurement(process, column, STEADY_STATE_DURATION, 0);
+            System.out.println("No steady state reached, reporting over the whole run");
+        }
+
+        addTimeSeries(output, process, column);
+        return resultHistogram;
+    }
+
+    public void addTimeSeries(Output output, String process, String column) {
+        int steadyStateStartIndex = getSteadyStateStartIndex();
+        List<Window> allWindows = getWindows();
+        for (int windowIndex = 0; windowIndex < allWindows.size(); windowIndex++) {
+            Window window = allWindows.get(windowIndex);
+            output.addDetail("timeseries", "process,column,window,startSeconds,endSeconds,completions,throughputPerSecond,p50Ms,p99Ms,maxMs,steadyState",
+                    Output.csvValue(process) + "," + column + "," + windowIndex + ","
+                    + Precision.round(window.getStartTime() / NANOS_PER_SECOND, 3) + ","
+                    + Precision.round(window.getEndTime() / NANOS_PER_SECOND, 3) + ","
+                    + window.getCount() + ","
+                    + Precision.round(window.getThroughputPerSecond(), 2) + ","
+                    + Output.toMillis(window.getP50(), 3) + ","
+                    + Output.toMillis(window.getP99(), 3) + ","
+                    + Output.toMillis(window.getMax(), 3) + ","
+                    + (steadyStateStartIndex >= 0 && windowIndex >= steadyStateStartIndex ? 1 : 0));
+        }
+    }
+
+
+    /**
+     * The summary of one window, the histogram itself is not kept.
+     */
+    public static class Window {
+
+        protected long startTime; // relative to the start of the cell
+        protected long endTime;
+        protected long count;
+        protected long p50;
+        protected long p99;
+        protected long max;
+
+        public Window(long startTime, long endTime, Histogram histogram) {
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.count = histogram.getTotalCount();
+            this.p50 = histogram.getValueAtPercentile(50.0);
+            this.p99 = histogram.getValueAtPercentile(99.0);
+            this.max = histogram.getMaxValue();
+        }
+
+        public long getStartTime() {
+            return startTime;
+        }
+
+        public long getEndTime() {
+            return endTime;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getThroughputPerSecond() {
+            return endTime > startTime ? count * NANOS_PER_SECOND / (endTime - startTime) : 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,172 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * The type and size of the process variable of the variablePayload process. Every type takes a different path through the engine:
+ * strings longer than 4000 characters and JSON longer than 4000 characters are stored as byte arrays (longString and longJson), 
+ * serializable objects and byte arrays always are.
+ */
+public class VariablePayload {
+
+    public static final String STRING = "string";
+    public static final String JSON = "json";
+    public static final String SERIALIZABLE = "serializable";
+    public static final String BYTES = "bytes";
+
+    protected static final List<String> TYPES = Arrays.asList(STRING, JSON, SERIALIZABLE, BYTES);
+    protected static final int JSON_ITEM_SIZE = 100;
+
+    protected static ObjectMapper objectMapper = new ObjectMapper();
+
+    protected String type;
+    protected int size;
+
+    public VariablePayload(String type, int size) {
+        if (!TYPES.contains(type)) {
+            throw new RuntimeException("Invalid payload type : " + type);
+        }
+        this.type = type;
+        this.size = size;
+    }
+
+    /**
+     * Every combination of the 'payload-types' (all by default) and 'payload-sizes' (in bytes, 100,10000,1000000 by default) properties.
+     */
+    public static List<VariablePayload> getSweep() {
+        List<VariablePayload> sweep = new ArrayList<>();
+        for (String type : Benchmark.properties.getProperty("payload-types", String.join(",", TYPES)).split(",")) {
+            for (String size : Benchmark.properties.getProperty("payload-sizes", "100,10000,1000000").split(",")) {
+                try {
+                    sweep.add(new VariablePayload(type.trim(), Integer.valueOf(size.trim())));
+                } catch (NumberFormatException e) {
+                    throw new RuntimeException("Invalid payload size : " + size);
+                }
+            }
+        }
+        return sweep;
+    }
+
+    /**
+     * A value of about the payload size: the size of the string, the serialized JSON, the serialized object or the byte array. 
+     */
+    public Object createValue() {
+        if (STRING.equals(type)) {
+            return createString(size);
+
+        } else if (JSON.equals(type)) {
+            ObjectNode objectNode = objectMapper.createObjectNode();
+            ArrayNode items = objectNode.putArray("items");
+            int itemSize = Math.min(JSON_ITEM_SIZE, size);
+            for (int i = 0; i < Math.max(1, size / (itemSize + 3)); i++) { // quotes and comma
+                items.add(createString(itemSize));
+            }
+            return objectNode;
+
+        } else if (SERIALIZABLE.equals(type)) {
+            return new PayloadObject(type, createBytes(size));
+
+        } else {
+            return createBytes(size);
+        }
+    }
+
+    /**
+     * The size of the given value once serialized, not counting the rows and history copies the engine writes around it.
+     */
+    public int getValueSize(Object value) {
+        try {
+            if (value instanceof String) {
+                return ((String) value).getBytes(StandardCharsets.UTF_8).length;
+            } else if (value instanceof ObjectNode) {
+                return objectMapper.writeValueAsBytes(value).length;
+            } else if (value instanceof byte[]) {
+                return ((byte[]) value).length;
+            } else {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(bytes)) {
+                    objectOutputStream.writeObject(value);
+                }
+                return bytes.size();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not serialize payload " + this, e);
+        }
+    }
+
+    protected static String createString(int length) {
+        char[] characters = new char[length];
+        for (int i = 0; i < length; i++) {
+            characters[i] = (char) ('a' + i % 26);
+        }
+        return new String(characters);
+    }
+
+    protected static byte[] createBytes(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) i;
+        }
+        return bytes;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return type + "-" + size + "B"; // no commas, it ends up in csv files and histogram tags
+    }
+
+    public static class PayloadObject implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        protected String name;
+        protected byte[] data;
+
+        public PayloadObject(String name, byte[] data) {
+            this.name = name;
+            this.data = data;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+    }
+
+}
@@ -0,0 +1,80 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable.command;
+
+import org.flowable.command.CommandMetrics.CommandTiming;
+import org.flowable.engine.common.impl.context.Context;
+import org.flowable.engine.common.impl.interceptor.AbstractCommandInterceptor;
+import org.flowable.engine.common.impl.interceptor.Command;
+import org.flowable.engine.common.impl.interceptor.CommandConfig;
+import org.flowable.engine.common.impl.interceptor.CommandContext;
+import org.flowable.engine.common.impl.interceptor.CommandContextCloseListener;
+
+/**
+ * Last interceptor before the command invoker (a custom post command interceptor): measures the execution of the command 
+ * and, through a close listener on the command context, the time it takes to flush the sessions and commit.
+ * 
+ * The transaction close listener is registered before this one, so the commit happens between 
+ * {@link CommandContextCloseListener#closing(CommandContext)} and {@link CommandContextCloseListener#afterSessionsFlush(CommandContext)}.
+ */
+public class CommandExecutionTimingInterceptor extends AbstractCommandInterceptor {
+
+    protected CommandMetrics commandMetrics;
+
+    public CommandExecutionTimingInterceptor(CommandMetrics commandMetrics) {
+        this.commandMetrics = commandMetrics;
+    }
+
+    @Override
+    public <T> T execute(CommandConfig config, Command<T> command) {
+        CommandTiming commandTiming = commandMetrics.getCurrentCommandTiming();
+        if (commandTiming == null || commandTiming.executionStartTime != 0L) {
+            return next.execute(config, command); // nested command
+        }
+
+        Context.getCommandContext().addCloseListener(new FlushTimingCloseListener(commandTiming));
+        commandTiming.executionStartTime = System.nanoTime();
+        try {
+            return next.execute(config, command);
+        } finally {
+            commandTiming.executionEndTime = System.nanoTime();
+        }
+    }
+
+    protected static class FlushTimingCloseListener implements CommandContextCloseListener {
+
+        protected CommandTiming commandTiming;
+
+        public FlushTimingCloseListener(CommandTiming commandTiming) {
+            this.commandTiming = commandTiming;
+        }
+
+        public void closing(CommandContext commandContext) {
+            commandTiming.flushStartTime = System.nanoTime();
+        }
+
+        public void afterSessionsFlush(CommandContext commandContext) {
+            commandTiming.flushEndTime = System.nanoTime();
+        }
+
+        public void closed(CommandContext commandContext) {
+        }
+
+        public void closeFailure(CommandContext commandContext) {
+            commandTiming.flushEndTime = System.nanoTime();
+        }
+
+    }
+
+}
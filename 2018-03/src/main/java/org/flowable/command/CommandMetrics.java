@@ -0,0 +1,220 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable.command;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.apache.commons.math3.util.Precision;
+import org.flowable.Output;
+import org.flowable.engine.common.impl.interceptor.Command;
+import org.flowable.engine.common.impl.interceptor.CommandInterceptor;
+
+/**
+ * Latency histograms per engine command class (StartProcessInstanceCmd, CompleteTaskCmd, query and job commands, ...), 
+ * with the time of every command split up in:
+ * 
+ * - execution: the command itself and the agenda operations it plans (measured by {@link CommandExecutionTimingInterceptor})
+ * - flush: flushing the sessions and committing the transaction, i.e. the time writing to the database
+ * - overhead: everything else, i.e. the interceptor chain, creating and closing the command context, ...
+ * 
+ * Only the outermost command on a thread is measured, nested commands are part of the execution time of their parent.
+ */
+public class CommandMetrics {
+
+    protected static final long HIGHEST_TRACKABLE_LATENCY = TimeUnit.MINUTES.toNanos(10);
+    protected static final int SIGNIFICANT_DIGITS = 2;
+
+    protected ConcurrentMap<String, CommandStatistics> commandStatistics = new ConcurrentHashMap<>();
+    protected ThreadLocal<CommandTiming> currentCommandTiming = new ThreadLocal<>();
+
+    public CommandInterceptor createTimingInterceptor() {
+        return new CommandTimingInterceptor(this);
+    }
+
+    public CommandInterceptor createExecutionTimingInterceptor() {
+        return new CommandExecutionTimingInterceptor(this);
+    }
+
+    public void reset() {
+        commandStatistics.clear();
+    }
+
+    /**
+     * @return the timing for the command, or null when the command is nested in another one that is already measured
+     */
+    protected CommandTiming startCommand(Command<?> command) {
+        if (currentCommandTiming.get() != null) {
+            return null;
+        }
+        CommandTiming commandTiming = new CommandTiming(getCommandName(command));
+        currentCommandTiming.set(commandTiming);
+        return commandTiming;
+    }
+
+    protected CommandTiming getCurrentCommandTiming() {
+        return currentCommandTiming.get();
+    }
+
+    protected void endCommand(CommandTiming commandTiming) {
+        currentCommandTiming.remove();
+        commandTiming.endTime = System.nanoTime();
+        getCommandStatistics(commandTiming.commandName).record(commandTiming);
+    }
+
+    protected CommandStatistics getCommandStatistics(String commandName) {
+        CommandStatistics statistics = commandStatistics.get(commandName);
+        if (statistics == null) {
+            statistics = new CommandStatistics(commandName);
+            CommandStatistics existingStatistics = commandStatistics.putIfAbsent(commandName, statistics);
+            if (existingStatistics != null) {
+                statistics = existingStatistics;
+            }
+        }
+        return statistics;
+    }
+
+    protected String getCommandName(Command<?> command) {
+        String commandName = command.getClass().getName();
+        int lambdaIndex = commandName.indexOf("$$Lambda");
+        if (lambdaIndex > 0) {
+            commandName = commandName.substring(0, lambdaIndex);
+        }
+        return commandName.substring(commandName.lastIndexOf('.') + 1);
+    }
+
+    public List<CommandStatistics> getCommandStatistics() {
+        List<CommandStatistics> statistics = new ArrayList<>(commandStatistics.values());
+        Collections.sort(statistics, new Comparator<CommandStatistics>() {
+            public int compare(CommandStatistics statistics1, CommandStatistics statistics2) {
+                return Double.compare(statistics2.getTotalTimeInNanos(), statistics1.getTotalTimeInNanos());
+            }
+        });
+        return statistics;
+    }
+
+    /**
+     * Writes one row per command class to the '[outputname]-commands.csv' file, ordered by the total time spent in the command.
+     */
+    public void addResults(Output output, String process, String column, long nrOfIterations) {
+        for (CommandStatistics statistics : getCommandStatistics()) {
+            Histogram total = statistics.getTotal();
+            output.addDetail("commands", "process,column,command,count,countPerInstance,"
+                    + "averageMs,p50Ms,p90Ms,p99Ms,maxMs,executionAverageMs,executionP99Ms,flushAverageMs,flushP99Ms,overheadAverageMs,overheadP99Ms",
+                    Output.csvValue(process) + "," + column + "," + statistics.getCommandName() + ","
+                    + total.getTotalCount() + ","
+                    + Precision.round(((double) total.getTotalCount()) / nrOfIterations, 2) + ","
+                    + Output.toMillis(total.getMean(), 3) + ","
+                    + Output.toMillis(total.getValueAtPercentile(50.0), 3) + ","
+                    + Output.toMillis(total.getValueAtPercentile(90.0), 3) + ","
+                    + Output.toMillis(total.getValueAtPercentile(99.0), 3) + ","
+                    + Output.toMillis(total.getMaxValue(), 3) + ","
+                    + Output.toMillis(statistics.getExecution().getMean(), 3) + ","
+                    + Output.toMillis(statistics.getExecution().getValueAtPercentile(99.0), 3) + ","
+                    + Output.toMillis(statistics.getFlush().getMean(), 3) + ","
+                    + Output.toMillis(statistics.getFlush().getValueAtPercentile(99.0), 3) + ","
+                    + Output.toMillis(statistics.getOverhead().getMean(), 3) + ","
+                    + Output.toMillis(statistics.getOverhead().getValueAtPercentile(99.0), 3));
+        }
+    }
+
+
+    protected static class CommandTiming {
+
+        protected String commandName;
+        protected long startTime = System.nanoTime();
+        protected long executionStartTime;
+        protected long executionEndTime;
+        protected long flushStartTime;
+        protected long flushEndTime;
+        protected long endTime;
+
+        public CommandTiming(String commandName) {
+            this.commandName = commandName;
+        }
+
+        public long getExecutionTime() {
+            return executionEndTime - executionStartTime;
+        }
+
+        public long getFlushTime() {
+            return flushEndTime > flushStartTime ? flushEndTime - flushStartTime : 0L;
+        }
+
+        public long getTotalTime() {
+            return endTime - startTime;
+        }
+
+    }
+
+    public static class CommandStatistics {
+
+        protected String commandName;
+        protected Histogram total = new ConcurrentHistogram(HIGHEST_TRACKABLE_LATENCY, SIGNIFICANT_DIGITS);
+        protected Histogram execution = new ConcurrentHistogram(HIGHEST_TRACKABLE_LATENCY, SIGNIFICANT_DIGITS);
+        protected Histogram flush = new ConcurrentHistogram(HIGHEST_TRACKABLE_LATENCY, SIGNIFICANT_DIGITS);
+        protected Histogram overhead = new ConcurrentHistogram(HIGHEST_TRACKABLE_LATENCY, SIGNIFICANT_DIGITS);
+
+        public CommandStatistics(String commandName) {
+            this.commandName = commandName;
+        }
+
+        protected void record(CommandTiming commandTiming) {
+            long totalTime = commandTiming.getTotalTime();
+            long executionTime = commandTiming.getExecutionTime();
+            long flushTime = commandTiming.getFlushTime();
+            record(total, totalTime);
+            record(execution, executionTime);
+            record(flush, flushTime);
+            record(overhead, totalTime - executionTime - flushTime);
+        }
+
+        protected void record(Histogram histogram, long value) {
+            histogram.recordValue(Math.max(0L, Math.min(value, HIGHEST_TRACKABLE_LATENCY)));
+        }
+
+        public String getCommandName() {
+            return commandName;
+        }
+
+        public double getTotalTimeInNanos() {
+            return total.getMean() * total.getTotalCount();
+        }
+
+        public Histogram getTotal() {
+            return total;
+        }
+
+        public Histogram getExecution() {
+            return execution;
+        }
+
+        public Histogram getFlush() {
+            return flush;
+        }
+
+        public Histogram getOverhead() {
+            return overhead;
+        }
+
+    }
+
+}
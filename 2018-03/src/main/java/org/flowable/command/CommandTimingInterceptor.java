@@ -0,0 +1,46 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable.command;
+
+import org.flowable.command.CommandMetrics.CommandTiming;
+import org.flowable.engine.common.impl.interceptor.AbstractCommandInterceptor;
+import org.flowable.engine.common.impl.interceptor.Command;
+import org.flowable.engine.common.impl.interceptor.CommandConfig;
+
+/**
+ * First interceptor of the chain (a custom pre command interceptor): measures the total time of a command.
+ */
+public class CommandTimingInterceptor extends AbstractCommandInterceptor {
+
+    protected CommandMetrics commandMetrics;
+
+    public CommandTimingInterceptor(CommandMetrics commandMetrics) {
+        this.commandMetrics = commandMetrics;
+    }
+
+    @Override
+    public <T> T execute(CommandConfig config, Command<T> command) {
+        CommandTiming commandTiming = commandMetrics.startCommand(command);
+        if (commandTiming == null) {
+            return next.execute(config, command);
+        }
+
+        try {
+            return next.execute(config, command);
+        } finally {
+            commandMetrics.endCommand(commandTiming);
+        }
+    }
+
+}
@@ -0,0 +1,238 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable.jdbc;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+/**
+ * DataSource wrapping the real (pooled) one, handing out connections whose statements report to a {@link JdbcMetrics}:
+ * every execute call is timed and counted by statement type, batches, affected rows and the size of bound string and binary parameters are counted as well.
+ *
+ * Uses dynamic proxies, so it works with any driver. The overhead is a reflective call per JDBC call,
+ * which is why it is only installed when the 'jdbc-metrics' property is enabled.
+ */
+public class InstrumentedDataSource implements DataSource, Closeable {
+
+    protected DataSource delegate;
+    protected JdbcMetrics jdbcMetrics;
+
+    public InstrumentedDataSource(DataSource delegate, JdbcMetrics jdbcMetrics) {
+        this.delegate = delegate;
+        this.jdbcMetrics = jdbcMetrics;
+    }
+
+    public Connection getConnection() throws SQLException {
+        return wrapConnection(delegate.getConnection());
+    }
+
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrapConnection(delegate.getConnection(username, password));
+    }
+
+    protected Connection wrapConnection(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, new ConnectionHandler(connection, jdbcMetrics));
+    }
+
+    public DataSource getDelegate() {
+        return delegate;
+    }
+
+    public JdbcMetrics getJdbcMetrics() {
+        return jdbcMetrics;
+    }
+
+    public void close() throws IOException {
+        if (delegate instanceof Closeable) {
+            ((Closeable) delegate).close();
+        }
+    }
+
+    public PrintWriter getLogWriter() throws SQLException {
+        return delegate.getLogWriter();
+    }
+
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        delegate.setLogWriter(out);
+    }
+
+    public void setLoginTimeout(int seconds) throws SQLException {
+        delegate.setLoginTimeout(seconds);
+    }
+
+    public int getLoginTimeout() throws SQLException {
+        return delegate.getLoginTimeout();
+    }
+
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return delegate.getParentLogger();
+    }
+
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return delegate.unwrap(iface);
+    }
+
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || delegate.isWrapperFor(iface);
+    }
+
+    protected static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    protected static class ConnectionHandler implements InvocationHandler {
+
+        protected Connection connection;
+        protected JdbcMetrics jdbcMetrics;
+
+        public ConnectionHandler(Connection connection, JdbcMetrics jdbcMetrics) {
+            this.connection = connection;
+            this.jdbcMetrics = jdbcMetrics;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+            if (methodName.equals("commit") || methodName.equals("rollback")) {
+                long startTime = System.nanoTime();
+                try {
+                    return InstrumentedDataSource.invoke(connection, method, args);
+                } finally {
+                    jdbcMetrics.recordTime(System.nanoTime() - startTime);
+                }
+            }
+
+            Object result = InstrumentedDataSource.invoke(connection, method, args);
+            if (result instanceof CallableStatement) {
+                return wrapStatement(CallableStatement.class, (Statement) result, (String) args[0]);
+            } else if (result instanceof PreparedStatement) {
+                return wrapStatement(PreparedStatement.class, (Statement) result, (String) args[0]);
+            } else if (result instanceof Statement) {
+                return wrapStatement(Statement.class, (Statement) result, null);
+            }
+            return result;
+        }
+
+        protected Object wrapStatement(Class<?> statementInterface, Statement statement, String sql) {
+            return Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(),
+                    new Class<?>[] { statementInterface }, new StatementHandler(statement, sql, jdbcMetrics));
+        }
+
+    }
+
+    protected static class StatementHandler implements InvocationHandler {
+
+        protected Statement statement;
+        protected String sql; // null for plain statements, which get the SQL passed with every execute call
+        protected JdbcMetrics jdbcMetrics;
+        protected int batchSize;
+        protected String batchSql;
+
+        public StatementHandler(Statement statement, String sql, JdbcMetrics jdbcMetrics) {
+            this.statement = statement;
+            this.sql = sql;
+            this.jdbcMetrics = jdbcMetrics;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+
+            if (methodName.equals("addBatch")) {
+                batchSize++;
+                if (batchSql == null) {
+                    batchSql = args != null && args.length > 0 ? (String) args[0] : sql;
+                }
+                return InstrumentedDataSource.invoke(statement, method, args);
+
+            } else if (methodName.equals("clearBatch")) {
+                batchSize = 0;
+                batchSql = null;
+                return InstrumentedDataSource.invoke(statement, method, args);
+
+            } else if (methodName.equals("executeBatch") || methodName.equals("executeLargeBatch")) {
+                long startTime = System.nanoTime();
+                Object result = InstrumentedDataSource.invoke(statement, method, args);
+                jdbcMetrics.recordBatch(batchSql, batchSize, System.nanoTime() - startTime);
+                if (result instanceof int[]) {
+                    for (int rows : (int[]) result) {
+                        jdbcMetrics.recordRows(batchSql, rows);
+                    }
+                } else if (result instanceof long[]) {
+                    for (long rows : (long[]) result) {
+                        jdbcMetrics.recordRows(batchSql, rows);
+                    }
+                }
+                batchSize = 0;
+                batchSql = null;
+                return result;
+
+            } else if (methodName.startsWith("execute")) {
+                String executedSql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : sql;
+                long startTime = System.nanoTime();
+                Object result = InstrumentedDataSource.invoke(statement, method, args);
+                jdbcMetrics.recordStatement(executedSql, System.nanoTime() - startTime);
+                if (methodName.equals("executeUpdate") || methodName.equals("executeLargeUpdate")) {
+                    jdbcMetrics.recordRows(executedSql, ((Number) result).longValue());
+                }
+                return result;
+
+            } else if (methodName.equals("setString") || methodName.equals("setBytes") || methodName.equals("setBinaryStream")) {
+                recordParameterSize(args);
+                return InstrumentedDataSource.invoke(statement, method, args);
+
+            } else if (methodName.equals("getUpdateCount") || methodName.equals("getLargeUpdateCount")) {
+                // The way MyBatis gets the affected rows after execute()
+                Object result = InstrumentedDataSource.invoke(statement, method, args);
+                jdbcMetrics.recordRows(sql, ((Number) result).longValue());
+                return result;
+            }
+
+            return InstrumentedDataSource.invoke(statement, method, args);
+        }
+
+        // Strings are counted in characters, which is close enough to their size in bytes for the ASCII data of the benchmark
+        protected void recordParameterSize(Object[] args) {
+            if (args.length == 2 && args[1] instanceof String) {
+                jdbcMetrics.recordBytes(sql, ((String) args[1]).length());
+            } else if (args.length == 2 && args[1] instanceof byte[]) {
+                jdbcMetrics.recordBytes(sql, ((byte[]) args[1]).length);
+            } else if (args.length == 3 && args[2] instanceof Number) {
+                jdbcMetrics.recordBytes(sql, ((Number) args[2]).longValue()); // setBinaryStream with a length, the way MyBatis binds a blob
+            }
+        }
+
+    }
+
+}
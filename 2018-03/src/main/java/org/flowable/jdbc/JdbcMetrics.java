@@ -0,0 +1,261 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable.jdbc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.math3.util.Precision;
+import org.flowable.Output;
+
+/**
+ * Counters for everything going through an {@link InstrumentedDataSource}: statements and affected rows per statement type,
+ * time spent inside the JDBC driver, batches, the string and binary data written and per statement shape (the SQL string of a prepared statement)
+ * the count and time, so the slowest shapes can be reported.
+ *
+ * The counters are reset at the start of every benchmark cell.
+ */
+public class JdbcMetrics {
+
+    public static final String SELECT = "select";
+    public static final String INSERT = "insert";
+    public static final String UPDATE = "update";
+    public static final String DELETE = "delete";
+    public static final String OTHER = "other";
+
+    protected static final String[] STATEMENT_TYPES = { SELECT, INSERT, UPDATE, DELETE, OTHER };
+    protected static final int NR_OF_SLOWEST_STATEMENTS = 10;
+
+    protected ConcurrentMap<String, LongAdder> statementCounts = new ConcurrentHashMap<>();
+    protected ConcurrentMap<String, LongAdder> rowCounts = new ConcurrentHashMap<>();
+    protected LongAdder jdbcTimeInNanos = new LongAdder();
+    protected LongAdder batchCount = new LongAdder();
+    protected LongAdder batchedStatementCount = new LongAdder();
+    protected LongAdder bytesWritten = new LongAdder();
+    protected ConcurrentMap<String, StatementShape> statementShapes = new ConcurrentHashMap<>();
+
+    public JdbcMetrics() {
+        for (String statementType : STATEMENT_TYPES) {
+            statementCounts.put(statementType, new LongAdder());
+            rowCounts.put(statementType, new LongAdder());
+        }
+    }
+
+    /**
+     * Resets the counters in place: statements of threads that are still running (e.g. the job executors) can be recorded at the same time,
+     * replacing the counters or the statement shapes would lose those. The shapes are kept, the ones not used in a cell are not reported.
+     */
+    public void reset() {
+        for (String statementType : STATEMENT_TYPES) {
+            statementCounts.get(statementType).reset();
+            rowCounts.get(statementType).reset();
+        }
+        jdbcTimeInNanos.reset();
+        batchCount.reset();
+        batchedStatementCount.reset();
+        bytesWritten.reset();
+        for (StatementShape statementShape : statementShapes.values()) {
+            statementShape.reset();
+        }
+    }
+
+    public void recordStatement(String sql, long durationInNanos) {
+        statementCounts.get(getStatementType(sql)).increment();
+        jdbcTimeInNanos.add(durationInNanos);
+
+        if (sql != null) {
+            StatementShape statementShape = statementShapes.get(sql);
+            if (statementShape == null) {
+                statementShape = new StatementShape(sql);
+                StatementShape existingStatementShape = statementShapes.putIfAbsent(sql, statementShape);
+                if (existingStatementShape != null) {
+                    statementShape = existingStatementShape;
+                }
+            }
+            statementShape.record(durationInNanos);
+        }
+    }
+
+    public void recordBatch(String sql, int batchSize, long durationInNanos) {
+        batchCount.increment();
+        batchedStatementCount.add(batchSize);
+        recordStatement(sql, durationInNanos);
+    }
+
+    public void recordRows(String sql, long rows) {
+        if (rows > 0) {
+            rowCounts.get(getStatementType(sql)).add(rows);
+        }
+    }
+
+    /**
+     * Records the size of a string or binary parameter bound to a statement, only counted for inserts and updates.
+     */
+    public void recordBytes(String sql, long bytes) {
+        String statementType = getStatementType(sql);
+        if (INSERT.equals(statementType) || UPDATE.equals(statementType)) {
+            bytesWritten.add(bytes);
+        }
+    }
+
+    public void recordTime(long durationInNanos) {
+        jdbcTimeInNanos.add(durationInNanos);
+    }
+
+    public static String getStatementType(String sql) {
+        if (sql == null) {
+            return OTHER;
+        }
+        String trimmedSql = sql.trim().toLowerCase(Locale.ROOT);
+        for (String statementType : STATEMENT_TYPES) {
+            if (trimmedSql.startsWith(statementType)) {
+                return statementType;
+            }
+        }
+        return OTHER;
+    }
+
+    /**
+     * Adds the counters, normalised per iteration (i.e. per process instance), as extra metrics of the given cell.
+     * The total iteration time (sum of all latencies) is used to express the JDBC time as a percentage.
+     */
+    public void addResults(Output output, String process, String column, long nrOfIterations, double totalIterationTimeInNanos) {
+        long totalStatements = 0;
+        for (String statementType : STATEMENT_TYPES) {
+            long count = statementCounts.get(statementType).sum();
+            totalStatements += count;
+            if (!OTHER.equals(statementType)) {
+                output.addMeasurement(process, column, "sql" + capitalize(statementType) + "sPerInstance", perIteration(count, nrOfIterations));
+            }
+        }
+        output.addMeasurement(process, column, "sqlStatementsPerInstance", perIteration(totalStatements, nrOfIterations));
+        output.addMeasurement(process, column, "rowsInsertedPerInstance", perIteration(rowCounts.get(INSERT).sum(), nrOfIterations));
+        output.addMeasurement(process, column, "rowsUpdatedPerInstance", perIteration(rowCounts.get(UPDATE).sum(), nrOfIterations));
+        output.addMeasurement(process, column, "rowsDeletedPerInstance", perIteration(rowCounts.get(DELETE).sum(), nrOfIterations));
+
+        long jdbcTime = jdbcTimeInNanos.sum();
+        output.addMeasurement(process, column, "jdbcTimeMsPerInstance", Output.toMillis(perIteration(jdbcTime, nrOfIterations)));
+        output.addMeasurement(process, column, "jdbcTimePercentage", totalIterationTimeInNanos > 0 ? 100.0 * jdbcTime / totalIterationTimeInNanos : 0);
+
+        long batches = batchCount.sum();
+        output.addMeasurement(process, column, "batchesPerInstance", perIteration(batches, nrOfIterations));
+        output.addMeasurement(process, column, "averageBatchSize", batches > 0 ? ((double) batchedStatementCount.sum()) / batches : 0);
+        output.addMeasurement(process, column, "bytesWrittenPerInstance", perIteration(bytesWritten.sum(), nrOfIterations));
+
+        for (StatementShape statementShape : getSlowestStatementShapes()) {
+            output.addDetail("statements", "process,column,statement,count,totalMs,averageMs,maxMs",
+                    Output.csvValue(process) + "," + column + "," + Output.csvValue(statementShape.getSql()) + ","
+                    + statementShape.getCount() + ","
+                    + Output.toMillis(statementShape.getTotalTimeInNanos(), 2) + ","
+                    + Precision.round(Output.toMillis(statementShape.getTotalTimeInNanos()) / statementShape.getCount(), 3) + ","
+                    + Output.toMillis(statementShape.getMaxTimeInNanos(), 3));
+        }
+    }
+
+    /**
+     * The statement shapes with the most time spent in JDBC in total.
+     */
+    public List<StatementShape> getSlowestStatementShapes() {
+        List<StatementShape> shapes = new ArrayList<>();
+        for (StatementShape statementShape : statementShapes.values()) {
+            if (statementShape.getCount() > 0) {
+                shapes.add(statementShape);
+            }
+        }
+        Collections.sort(shapes, new Comparator<StatementShape>() {
+            public int compare(StatementShape shape1, StatementShape shape2) {
+                return Long.compare(shape2.getTotalTimeInNanos(), shape1.getTotalTimeInNanos());
+            }
+        });
+        return shapes.subList(0, Math.min(NR_OF_SLOWEST_STATEMENTS, shapes.size()));
+    }
+
+    public long getStatementCount(String statementType) {
+        return statementCounts.get(statementType).sum();
+    }
+
+    public long getRowCount(String statementType) {
+        return rowCounts.get(statementType).sum();
+    }
+
+    public long getJdbcTimeInNanos() {
+        return jdbcTimeInNanos.sum();
+    }
+
+    public long getBatchCount() {
+        return batchCount.sum();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    protected double perIteration(long value, long nrOfIterations) {
+        return nrOfIterations > 0 ? ((double) value) / nrOfIterations : 0;
+    }
+
+    protected String capitalize(String value) {
+        return Character.toUpperCase(value.charAt(0)) + value.substring(1);
+    }
+
+    public static class StatementShape {
+
+        protected String sql;
+        protected LongAdder count = new LongAdder();
+        protected LongAdder totalTimeInNanos = new LongAdder();
+        protected volatile long maxTimeInNanos;
+
+        public StatementShape(String sql) {
+            this.sql = sql;
+        }
+
+        public void record(long durationInNanos) {
+            count.increment();
+            totalTimeInNanos.add(durationInNanos);
+            if (durationInNanos > maxTimeInNanos) {
+                maxTimeInNanos = durationInNanos; // racy, but good enough for reporting
+            }
+        }
+
+        public void reset() {
+            count.reset();
+            totalTimeInNanos.reset();
+            maxTimeInNanos = 0;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalTimeInNanos() {
+            return totalTimeInNanos.sum();
+        }
+
+        public long getMaxTimeInNanos() {
+            return maxTimeInNanos;
+        }
+
+    }
+
+}
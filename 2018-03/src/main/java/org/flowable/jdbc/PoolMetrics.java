@@ -0,0 +1,295 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable.jdbc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.commons.math3.util.Precision;
+import org.flowable.Output;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+/**
+ * Metrics of the Hikari connection pool for a benchmark cell: how long threads wait to get a connection, 
+ * how long connections are used and, sampled every 'window-duration' ms, the number of active, idle and waiting connections.
+ * When the throughput flattens while the acquisition time grows, the threads are waiting for the pool rather than for the database.
+ * 
+ * With a summary interval (the soak mode), the samples are not kept but summarized per interval, so the memory doesn't grow with the duration of the cell.
+ */
+public class PoolMetrics implements MetricsTrackerFactory {
+
+    protected static final long HIGHEST_TRACKABLE_TIME_IN_MS = TimeUnit.HOURS.toMillis(1);
+
+    protected HikariDataSource dataSource;
+    protected long sampleIntervalInMs;
+    protected long summaryIntervalInMs; // 0: every sample is kept
+
+    protected Recorder acquisitionRecorder = new Recorder(Output.HIGHEST_TRACKABLE_LATENCY, Output.SIGNIFICANT_DIGITS);
+    protected Recorder usageRecorder = new Recorder(HIGHEST_TRACKABLE_TIME_IN_MS, Output.SIGNIFICANT_DIGITS);
+    protected LongAdder timeouts = new LongAdder();
+
+    protected List<Sample> samples = new ArrayList<>();
+    protected List<SampleSummary> summaries = new ArrayList<>();
+    protected SampleSummary cellSummary = new SampleSummary(0);
+    protected ScheduledExecutorService sampler;
+    protected long startTime;
+
+    public PoolMetrics(HikariDataSource dataSource, long sampleIntervalInMs) {
+        this.dataSource = dataSource;
+        this.sampleIntervalInMs = sampleIntervalInMs;
+        dataSource.setMetricsTrackerFactory(this);
+    }
+
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        return new IMetricsTracker() {
+
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquisitionRecorder.recordValue(Math.min(elapsedAcquiredNanos, Output.HIGHEST_TRACKABLE_LATENCY));
+            }
+
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                usageRecorder.recordValue(Math.min(elapsedBorrowedMillis, HIGHEST_TRACKABLE_TIME_IN_MS));
+            }
+
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+
+        };
+    }
+
+    /**
+     * Summarizes the samples per interval from the next cell on instead of keeping all of them, 0 keeps all of them.
+     */
+    public void setSummaryIntervalInMs(long summaryIntervalInMs) {
+        this.summaryIntervalInMs = summaryIntervalInMs;
+    }
+
+    /**
+     * Resets the counters and starts sampling the pool, called at the start of every cell.
+     */
+    public void start() {
+        stop();
+        acquisitionRecorder.reset();
+        usageRecorder.reset();
+        timeouts.reset();
+        synchronized (samples) {
+            samples.clear();
+            summaries.clear();
+            cellSummary = new SampleSummary(0);
+        }
+
+        startTime = System.nanoTime();
+        sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                sample();
+            }
+        }, 0, sampleIntervalInMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (sampler != null) {
+            sampler.shutdownNow();
+            sampler = null;
+        }
+    }
+
+    protected void sample() {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        if (pool != null) {
+            Sample sample = new Sample(System.nanoTime() - startTime, pool.getActiveConnections(), pool.getIdleConnections(), 
+                    pool.getThreadsAwaitingConnection(), pool.getTotalConnections());
+            synchronized (samples) {
+                cellSummary.add(sample);
+                if (summaryIntervalInMs > 0) {
+                    long summaryIntervalInNanos = TimeUnit.MILLISECONDS.toNanos(summaryIntervalInMs);
+                    SampleSummary summary = summaries.isEmpty() ? null : summaries.get(summaries.size() - 1);
+                    if (summary == null || sample.getTime() >= summary.getStartTime() + summaryIntervalInNanos) {
+                        summary = new SampleSummary(sample.getTime() - sample.getTime() % summaryIntervalInNanos);
+                        summaries.add(summary);
+                    }
+                    summary.add(sample);
+                } else {
+                    samples.add(sample);
+                }
+            }
+        }
+    }
+
+    public List<Sample> getSamples() {
+        synchronized (samples) {
+            return new ArrayList<>(samples);
+        }
+    }
+
+    public List<SampleSummary> getSummaries() {
+        synchronized (samples) {
+            return new ArrayList<>(summaries);
+        }
+    }
+
+    /**
+     * Stops sampling and adds the pool metrics as extra rows of the cell, the samples are written to '[outputname]-pool.csv'
+     * (the summaries to '[outputname]-pool-summary.csv').
+     */
+    public void addResults(Output output, String process, String column, long nrOfIterations) {
+        stop();
+        sample(); // the state at the end of the cell
+
+        Histogram acquisitions = acquisitionRecorder.getIntervalHistogram();
+        Histogram usages = usageRecorder.getIntervalHistogram();
+        output.addMeasurement(process, column, "poolSize", dataSource.getMaximumPoolSize());
+        output.addMeasurement(process, column, "poolAcquiresPerInstance", nrOfIterations > 0 ? ((double) acquisitions.getTotalCount()) / nrOfIterations : 0);
+        output.addMeasurement(process, column, "poolAcquireAverageMs", Output.toMillis(acquisitions.getMean(), 3));
+        output.addMeasurement(process, column, "poolAcquireP99Ms", Output.toMillis(acquisitions.getValueAtPercentile(99.0), 3));
+        output.addMeasurement(process, column, "poolAcquireMaxMs", Output.toMillis(acquisitions.getMaxValue(), 3));
+        output.addMeasurement(process, column, "poolUsageAverageMs", Precision.round(usages.getMean(), 3));
+        output.addMeasurement(process, column, "poolUsageP99Ms", usages.getValueAtPercentile(99.0));
+        output.addMeasurement(process, column, "poolTimeouts", timeouts.sum());
+
+        for (Sample sample : getSamples()) {
+            output.addDetail("pool", "process,column,seconds,active,idle,pending,total",
+                    Output.csvValue(process) + "," + column + "," + Precision.round(sample.getTime() / 1000000000.0, 3) + ","
+                    + sample.getActive() + "," + sample.getIdle() + "," + sample.getPending() + "," + sample.getTotal());
+        }
+        for (SampleSummary summary : getSummaries()) {
+            output.addDetail("pool-summary", "process,column,startSeconds,samples,activeAverage,activeMax,idleAverage,pendingAverage,pendingMax,totalMax",
+                    Output.csvValue(process) + "," + column + "," + Precision.round(summary.getStartTime() / 1000000000.0, 3) + "," + summary.getCount() + ","
+                    + Precision.round(summary.getActiveAverage(), 2) + "," + summary.getActiveMax() + "," + Precision.round(summary.getIdleAverage(), 2) + ","
+                    + Precision.round(summary.getPendingAverage(), 2) + "," + summary.getPendingMax() + "," + summary.getTotalMax());
+        }
+
+        SampleSummary summary;
+        synchronized (samples) {
+            summary = cellSummary;
+        }
+        output.addMeasurement(process, column, "poolActiveAverage", summary.getActiveAverage());
+        output.addMeasurement(process, column, "poolActiveMax", summary.getActiveMax());
+        output.addMeasurement(process, column, "poolPendingAverage", summary.getPendingAverage());
+        output.addMeasurement(process, column, "poolPendingMax", summary.getPendingMax());
+    }
+
+    public static class Sample {
+
+        protected long time; // relative to the start of the cell
+        protected int active;
+        protected int idle;
+        protected int pending;
+        protected int total;
+
+        public Sample(long time, int active, int idle, int pending, int total) {
+            this.time = time;
+            this.active = active;
+            this.idle = idle;
+            this.pending = pending;
+            this.total = total;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        public int getPending() {
+            return pending;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+    }
+
+    /**
+     * The averages and maxima of the samples taken in one interval (or the whole cell).
+     */
+    public static class SampleSummary {
+
+        protected long startTime; // relative to the start of the cell
+        protected long count;
+        protected long totalActive;
+        protected long totalIdle;
+        protected long totalPending;
+        protected int activeMax;
+        protected int pendingMax;
+        protected int totalMax;
+
+        public SampleSummary(long startTime) {
+            this.startTime = startTime;
+        }
+
+        public void add(Sample sample) {
+            count++;
+            totalActive += sample.getActive();
+            totalIdle += sample.getIdle();
+            totalPending += sample.getPending();
+            activeMax = Math.max(activeMax, sample.getActive());
+            pendingMax = Math.max(pendingMax, sample.getPending());
+            totalMax = Math.max(totalMax, sample.getTotal());
+        }
+
+        public long getStartTime() {
+            return startTime;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getActiveAverage() {
+            return count > 0 ? ((double) totalActive) / count : 0;
+        }
+
+        public double getIdleAverage() {
+            return count > 0 ? ((double) totalIdle) / count : 0;
+        }
+
+        public double getPendingAverage() {
+            return count > 0 ? ((double) totalPending) / count : 0;
+        }
+
+        public int getActiveMax() {
+            return activeMax;
+        }
+
+        public int getPendingMax() {
+            return pendingMax;
+        }
+
+        public int getTotalMax() {
+            return totalMax;
+        }
+
+    }
+
+}
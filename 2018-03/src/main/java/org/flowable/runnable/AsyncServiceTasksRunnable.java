@@ -0,0 +1,85 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable.runnable;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.flowable.Benchmark;
+import org.flowable.ProcessCompletionListener;
+import org.flowable.engine.runtime.ProcessInstance;
+
+/**
+ * Starts a process instance with async service tasks and waits until the async executor has completed it,
+ * so the measured time runs from the start to the end of the process instance instead of to the return of the start call.
+ */
+public class AsyncServiceTasksRunnable extends BenchmarkRunnable {
+    
+    protected static final long MAX_WAIT_TIME_IN_MINUTES = 10;
+    
+    protected static AtomicLong businessKeyCounter = new AtomicLong();
+    
+    protected String processDefinitionKey;
+    protected long pollIntervalInMs;
+    
+    public AsyncServiceTasksRunnable(String processDefinitionKey, long pollIntervalInMs) {
+        this.processDefinitionKey = processDefinitionKey;
+        this.pollIntervalInMs = pollIntervalInMs;
+    }
+    
+    /**
+     * The end event listener only fires on this node, when another node completes the process instance it is found by polling 
+     * every 'async-completion-poll-interval' ms: the latency is rounded up to that interval.
+     */
+    public static AsyncServiceTasksRunnable create(String processDefinitionKey) {
+        return new AsyncServiceTasksRunnable(processDefinitionKey, Long.valueOf(Benchmark.properties.getProperty("async-completion-poll-interval", "1000")));
+    }
+    
+    @Override
+    protected void executeRun() {
+        String businessKey = processDefinitionKey + "-" + businessKeyCounter.incrementAndGet();
+        CountDownLatch completion = ProcessCompletionListener.register(businessKey);
+        try {
+            ProcessInstance processInstance = Benchmark.runtimeService.startProcessInstanceByKey(processDefinitionKey, businessKey);
+            waitForCompletion(processInstance, completion);
+        } finally {
+            ProcessCompletionListener.unregister(businessKey);
+        }
+    }
+    
+    protected void waitForCompletion(ProcessInstance processInstance, CountDownLatch completion) {
+        long maxEndTime = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(MAX_WAIT_TIME_IN_MINUTES);
+        try {
+            while (!completion.await(pollIntervalInMs, TimeUnit.MILLISECONDS)) {
+                // The last job could have been executed by another node (or before the listener saw the registration)
+                if (Benchmark.runtimeService.createProcessInstanceQuery().processInstanceId(processInstance.getId()).count() == 0) {
+                    return;
+                }
+                if (System.currentTimeMillis() > maxEndTime) {
+                    throw new RuntimeException("Process instance " + processInstance.getId() + " not completed after " + MAX_WAIT_TIME_IN_MINUTES + " minutes");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for process instance " + processInstance.getId(), e);
+        }
+    }
+    
+    @Override
+    public String getDescription() {
+        return processDefinitionKey;
+    }
+
+}
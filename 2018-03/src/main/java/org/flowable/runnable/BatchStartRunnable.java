@@ -0,0 +1,72 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable.runnable;
+
+import org.flowable.Benchmark;
+import org.flowable.Output;
+import org.flowable.engine.common.impl.interceptor.Command;
+import org.flowable.engine.common.impl.interceptor.CommandContext;
+
+/**
+ * Starts a batch of process instances in one engine command, so one transaction and one flush for the whole batch:
+ * the start calls inside the command reuse its command context, and the inserts of all instances are flushed together
+ * (as JDBC batches where the engine supports bulk inserts for the database). One iteration is one batch.
+ */
+public class BatchStartRunnable extends BenchmarkRunnable {
+    
+    protected String processDefinitionKey;
+    protected int batchSize;
+    protected Command<Void> batchStartCommand;
+    
+    public BatchStartRunnable(String processDefinitionKey, int batchSize) {
+        this.processDefinitionKey = processDefinitionKey;
+        this.batchSize = batchSize;
+        this.batchStartCommand = new Command<Void>() {
+            public Void execute(CommandContext commandContext) {
+                for (int i = 0; i < BatchStartRunnable.this.batchSize; i++) {
+                    Benchmark.runtimeService.startProcessInstanceByKey(BatchStartRunnable.this.processDefinitionKey);
+                }
+                return null;
+            }
+        };
+    }
+    
+    @Override
+    protected void executeRun() {
+        Benchmark.managementService.executeCommand(batchStartCommand);
+    }
+    
+    /**
+     * The latency and throughput of the cell are per batch (one iteration), these rows give them per process instance.
+     */
+    @Override
+    public void addResults(Output output, String process, String column, long nrOfIterations) {
+        Output.ProcessOutput processOutput = output.getProcessOutput(process);
+        int columnIndex = output.getColumns().indexOf(column);
+        output.addMeasurement(process, column, "batchSize", batchSize);
+        output.addMeasurement(process, column, "instancesPerSecond", processOutput.getThroughputPerSeconds()[columnIndex] * batchSize);
+        output.addMeasurement(process, column, "averageMsPerInstance", processOutput.getAverages()[columnIndex] / batchSize);
+        output.addMeasurement(process, column, "p99MsPerInstance", processOutput.getMetric(Output.ProcessOutput.P99)[columnIndex] / batchSize);
+    }
+    
+    public int getBatchSize() {
+        return batchSize;
+    }
+    
+    @Override
+    public String getDescription() {
+        return processDefinitionKey + "Batch";
+    }
+
+}
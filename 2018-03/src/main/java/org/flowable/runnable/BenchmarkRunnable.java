@@ -13,35 +13,45 @@
 
 package org.flowable.runnable;
 
-public abstract class BenchmarkRunnable implements Runnable {
+import org.HdrHistogram.Recorder;
+import org.flowable.Output;
 
-    protected long startTime;
-    protected long endTime;
-    
-    public void run() {
-        startTime = System.currentTimeMillis();
+public abstract class BenchmarkRunnable {
+
+    /**
+     * Executes one iteration and records the time between the given start time and the end of the iteration.
+     * No state is kept on this instance, so one instance can be shared by all threads of a benchmark cell.
+     * 
+     * @return the end time of the iteration
+     */
+    public long run(Recorder recorder, long startTime) {
         executeRun();
-        endTime = System.currentTimeMillis();
+        long endTime = System.nanoTime();
+        recorder.recordValue(Math.min(endTime - startTime, Output.HIGHEST_TRACKABLE_LATENCY));
+        return endTime;
     }
     
     protected abstract void executeRun();
     
-    public abstract String getDescription();
-
-    public long getStartTime() {
-        return startTime;
-    }
-
-    public void setStartTime(long startTime) {
-        this.startTime = startTime;
+    /**
+     * Called on a fresh database before the iterations of a cell start, outside of the measured time.
+     */
+    public void prepare() {
     }
-
-    public long getEndTime() {
-        return endTime;
+    
+    /**
+     * On a cluster, only the first node prepares the cell. Once it did, every node picks up its own share of the prepared data 
+     * from the database (this node being the given one of the nodes of the cell).
+     */
+    public void attach(int nodeIndex, int nrOfNodes) {
     }
-
-    public void setEndTime(long endTime) {
-        this.endTime = endTime;
+    
+    /**
+     * Adds the metrics specific to the scenario as extra rows of a cell, called when the cell is done.
+     */
+    public void addResults(Output output, String process, String column, long nrOfIterations) {
     }
     
+    public abstract String getDescription();
+
 }
@@ -0,0 +1,204 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable.runnable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.HdrHistogram.Histogram;
+import org.apache.commons.math3.util.Precision;
+import org.flowable.Benchmark;
+import org.flowable.MeteredProcessDefinitionCache;
+import org.flowable.Output;
+import org.flowable.engine.common.impl.util.IoUtil;
+import org.flowable.engine.repository.Deployment;
+import org.flowable.engine.repository.ProcessDefinition;
+
+/**
+ * Deploys 'definition-count' process definitions with 'definition-versions' versions each (one deployment per version) 
+ * and starts one instance per iteration of a definition picked with the 'definition-key-distribution': 
+ * uniform (the default) or zipfian, where the definition with rank k is picked with a weight of 1 / k^'definition-zipf-exponent'.
+ * The version is picked uniformly, so with more than one version the older definitions are started by id too.
+ * 
+ * The deployments are timed for the deployment throughput, the cache is cleared afterwards so the cell starts cold 
+ * and the hits and misses of the cell are those of the key distribution against the cache limit (see {@link MeteredProcessDefinitionCache}).
+ */
+public class DefinitionCacheRunnable extends BenchmarkRunnable {
+    
+    public static final String UNIFORM = "uniform";
+    public static final String ZIPFIAN = "zipfian";
+    
+    protected static final String TEMPLATE_KEY = "definitionCache";
+    
+    protected int nrOfDefinitions;
+    protected int nrOfVersions;
+    protected String keyDistribution;
+    protected double[] cumulativeWeights;
+    protected String[][] processDefinitionIds;
+    protected Histogram deploymentHistogram;
+    protected long deploymentTimeInNanos;
+    
+    public DefinitionCacheRunnable(int nrOfDefinitions, int nrOfVersions, String keyDistribution, double zipfExponent) {
+        if (nrOfDefinitions < 1 || nrOfVersions < 1) {
+            throw new RuntimeException("Invalid number of definitions : " + nrOfDefinitions + " x " + nrOfVersions + " versions");
+        }
+        this.nrOfDefinitions = nrOfDefinitions;
+        this.nrOfVersions = nrOfVersions;
+        this.keyDistribution = keyDistribution;
+        this.cumulativeWeights = createCumulativeWeights(nrOfDefinitions, keyDistribution, zipfExponent);
+    }
+    
+    public static DefinitionCacheRunnable create() {
+        return new DefinitionCacheRunnable(Integer.valueOf(Benchmark.properties.getProperty("definition-count", "100")), 
+                Integer.valueOf(Benchmark.properties.getProperty("definition-versions", "1")),
+                Benchmark.properties.getProperty("definition-key-distribution", UNIFORM),
+                Double.valueOf(Benchmark.properties.getProperty("definition-zipf-exponent", "1.0")));
+    }
+    
+    protected static double[] createCumulativeWeights(int nrOfDefinitions, String keyDistribution, double zipfExponent) {
+        double[] cumulativeWeights = new double[nrOfDefinitions];
+        double total = 0;
+        for (int i = 0; i < nrOfDefinitions; i++) {
+            if (UNIFORM.equals(keyDistribution)) {
+                total += 1.0;
+            } else if (ZIPFIAN.equals(keyDistribution)) {
+                total += 1.0 / Math.pow(i + 1, zipfExponent);
+            } else {
+                throw new RuntimeException("Invalid definition key distribution : " + keyDistribution);
+            }
+            cumulativeWeights[i] = total;
+        }
+        for (int i = 0; i < nrOfDefinitions; i++) {
+            cumulativeWeights[i] /= total;
+        }
+        return cumulativeWeights;
+    }
+    
+    @Override
+    public void prepare() {
+        String template = readTemplate();
+        deploymentHistogram = new Histogram(Output.HIGHEST_TRACKABLE_LATENCY, Output.SIGNIFICANT_DIGITS);
+        processDefinitionIds = new String[nrOfDefinitions][nrOfVersions];
+        
+        System.out.println("Deploying " + nrOfDefinitions + " process definitions with " + nrOfVersions + " versions each");
+        long startTime = System.nanoTime();
+        for (int version = 0; version < nrOfVersions; version++) {
+            for (int definition = 0; definition < nrOfDefinitions; definition++) {
+                String key = TEMPLATE_KEY + definition;
+                long deploymentStartTime = System.nanoTime();
+                Deployment deployment = Benchmark.repositoryService.createDeployment()
+                        .name(TEMPLATE_KEY)
+                        .addString(key + ".bpmn20.xml", template.replace("\"" + TEMPLATE_KEY + "\"", "\"" + key + "\""))
+                        .disableSchemaValidation()
+                        .deploy();
+                deploymentHistogram.recordValue(Math.min(System.nanoTime() - deploymentStartTime, Output.HIGHEST_TRACKABLE_LATENCY));
+                
+                ProcessDefinition processDefinition = Benchmark.repositoryService.createProcessDefinitionQuery().deploymentId(deployment.getId()).singleResult();
+                processDefinitionIds[definition][version] = processDefinition.getId();
+            }
+        }
+        deploymentTimeInNanos = System.nanoTime() - startTime;
+        System.out.println("Deployed in " + (deploymentTimeInNanos / 1000000) + " ms");
+        
+        if (Benchmark.definitionCache != null) {
+            Benchmark.definitionCache.clear();
+            Benchmark.definitionCache.reset();
+        }
+    }
+    
+    /**
+     * Looks up the latest 'definition-versions' versions of the definitions the first node deployed, the cache starts cold on every node.
+     */
+    @Override
+    public void attach(int nodeIndex, int nrOfNodes) {
+        processDefinitionIds = new String[nrOfDefinitions][nrOfVersions];
+        for (int definition = 0; definition < nrOfDefinitions; definition++) {
+            List<ProcessDefinition> processDefinitions = Benchmark.repositoryService.createProcessDefinitionQuery().processDefinitionKey(TEMPLATE_KEY + definition)
+                    .orderByProcessDefinitionVersion().desc().listPage(0, nrOfVersions);
+            if (processDefinitions.size() < nrOfVersions) {
+                throw new RuntimeException("Invalid number of deployed versions : " + processDefinitions.size() + " of " + TEMPLATE_KEY + definition);
+            }
+            for (int version = 0; version < nrOfVersions; version++) {
+                processDefinitionIds[definition][version] = processDefinitions.get(nrOfVersions - 1 - version).getId();
+            }
+        }
+        
+        if (Benchmark.definitionCache != null) {
+            Benchmark.definitionCache.clear();
+            Benchmark.definitionCache.reset();
+        }
+    }
+    
+    protected String readTemplate() {
+        try (InputStream inputStream = DefinitionCacheRunnable.class.getClassLoader().getResourceAsStream(TEMPLATE_KEY + ".bpmn20.xml")) {
+            return new String(IoUtil.readInputStream(inputStream, TEMPLATE_KEY + ".bpmn20.xml"), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read " + TEMPLATE_KEY + ".bpmn20.xml", e);
+        }
+    }
+    
+    @Override
+    protected void executeRun() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String[] versions = processDefinitionIds[pickDefinition(random.nextDouble())];
+        Benchmark.runtimeService.startProcessInstanceById(versions[random.nextInt(versions.length)]);
+    }
+    
+    /**
+     * The index of the definition for a uniformly distributed value between 0 and 1.
+     */
+    public int pickDefinition(double value) {
+        int index = Arrays.binarySearch(cumulativeWeights, value);
+        return Math.min(index >= 0 ? index : -index - 1, nrOfDefinitions - 1);
+    }
+    
+    @Override
+    public void addResults(Output output, String process, String column, long nrOfIterations) {
+        int nrOfDeployments = nrOfDefinitions * nrOfVersions;
+        output.addMeasurement(process, column, "deploymentsPerSecond", Precision.round(nrOfDeployments * 1000000000.0 / deploymentTimeInNanos, 2));
+        output.addMeasurement(process, column, "deploymentAverageMs", Output.toMillis(deploymentHistogram.getMean(), 3));
+        output.addMeasurement(process, column, "deploymentP99Ms", Output.toMillis(deploymentHistogram.getValueAtPercentile(99.0), 3));
+        
+        MeteredProcessDefinitionCache cache = Benchmark.definitionCache;
+        if (cache != null) {
+            long hits = cache.getHits();
+            long misses = cache.getMisses();
+            Histogram missHistogram = cache.getMissHistogram();
+            output.addMeasurement(process, column, "definitionCacheHitRate", hits + misses > 0 ? Precision.round(((double) hits) / (hits + misses), 4) : 0);
+            output.addMeasurement(process, column, "definitionCacheMissesPerInstance", nrOfIterations > 0 ? ((double) misses) / nrOfIterations : 0);
+            output.addMeasurement(process, column, "definitionCacheMissAverageMs", Output.toMillis(missHistogram.getMean(), 3));
+            output.addMeasurement(process, column, "definitionCacheMissP99Ms", Output.toMillis(missHistogram.getValueAtPercentile(99.0), 3));
+            output.addMeasurement(process, column, "definitionCacheSize", cache.size());
+        }
+    }
+    
+    public List<String> getProcessDefinitionIds() {
+        List<String> ids = new ArrayList<>();
+        for (String[] versions : processDefinitionIds) {
+            ids.addAll(Arrays.asList(versions));
+        }
+        return ids;
+    }
+    
+    @Override
+    public String getDescription() {
+        return "definitionCache";
+    }
+
+}
@@ -0,0 +1,72 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable.runnable;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.flowable.Benchmark;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.scenario.VariableGenerator;
+import org.flowable.task.api.Task;
+
+/**
+ * Generic driver for a model from the models directory: starts an instance with the variables of the generator (if any) 
+ * and, when enabled, completes the user tasks of the instance until none are left, like a user working through them.
+ */
+public class ModelRunnable extends BenchmarkRunnable {
+    
+    // Guards against models looping over user tasks forever
+    protected static final int MAX_USER_TASKS = 1000;
+    
+    protected String processDefinitionKey;
+    protected VariableGenerator variableGenerator;
+    protected boolean completeUserTasks;
+    
+    public ModelRunnable(String processDefinitionKey, VariableGenerator variableGenerator, boolean completeUserTasks) {
+        this.processDefinitionKey = processDefinitionKey;
+        this.variableGenerator = variableGenerator;
+        this.completeUserTasks = completeUserTasks;
+    }
+    
+    @Override
+    protected void executeRun() {
+        ProcessInstance processInstance = Benchmark.runtimeService.startProcessInstanceByKey(processDefinitionKey, 
+                variableGenerator != null ? variableGenerator.createVariables() : Collections.<String, Object>emptyMap());
+        
+        if (completeUserTasks) {
+            // One task at a time, completing a task can end or cancel the others (e.g. a terminate end event or a boundary event)
+            int nrOfCompletedTasks = 0;
+            List<Task> tasks = getTasks(processInstance);
+            while (!tasks.isEmpty()) {
+                Benchmark.taskService.complete(tasks.get(0).getId());
+                nrOfCompletedTasks++;
+                if (nrOfCompletedTasks > MAX_USER_TASKS) {
+                    throw new RuntimeException("Process instance " + processInstance.getId() + " still has user tasks after completing " + nrOfCompletedTasks);
+                }
+                tasks = getTasks(processInstance);
+            }
+        }
+    }
+    
+    protected List<Task> getTasks(ProcessInstance processInstance) {
+        return Benchmark.taskService.createTaskQuery().processInstanceId(processInstance.getId()).orderByTaskCreateTime().asc().list();
+    }
+    
+    @Override
+    public String getDescription() {
+        return processDefinitionKey;
+    }
+
+}
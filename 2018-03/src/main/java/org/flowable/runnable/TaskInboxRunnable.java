@@ -0,0 +1,284 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable.runnable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.commons.math3.util.Precision;
+import org.flowable.Benchmark;
+import org.flowable.Output;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.task.api.Task;
+import org.flowable.task.api.TaskQuery;
+
+/**
+ * The task inbox of a UI against a backlog of open tasks: before the cell starts, 'inbox-backlog' instances of the 'taskInbox' process are started (in parallel),
+ * every task gets one of 'inbox-groups' candidate groups and 'inbox-assigned-ratio' of them one of 'inbox-users' assignees.
+ * 
+ * Every iteration is a read or a write, picked with the read/write ratio of the cell (e.g. 9:1). A read runs one of the 'inbox-query-shapes', 
+ * for a random group or user and with one of the 'inbox-page-sizes':
+ * <ul>
+ * <li>candidateGroup: the first page of the tasks of a candidate group, newest first</li>
+ * <li>assignee: the first page of the tasks assigned to a user, newest first</li>
+ * <li>candidateOrAssigned: the first page of the tasks assigned to a user or claimable through the user's group, newest first</li>
+ * <li>count: the number of tasks of a candidate group</li>
+ * </ul>
+ * A write completes the oldest open task and starts a new instance, so the backlog keeps its size.
+ * 
+ * Every query shape, the instance starts and the completions have their own latency histogram, next to the one of all iterations.
+ */
+public class TaskInboxRunnable extends BenchmarkRunnable {
+    
+    public static final String PROCESS_DEFINITION_KEY = "taskInbox";
+    
+    public static final String CANDIDATE_GROUP = "candidateGroup";
+    public static final String ASSIGNEE = "assignee";
+    public static final String CANDIDATE_OR_ASSIGNED = "candidateOrAssigned";
+    public static final String COUNT = "count";
+    public static final String INSTANCE_START = "instanceStart";
+    public static final String COMPLETION = "completion";
+    
+    protected static final List<String> WRITE_OPERATIONS = Arrays.asList(INSTANCE_START, COMPLETION);
+    
+    protected int backlogSize;
+    protected int nrOfGroups;
+    protected int nrOfUsers;
+    protected double assignedRatio;
+    protected double readFraction;
+    protected List<String> queryShapes;
+    protected List<Integer> pageSizes;
+    protected ConcurrentLinkedQueue<String> openTaskIds = new ConcurrentLinkedQueue<>();
+    protected Map<String, Recorder> recorders = new LinkedHashMap<>();
+    protected LongAdder rowsRead = new LongAdder();
+    
+    public TaskInboxRunnable(int backlogSize, int nrOfGroups, int nrOfUsers, double assignedRatio, double readFraction, List<String> queryShapes, List<Integer> pageSizes) {
+        if (nrOfGroups < 1 || nrOfUsers < 1) {
+            throw new RuntimeException("Invalid number of inbox groups and users : " + nrOfGroups + ", " + nrOfUsers);
+        }
+        for (String queryShape : queryShapes) {
+            if (!Arrays.asList(CANDIDATE_GROUP, ASSIGNEE, CANDIDATE_OR_ASSIGNED, COUNT).contains(queryShape)) {
+                throw new RuntimeException("Invalid inbox query shape : " + queryShape);
+            }
+            recorders.put(queryShape, new Recorder(Output.HIGHEST_TRACKABLE_LATENCY, Output.SIGNIFICANT_DIGITS));
+        }
+        for (String writeOperation : WRITE_OPERATIONS) {
+            recorders.put(writeOperation, new Recorder(Output.HIGHEST_TRACKABLE_LATENCY, Output.SIGNIFICANT_DIGITS));
+        }
+        this.backlogSize = backlogSize;
+        this.nrOfGroups = nrOfGroups;
+        this.nrOfUsers = nrOfUsers;
+        this.assignedRatio = assignedRatio;
+        this.readFraction = readFraction;
+        this.queryShapes = queryShapes;
+        this.pageSizes = pageSizes;
+    }
+    
+    public static TaskInboxRunnable create(String readWriteRatio) {
+        List<String> queryShapes = new ArrayList<>();
+        for (String queryShape : Benchmark.properties.getProperty("inbox-query-shapes", CANDIDATE_GROUP + "," + ASSIGNEE + "," + CANDIDATE_OR_ASSIGNED + "," + COUNT).split(",")) {
+            queryShapes.add(queryShape.trim());
+        }
+        List<Integer> pageSizes = new ArrayList<>();
+        for (String pageSize : Benchmark.properties.getProperty("inbox-page-sizes", "25").split(",")) {
+            try {
+                pageSizes.add(Integer.valueOf(pageSize.trim()));
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("Invalid inbox page size : " + pageSize);
+            }
+        }
+        return new TaskInboxRunnable(Integer.valueOf(Benchmark.properties.getProperty("inbox-backlog", "10000")), 
+                Integer.valueOf(Benchmark.properties.getProperty("inbox-groups", "10")),
+                Integer.valueOf(Benchmark.properties.getProperty("inbox-users", "100")),
+                Double.valueOf(Benchmark.properties.getProperty("inbox-assigned-ratio", "0.2")),
+                getReadFraction(readWriteRatio), queryShapes, pageSizes);
+    }
+    
+    /**
+     * The fraction of reads for a ratio of readers to writers like '9:1'.
+     */
+    public static double getReadFraction(String readWriteRatio) {
+        String[] parts = readWriteRatio.split(":");
+        try {
+            double reads = Double.valueOf(parts[0].trim());
+            double writes = parts.length == 2 ? Double.valueOf(parts[1].trim()) : -1.0;
+            if (reads < 0 || writes < 0 || reads + writes == 0) {
+                throw new RuntimeException("Invalid read/write ratio : " + readWriteRatio);
+            }
+            return reads / (reads + writes);
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Invalid read/write ratio : " + readWriteRatio);
+        }
+    }
+    
+    @Override
+    public void prepare() {
+        System.out.println("Creating a backlog of " + backlogSize + " open inbox tasks");
+        long startTime = System.currentTimeMillis();
+        ExecutorService executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        for (int i = 0; i < backlogSize; i++) {
+            executorService.execute(new Runnable() {
+                public void run() {
+                    openTaskIds.add(startInstance()); // roughly oldest first
+                }
+            });
+        }
+        executorService.shutdown();
+        try {
+            executorService.awaitTermination(1, TimeUnit.HOURS);
+        } catch (InterruptedException e) {
+            throw new RuntimeException("Interrupted while creating the inbox backlog", e);
+        }
+        if (openTaskIds.size() < backlogSize) {
+            throw new RuntimeException("Invalid inbox backlog : " + openTaskIds.size() + " of " + backlogSize + " tasks created");
+        }
+        System.out.println("Created the backlog in " + (System.currentTimeMillis() - startTime) + " ms");
+    }
+    
+    /**
+     * Takes every n-th task of the backlog, oldest first, so the nodes complete different tasks.
+     */
+    @Override
+    public void attach(int nodeIndex, int nrOfNodes) {
+        List<Task> tasks = Benchmark.taskService.createTaskQuery().processDefinitionKey(PROCESS_DEFINITION_KEY).orderByTaskCreateTime().asc().list();
+        openTaskIds.clear();
+        for (int taskIndex = nodeIndex; taskIndex < tasks.size(); taskIndex += nrOfNodes) {
+            openTaskIds.add(tasks.get(taskIndex).getId());
+        }
+    }
+    
+    protected String startInstance() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("group", getGroup(random));
+        variables.put("assignee", random.nextDouble() < assignedRatio ? getUser(random) : "");
+        ProcessInstance processInstance = Benchmark.runtimeService.startProcessInstanceByKey(PROCESS_DEFINITION_KEY, variables);
+        return Benchmark.taskService.createTaskQuery().processInstanceId(processInstance.getId()).singleResult().getId();
+    }
+    
+    @Override
+    protected void executeRun() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < readFraction) {
+            read(queryShapes.get(random.nextInt(queryShapes.size())), pageSizes.get(random.nextInt(pageSizes.size())));
+        } else {
+            write();
+        }
+    }
+    
+    protected void read(String queryShape, int pageSize) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long startTime = System.nanoTime();
+        long rows;
+        if (COUNT.equals(queryShape)) {
+            Benchmark.taskService.createTaskQuery().taskCandidateGroup(getGroup(random)).count();
+            rows = 1;
+        } else {
+            TaskQuery taskQuery = Benchmark.taskService.createTaskQuery();
+            if (CANDIDATE_GROUP.equals(queryShape)) {
+                taskQuery.taskCandidateGroup(getGroup(random));
+            } else if (ASSIGNEE.equals(queryShape)) {
+                taskQuery.taskAssignee(getUser(random));
+            } else {
+                // the group is passed, so the engine doesn't look up the groups of the user (and MyBatis needs a public list class)
+                taskQuery.taskCandidateOrAssigned(getUser(random)).taskCandidateGroupIn(new ArrayList<>(Collections.singletonList(getGroup(random))));
+            }
+            List<Task> tasks = taskQuery.orderByTaskCreateTime().desc().listPage(0, pageSize);
+            rows = tasks.size();
+        }
+        record(queryShape, startTime);
+        rowsRead.add(rows);
+    }
+    
+    protected void write() {
+        long startTime = System.nanoTime();
+        String newTaskId = startInstance();
+        record(INSTANCE_START, startTime);
+        String taskId = openTaskIds.poll();
+        openTaskIds.add(newTaskId);
+        if (taskId != null) {
+            startTime = System.nanoTime();
+            Benchmark.taskService.complete(taskId);
+            record(COMPLETION, startTime);
+        }
+    }
+    
+    protected void record(String operation, long startTime) {
+        recorders.get(operation).recordValue(Math.min(System.nanoTime() - startTime, Output.HIGHEST_TRACKABLE_LATENCY));
+    }
+    
+    protected String getGroup(ThreadLocalRandom random) {
+        return "group" + random.nextInt(nrOfGroups);
+    }
+    
+    protected String getUser(ThreadLocalRandom random) {
+        return "user" + random.nextInt(nrOfUsers);
+    }
+    
+    /**
+     * The latencies of every query shape, the instance starts and the completions, an empty histogram for the ones that didn't run.
+     */
+    public Map<String, Histogram> getHistograms() {
+        Map<String, Histogram> histograms = new LinkedHashMap<>();
+        for (Map.Entry<String, Recorder> entry : recorders.entrySet()) {
+            histograms.put(entry.getKey(), entry.getValue().getIntervalHistogram());
+        }
+        return histograms;
+    }
+    
+    @Override
+    public void addResults(Output output, String process, String column, long nrOfIterations) {
+        long reads = 0;
+        for (Map.Entry<String, Histogram> entry : getHistograms().entrySet()) {
+            String operation = entry.getKey();
+            Histogram histogram = entry.getValue();
+            boolean writeOperation = WRITE_OPERATIONS.contains(operation);
+            if (!writeOperation) {
+                reads += histogram.getTotalCount();
+            }
+            String metricPrefix = writeOperation ? operation : operation + "Query";
+            output.addMeasurement(process, column, metricPrefix + "AverageMs", Output.toMillis(histogram.getMean(), 3));
+            output.addMeasurement(process, column, metricPrefix + "P99Ms", Output.toMillis(histogram.getValueAtPercentile(99.0), 3));
+            output.addDetail("inbox", "process,column,operation,count,averageMs,p50Ms,p90Ms,p99Ms,maxMs",
+                    Output.csvValue(process) + "," + column + "," + operation + "," + histogram.getTotalCount() + ","
+                    + Output.toMillis(histogram.getMean(), 3) + ","
+                    + Output.toMillis(histogram.getValueAtPercentile(50.0), 3) + ","
+                    + Output.toMillis(histogram.getValueAtPercentile(90.0), 3) + ","
+                    + Output.toMillis(histogram.getValueAtPercentile(99.0), 3) + ","
+                    + Output.toMillis(histogram.getMaxValue(), 3));
+        }
+        output.addMeasurement(process, column, "readPercentage", nrOfIterations > 0 ? Precision.round(100.0 * reads / nrOfIterations, 2) : 0);
+        output.addMeasurement(process, column, "rowsPerRead", reads > 0 ? Precision.round(((double) rowsRead.sum()) / reads, 2) : 0);
+        output.addMeasurement(process, column, "openTasks", Benchmark.taskService.createTaskQuery().processDefinitionKey(PROCESS_DEFINITION_KEY).count());
+    }
+    
+    @Override
+    public String getDescription() {
+        return PROCESS_DEFINITION_KEY;
+    }
+
+}
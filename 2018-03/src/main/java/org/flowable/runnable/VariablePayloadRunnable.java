@@ -0,0 +1,70 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable.runnable;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.flowable.Benchmark;
+import org.flowable.Output;
+import org.flowable.VariablePayload;
+import org.flowable.engine.runtime.ProcessInstance;
+import org.flowable.task.api.Task;
+
+/**
+ * Starts a process instance with one variable of the given payload, reads the variables back with getVariables 
+ * (timed separately, the variables are fetched from the database in a new command) and completes the user task.
+ */
+public class VariablePayloadRunnable extends BenchmarkRunnable {
+    
+    protected VariablePayload payload;
+    protected Map<String, Object> variables;
+    protected Recorder readRecorder = new Recorder(Output.HIGHEST_TRACKABLE_LATENCY, Output.SIGNIFICANT_DIGITS);
+    
+    public VariablePayloadRunnable(VariablePayload payload) {
+        this.payload = payload;
+        this.variables = Collections.singletonMap("payload", payload.createValue()); // created once, not part of the measured time
+    }
+    
+    @Override
+    protected void executeRun() {
+        ProcessInstance processInstance = Benchmark.runtimeService.startProcessInstanceByKey("variablePayload", variables);
+        
+        long readStartTime = System.nanoTime();
+        Map<String, Object> readVariables = Benchmark.runtimeService.getVariables(processInstance.getId());
+        readRecorder.recordValue(Math.min(System.nanoTime() - readStartTime, Output.HIGHEST_TRACKABLE_LATENCY));
+        if (readVariables.get("payload") == null) {
+            throw new RuntimeException("Payload variable of process instance " + processInstance.getId() + " not found");
+        }
+        
+        Task task = Benchmark.taskService.createTaskQuery().processInstanceId(processInstance.getId()).singleResult();
+        Benchmark.taskService.complete(task.getId());
+    }
+    
+    @Override
+    public void addResults(Output output, String process, String column, long nrOfIterations) {
+        Histogram reads = readRecorder.getIntervalHistogram();
+        output.addMeasurement(process, column, "valueBytes", payload.getValueSize(variables.get("payload")));
+        output.addMeasurement(process, column, "readAverageMs", Output.toMillis(reads.getMean(), 3));
+        output.addMeasurement(process, column, "readP99Ms", Output.toMillis(reads.getValueAtPercentile(99.0), 3));
+    }
+    
+    @Override
+    public String getDescription() {
+        return "variablePayload";
+    }
+
+}
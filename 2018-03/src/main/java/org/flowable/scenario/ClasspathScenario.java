@@ -0,0 +1,40 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable.scenario;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Base class for scenarios with a fixed name and fixed classpath resources, only the driver is left to implement.
+ */
+public abstract class ClasspathScenario implements Scenario {
+
+    protected String name;
+    protected List<String> resources;
+
+    public ClasspathScenario(String name, String... resources) {
+        this.name = name;
+        this.resources = Arrays.asList(resources);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getResources() {
+        return resources;
+    }
+
+}
@@ -0,0 +1,70 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable.scenario;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.flowable.runnable.BenchmarkRunnable;
+import org.flowable.runnable.ModelRunnable;
+
+/**
+ * Scenario for an executable process of a model in the models directory, named after the process key.
+ * The model files are deployed by {@link Scenarios#addResources}, so there are no classpath resources.
+ * Every cell gets a new instance of the variable generator.
+ */
+public class ModelScenario implements Scenario {
+
+    protected String processDefinitionKey;
+    protected String variableGeneratorClassName;
+    protected boolean completeUserTasks;
+
+    public ModelScenario(String processDefinitionKey, String variableGeneratorClassName, boolean completeUserTasks) {
+        this.processDefinitionKey = processDefinitionKey;
+        this.variableGeneratorClassName = variableGeneratorClassName;
+        this.completeUserTasks = completeUserTasks;
+    }
+
+    public String getName() {
+        return processDefinitionKey;
+    }
+
+    public List<String> getResources() {
+        return Collections.emptyList();
+    }
+
+    public BenchmarkRunnable createRunnable(Object variant) {
+        return new ModelRunnable(processDefinitionKey, createVariableGenerator(), completeUserTasks);
+    }
+
+    protected VariableGenerator createVariableGenerator() {
+        if (variableGeneratorClassName == null) {
+            return null;
+        }
+        try {
+            return (VariableGenerator) Class.forName(variableGeneratorClassName).getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException("Invalid variable generator : " + variableGeneratorClassName, e);
+        }
+    }
+
+    public String getVariableGeneratorClassName() {
+        return variableGeneratorClassName;
+    }
+
+    public boolean isCompleteUserTasks() {
+        return completeUserTasks;
+    }
+
+}
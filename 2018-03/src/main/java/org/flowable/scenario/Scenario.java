@@ -0,0 +1,74 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable.scenario;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.flowable.runnable.BenchmarkRunnable;
+
+/**
+ * A process that can be benchmarked: the BPMN resources to deploy and the driver executing one iteration.
+ * 
+ * Besides the built-in scenarios (see {@link Scenarios}), implementations are discovered with {@link java.util.ServiceLoader}:
+ * put the class and a 'META-INF/services/org.flowable.scenario.Scenario' file listing it on the classpath, 
+ * and add the name to the 'processes' property.
+ */
+public interface Scenario {
+
+    /**
+     * The name used in the 'processes' property and the output.
+     */
+    String getName();
+
+    /**
+     * The classpath resources to deploy, resources shared by several scenarios are deployed once.
+     */
+    List<String> getResources();
+
+    /**
+     * The variants every cell of the scenario is run with, e.g. the batch sizes of a batch start. 
+     * A list with only null for a scenario without variants.
+     */
+    default List<Object> getVariants() {
+        return Collections.singletonList(null);
+    }
+
+    /**
+     * The suffix of the name in the output for the given variant, empty for a scenario without variants.
+     */
+    default String getVariantName(Object variant) {
+        return "";
+    }
+
+    /**
+     * The limit of the process definition cache the process engine is built with for the given variant, null for the engine default.
+     */
+    default Integer getDefinitionCacheLimit(Object variant) {
+        return null;
+    }
+
+    /**
+     * Whether the process continues asynchronously, the job executor is then activated and the cells are run for every async executor setting.
+     */
+    default boolean isAsync() {
+        return false;
+    }
+
+    /**
+     * The driver of one cell for one of the variants, called for every cell. The same instance executes all iterations of the cell, from all threads.
+     */
+    BenchmarkRunnable createRunnable(Object variant);
+
+}
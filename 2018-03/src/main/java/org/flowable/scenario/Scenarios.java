@@ -0,0 +1,300 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable.scenario;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.flowable.Benchmark;
+import org.flowable.VariablePayload;
+import org.flowable.engine.repository.DeploymentBuilder;
+import org.flowable.runnable.AllSequentialServiceTasks;
+import org.flowable.runnable.AsyncServiceTasksRunnable;
+import org.flowable.runnable.BatchStartRunnable;
+import org.flowable.runnable.BenchmarkRunnable;
+import org.flowable.runnable.DefinitionCacheRunnable;
+import org.flowable.runnable.ManyVariablesRunnable;
+import org.flowable.runnable.StartToEndRunnable;
+import org.flowable.runnable.SubprocessesRunnable;
+import org.flowable.runnable.TaskInboxRunnable;
+import org.flowable.runnable.TerminateUserTasksRunnable;
+import org.flowable.runnable.VariablePayloadRunnable;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * All scenarios that can be put in the 'processes' property: the built-in ones, the ones found with {@link ServiceLoader} 
+ * and one per executable process of the BPMN files in the 'models-directory' (see {@link ModelScenario}).
+ */
+public class Scenarios {
+
+    protected static final String BPMN_NAMESPACE = "http://www.omg.org/spec/BPMN/20100524/MODEL";
+
+    protected static Map<String, Scenario> scenarios;
+    protected static Properties scenariosProperties; // the configuration the scenarios were created with
+
+    public static List<Scenario> getBuiltInScenarios() {
+        List<Scenario> scenarios = new ArrayList<>();
+        scenarios.add(new ClasspathScenario("startToEnd", "startToEnd.bpmn20.xml") {
+            public BenchmarkRunnable createRunnable(Object variant) {
+                return new StartToEndRunnable();
+            }
+        });
+        scenarios.add(new ClasspathScenario("allSequentialServiceTasks", "allSequentialServiceTasks.bpmn20.xml") {
+            public BenchmarkRunnable createRunnable(Object variant) {
+                return new AllSequentialServiceTasks();
+            }
+        });
+        scenarios.add(new ClasspathScenario("parallelSubprocesses", "parallelSubprocesses.bpmn20.xml") {
+            public BenchmarkRunnable createRunnable(Object variant) {
+                return new SubprocessesRunnable();
+            }
+        });
+        scenarios.add(new ClasspathScenario("manyVariables", "manyVariables.bpmn20.xml") {
+            public BenchmarkRunnable createRunnable(Object variant) {
+                return new ManyVariablesRunnable();
+            }
+        });
+        scenarios.add(new ClasspathScenario("terminateUserTasks", "terminateUserTasks.bpmn20.xml") {
+            public BenchmarkRunnable createRunnable(Object variant) {
+                return new TerminateUserTasksRunnable();
+            }
+        });
+        for (String process : Arrays.asList("asyncServiceTasks", "asyncNonExclusiveServiceTasks")) {
+            scenarios.add(new ClasspathScenario(process, process + ".bpmn20.xml") {
+                public boolean isAsync() {
+                    return true;
+                }
+                public BenchmarkRunnable createRunnable(Object variant) {
+                    return AsyncServiceTasksRunnable.create(name);
+                }
+            });
+        }
+        for (String process : Arrays.asList("startToEnd", "allSequentialServiceTasks")) {
+            scenarios.add(new ClasspathScenario(process + "Batch", process + ".bpmn20.xml") {
+                public List<Object> getVariants() {
+                    return new ArrayList<Object>(getBatchSizes());
+                }
+                public String getVariantName(Object variant) {
+                    return "[batch=" + variant + "]";
+                }
+                public BenchmarkRunnable createRunnable(Object variant) {
+                    return new BatchStartRunnable(process, (Integer) variant);
+                }
+            });
+        }
+        scenarios.add(new ClasspathScenario("variablePayload", "variablePayload.bpmn20.xml") {
+            public List<Object> getVariants() {
+                return new ArrayList<Object>(VariablePayload.getSweep());
+            }
+            public String getVariantName(Object variant) {
+                return "[" + variant + "]";
+            }
+            public BenchmarkRunnable createRunnable(Object variant) {
+                return new VariablePayloadRunnable((VariablePayload) variant);
+            }
+        });
+        scenarios.add(new ClasspathScenario("definitionCache") { // deploys its own definitions, see DefinitionCacheRunnable
+            public List<Object> getVariants() {
+                return new ArrayList<Object>(getDefinitionCacheLimits());
+            }
+            public String getVariantName(Object variant) {
+                return "[cache=" + ((Integer) variant > 0 ? String.valueOf(variant) : "unlimited") + "]";
+            }
+            public Integer getDefinitionCacheLimit(Object variant) {
+                return (Integer) variant;
+            }
+            public BenchmarkRunnable createRunnable(Object variant) {
+                return DefinitionCacheRunnable.create();
+            }
+        });
+        scenarios.add(new ClasspathScenario("taskInbox", "taskInbox.bpmn20.xml") {
+            public List<Object> getVariants() {
+                return new ArrayList<Object>(getInboxReadWriteRatios());
+            }
+            public String getVariantName(Object variant) {
+                return "[reads=" + variant + "]";
+            }
+            public BenchmarkRunnable createRunnable(Object variant) {
+                return TaskInboxRunnable.create((String) variant);
+            }
+        });
+        return scenarios;
+    }
+
+    /**
+     * The numbers of process instances started per command by the batch processes, from the 'batch-sizes' property.
+     */
+    public static List<Integer> getBatchSizes() {
+        List<Integer> batchSizes = new ArrayList<>();
+        for (String batchSize : Benchmark.getProperty("batch-sizes", "1,10,100").split(",")) {
+            try {
+                batchSizes.add(Integer.valueOf(batchSize.trim()));
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("Invalid batch size : " + batchSize);
+            }
+        }
+        return batchSizes;
+    }
+
+    /**
+     * The process definition cache limits the definition cache process is run with, from the 'definition-cache-limits' property.
+     * A limit of 0 or less is the engine default: no limit.
+     */
+    public static List<Integer> getDefinitionCacheLimits() {
+        List<Integer> definitionCacheLimits = new ArrayList<>();
+        for (String definitionCacheLimit : Benchmark.getProperty("definition-cache-limits", "-1").split(",")) {
+            try {
+                definitionCacheLimits.add(Integer.valueOf(definitionCacheLimit.trim()));
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("Invalid definition cache limit : " + definitionCacheLimit);
+            }
+        }
+        return definitionCacheLimits;
+    }
+
+    /**
+     * The ratios of readers to writers (e.g. 9:1) the task inbox process is run with, from the 'inbox-read-write-ratios' property.
+     */
+    public static List<String> getInboxReadWriteRatios() {
+        List<String> readWriteRatios = new ArrayList<>();
+        for (String readWriteRatio : Benchmark.getProperty("inbox-read-write-ratios", "9:1").split(",")) {
+            TaskInboxRunnable.getReadFraction(readWriteRatio);
+            readWriteRatios.add(readWriteRatio.trim());
+        }
+        return readWriteRatios;
+    }
+
+    /**
+     * All scenarios by name, a name can only be used once. Created once per configuration: the service loader 
+     * and the parsing of the models aren't repeated for every cell.
+     */
+    public static synchronized Map<String, Scenario> getScenarios() {
+        if (scenarios == null || scenariosProperties != Benchmark.properties) {
+            scenarios = Collections.unmodifiableMap(createScenarios());
+            scenariosProperties = Benchmark.properties;
+        }
+        return scenarios;
+    }
+
+    protected static Map<String, Scenario> createScenarios() {
+        Map<String, Scenario> scenarios = new LinkedHashMap<>();
+        for (Scenario scenario : getBuiltInScenarios()) {
+            addScenario(scenarios, scenario);
+        }
+        for (Scenario scenario : ServiceLoader.load(Scenario.class)) {
+            addScenario(scenarios, scenario);
+        }
+        for (File modelFile : getModelFiles()) {
+            for (String processDefinitionKey : getExecutableProcessKeys(modelFile)) {
+                addScenario(scenarios, new ModelScenario(processDefinitionKey, Benchmark.getProperty("scenario." + processDefinitionKey + ".variable-generator", null), 
+                        Boolean.valueOf(Benchmark.getProperty("scenario." + processDefinitionKey + ".complete-user-tasks", "true"))));
+            }
+        }
+        return scenarios;
+    }
+
+    public static Scenario getScenario(String name) {
+        return getScenarios().get(name);
+    }
+
+    protected static void addScenario(Map<String, Scenario> scenarios, Scenario scenario) {
+        if (scenarios.containsKey(scenario.getName())) {
+            throw new RuntimeException("Duplicate scenario : " + scenario.getName());
+        }
+        scenarios.put(scenario.getName(), scenario);
+    }
+
+    /**
+     * Adds the resources of all scenarios and the files of the models directory to the deployment.
+     */
+    public static void addResources(DeploymentBuilder deploymentBuilder) {
+        Set<String> resources = new LinkedHashSet<>();
+        for (Scenario scenario : getScenarios().values()) {
+            resources.addAll(scenario.getResources());
+        }
+        for (String resource : resources) {
+            deploymentBuilder.addClasspathResource(resource);
+        }
+
+        for (File modelFile : getModelFiles()) {
+            try {
+                deploymentBuilder.addBytes(modelFile.getName(), Files.readAllBytes(modelFile.toPath()));
+            } catch (IOException e) {
+                throw new RuntimeException("Could not read model " + modelFile, e);
+            }
+        }
+    }
+
+    /**
+     * The BPMN files (*.bpmn20.xml or *.bpmn, the extensions the engine deploys) in the 'models-directory', none when not set.
+     */
+    public static List<File> getModelFiles() {
+        List<File> modelFiles = new ArrayList<>();
+        String modelsDirectory = Benchmark.getProperty("models-directory", null);
+        if (modelsDirectory != null) {
+            File[] files = new File(modelsDirectory).listFiles();
+            if (files == null) {
+                throw new RuntimeException("Invalid models directory : " + modelsDirectory);
+            }
+            Arrays.sort(files);
+            for (File file : files) {
+                if (file.isFile() && (file.getName().endsWith(".bpmn20.xml") || file.getName().endsWith(".bpmn"))) {
+                    modelFiles.add(file);
+                }
+            }
+        }
+        return modelFiles;
+    }
+
+    protected static List<String> getExecutableProcessKeys(File modelFile) {
+        List<String> processDefinitionKeys = new ArrayList<>();
+        try {
+            DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+            documentBuilderFactory.setNamespaceAware(true);
+            // The models are only scanned for their process ids, no doctype or external entities are resolved
+            documentBuilderFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            documentBuilderFactory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            documentBuilderFactory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            documentBuilderFactory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+            documentBuilderFactory.setXIncludeAware(false);
+            documentBuilderFactory.setExpandEntityReferences(false);
+            NodeList processes = documentBuilderFactory.newDocumentBuilder().parse(modelFile).getElementsByTagNameNS(BPMN_NAMESPACE, "process");
+            for (int i = 0; i < processes.getLength(); i++) {
+                Element process = (Element) processes.item(i);
+                if (!"false".equals(process.getAttribute("isExecutable"))) {
+                    processDefinitionKeys.add(process.getAttribute("id"));
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Could not read model " + modelFile, e);
+        }
+        return processDefinitionKeys;
+    }
+
+}
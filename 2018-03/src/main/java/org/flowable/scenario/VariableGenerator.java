@@ -0,0 +1,27 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable.scenario;
+
+import java.util.Map;
+
+/**
+ * Creates the variables a process instance is started with, called for every iteration (so from all threads of a cell). 
+ * Configured for a model from the models directory with the 'scenario.[process key].variable-generator' property, 
+ * an implementation needs a public constructor without arguments.
+ */
+public interface VariableGenerator {
+
+    Map<String, Object> createVariables();
+
+}
@@ -13,8 +13,11 @@
 
 package org.flowable;
 
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
 import org.flowable.engine.repository.Deployment;
 import org.flowable.engine.test.FlowableRule;
+import org.flowable.runnable.BenchmarkRunnable;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
@@ -41,4 +44,13 @@ public abstract class AbstractTest {
         }
     }
     
+    /**
+     * Runs one iteration the way a benchmark cell does and returns the recorded latency.
+     */
+    protected Histogram runIteration(BenchmarkRunnable runnable) {
+        Recorder recorder = new Recorder(Output.HIGHEST_TRACKABLE_LATENCY, Output.SIGNIFICANT_DIGITS);
+        runnable.run(recorder, System.nanoTime());
+        return recorder.getIntervalHistogram();
+    }
+    
 }
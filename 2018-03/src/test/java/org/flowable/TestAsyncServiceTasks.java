@@ -0,0 +1,60 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import static org.junit.Assert.assertEquals;
+
+import org.flowable.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.flowable.job.service.impl.asyncexecutor.AsyncExecutor;
+import org.flowable.runnable.AsyncServiceTasksRunnable;
+import org.junit.Test;
+
+public class TestAsyncServiceTasks extends AbstractTest {
+    
+    @Test
+    public void testExclusive() {
+        runProcess("asyncServiceTasks");
+    }
+    
+    @Test
+    public void testNonExclusive() {
+        runProcess("asyncNonExclusiveServiceTasks");
+    }
+    
+    protected void runProcess(String processDefinitionKey) {
+        flowableRule.getRepositoryService().createDeployment().addClasspathResource(processDefinitionKey + ".bpmn20.xml").deploy();
+        
+        // Jobs that couldn't be executed directly (exclusive lock, optimistic locking on the join) are picked up by acquisition or retried
+        ProcessEngineConfigurationImpl processEngineConfiguration = (ProcessEngineConfigurationImpl) flowableRule.getProcessEngine().getProcessEngineConfiguration();
+        int asyncFailedJobWaitTime = processEngineConfiguration.getAsyncFailedJobWaitTime();
+        processEngineConfiguration.setAsyncFailedJobWaitTime(1);
+        AsyncExecutor asyncExecutor = processEngineConfiguration.getAsyncExecutor();
+        asyncExecutor.setDefaultAsyncJobAcquireWaitTimeInMillis(100);
+        asyncExecutor.setDefaultTimerJobAcquireWaitTimeInMillis(100);
+        asyncExecutor.start();
+        try {
+            AsyncServiceTasksRunnable runnable = new AsyncServiceTasksRunnable(processDefinitionKey, 1000);
+            assertEquals(1, runIteration(runnable).getTotalCount());
+            
+            // Only returns when the async executor has completed the process instance
+            assertEquals(1, flowableRule.getHistoryService().createHistoricProcessInstanceQuery().finished().count());
+            assertEquals(0, flowableRule.getManagementService().createJobQuery().count());
+            
+        } finally {
+            asyncExecutor.shutdown();
+            processEngineConfiguration.setAsyncFailedJobWaitTime(asyncFailedJobWaitTime);
+        }
+    }
+
+}
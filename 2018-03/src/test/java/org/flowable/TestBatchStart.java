@@ -0,0 +1,37 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import static org.junit.Assert.assertEquals;
+
+import org.flowable.runnable.BatchStartRunnable;
+import org.junit.Test;
+
+public class TestBatchStart extends AbstractTest {
+    
+    @Test
+    public void testBatchStart() {
+        flowableRule.getRepositoryService().createDeployment()
+            .addClasspathResource("startToEnd.bpmn20.xml")
+            .addClasspathResource("allSequentialServiceTasks.bpmn20.xml")
+            .deploy();
+        
+        runIteration(new BatchStartRunnable("startToEnd", 5));
+        assertEquals(5, flowableRule.getHistoryService().createHistoricProcessInstanceQuery().processDefinitionKey("startToEnd").finished().count());
+        
+        runIteration(new BatchStartRunnable("allSequentialServiceTasks", 3));
+        assertEquals(3, flowableRule.getHistoryService().createHistoricProcessInstanceQuery().processDefinitionKey("allSequentialServiceTasks").finished().count());
+    }
+
+}
@@ -0,0 +1,94 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.flowable.BenchmarkExecutors.BoundedExecutorService;
+import org.flowable.runnable.StartToEndRunnable;
+import org.junit.Test;
+
+public class TestBenchmarkExecutors extends AbstractTest {
+    
+    @Test
+    public void testFixedAndForkJoin() throws Exception {
+        flowableRule.getRepositoryService().createDeployment().addClasspathResource("startToEnd.bpmn20.xml").deploy();
+        
+        Recorder recorder = new Recorder(Output.HIGHEST_TRACKABLE_LATENCY, Output.SIGNIFICANT_DIGITS);
+        for (String executor : new String[] { BenchmarkExecutors.FIXED, BenchmarkExecutors.FORK_JOIN }) {
+            ExecutorService executorService = BenchmarkExecutors.createExecutorService(executor, 4);
+            for (int i = 0; i < 10; i++) {
+                executorService.submit(new Benchmark.RecordedIteration(new StartToEndRunnable(), recorder));
+            }
+            executorService.shutdown();
+            assertTrue(executorService.awaitTermination(1, TimeUnit.MINUTES));
+        }
+        
+        assertEquals(20, flowableRule.getHistoryService().createHistoricProcessInstanceQuery().finished().count());
+    }
+    
+    @Test
+    public void testRecordedIterations() throws Exception {
+        flowableRule.getRepositoryService().createDeployment().addClasspathResource("startToEnd.bpmn20.xml").deploy();
+        
+        Recorder recorder = new Recorder(Output.HIGHEST_TRACKABLE_LATENCY, Output.SIGNIFICANT_DIGITS);
+        Benchmark.RecordedIteration iteration = new Benchmark.RecordedIteration(new StartToEndRunnable(), recorder);
+        
+        ExecutorService executorService = BenchmarkExecutors.createExecutorService(BenchmarkExecutors.FIXED, 2);
+        for (int i = 0; i < 25; i++) {
+            executorService.execute(iteration);
+        }
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(1, TimeUnit.MINUTES));
+        
+        Histogram histogram = recorder.getIntervalHistogram();
+        assertEquals(25, histogram.getTotalCount());
+        assertTrue(histogram.getMinValue() > 0);
+        assertEquals(25, flowableRule.getHistoryService().createHistoricProcessInstanceQuery().finished().count());
+    }
+    
+    @Test
+    public void testBoundedConcurrency() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        
+        ExecutorService executorService = new BoundedExecutorService(Executors.newCachedThreadPool(), 3);
+        for (int i = 0; i < 30; i++) {
+            executorService.execute(new Runnable() {
+                public void run() {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                }
+            });
+        }
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(1, TimeUnit.MINUTES));
+        
+        assertTrue(maxRunning.get() <= 3);
+    }
+
+}
@@ -0,0 +1,83 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.flowable.ClusterBenchmark.NodeResult;
+import org.flowable.Output.ProcessOutput;
+import org.junit.Test;
+
+public class TestClusterBenchmark {
+    
+    @Test
+    public void testMergeNodeResults() {
+        Output output = new Output("results.csv", Arrays.asList("1", "2"));
+        
+        NodeResult node1 = new NodeResult(100, 1000, createHistogram(100, 10));
+        NodeResult node2 = new NodeResult(100, 2000, createHistogram(100, 30));
+        assertEquals(2000, ClusterBenchmark.getClusterDurationInMs(Arrays.asList(node1, node2)));
+        ClusterBenchmark.addResults(output, "startToEnd", "2", Arrays.asList(node1, node2), ClusterBenchmark.getClusterDurationInMs(Arrays.asList(node1, node2)));
+        
+        ProcessOutput cluster = output.getProcessOutput("startToEnd");
+        assertEquals(100.0, cluster.getMetric(ProcessOutput.THROUGHPUT)[1], 0.01);
+        assertEquals(20.0, cluster.getMetric(ProcessOutput.AVERAGE)[1], 0.1);
+        assertEquals(2.0, cluster.getMetric(ClusterBenchmark.NODES)[1], 0.01);
+        
+        assertEquals(100.0, output.getProcessOutput("startToEnd[node1]").getMetric(ProcessOutput.THROUGHPUT)[1], 0.01);
+        assertEquals(50.0, output.getProcessOutput("startToEnd[node2]").getMetric(ProcessOutput.THROUGHPUT)[1], 0.01);
+        assertEquals(30.0, output.getProcessOutput("startToEnd[node2]").getMetric(ProcessOutput.MAX)[1], 0.1);
+    }
+    
+    @Test
+    public void testOnlyMessagesDeserialized() throws Exception {
+        assertEquals("go", deserialize(ClusterBenchmark.GO));
+        assertEquals(100, ((NodeResult) deserialize(new NodeResult(100, 1000, createHistogram(100, 10)))).getNrOfIterations());
+        try {
+            deserialize(new ArrayList<>(Arrays.asList("go")));
+            throw new AssertionError("Expected a rejected class");
+        } catch (InvalidClassException e) {
+            assertEquals("java.util.ArrayList; Not a cluster benchmark message", e.getMessage());
+        }
+    }
+    
+    protected Object deserialize(Object message) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream outputStream = new ObjectOutputStream(bytes)) {
+            outputStream.writeObject(message);
+        }
+        try (ObjectInputStream inputStream = new ClusterBenchmark.MessageInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return inputStream.readObject();
+        }
+    }
+    
+    protected Histogram createHistogram(int count, long latencyInMs) {
+        Histogram histogram = Output.createHistogram();
+        for (int i = 0; i < count; i++) {
+            Output.recordLatency(histogram, TimeUnit.MILLISECONDS.toNanos(latencyInMs));
+        }
+        return histogram;
+    }
+
+}
@@ -0,0 +1,84 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.HdrHistogram.Histogram;
+import org.junit.Test;
+
+public class TestConfigurationMatrix {
+    
+    @Test
+    public void testCrossProduct() {
+        Properties properties = new Properties();
+        properties.setProperty("history-level", "none,audit");
+        properties.setProperty("tree-fetch", "true, false");
+        properties.setProperty("async-history", "false");
+        properties.setProperty("matrix-baseline", "history-level=audit;tree-fetch=true");
+        
+        ConfigurationMatrix configurationMatrix = new ConfigurationMatrix(properties);
+        assertTrue(configurationMatrix.isMatrix());
+        assertEquals(Arrays.asList("history-level=none;tree-fetch=true", "history-level=none;tree-fetch=false", 
+                "history-level=audit;tree-fetch=true", "history-level=audit;tree-fetch=false"), configurationMatrix.getConfigurationNames());
+        assertEquals(2, configurationMatrix.getBaselineIndex());
+        
+        Properties configurationProperties = configurationMatrix.getConfigurations().get(1).getProperties();
+        assertEquals("none", configurationProperties.getProperty("history-level"));
+        assertEquals("false", configurationProperties.getProperty("tree-fetch"));
+        assertEquals("false", configurationProperties.getProperty("async-history"));
+        assertEquals("results-history-level_none_tree-fetch_false.csv", configurationMatrix.getConfigurations().get(1).getOutputName("results.csv"));
+        
+        assertFalse(new ConfigurationMatrix(new Properties()).isMatrix());
+    }
+    
+    @Test
+    public void testCombinedOutput() throws Exception {
+        File outputFile = File.createTempFile("results", ".csv");
+        outputFile.deleteOnExit();
+        
+        Output baseline = new Output(outputFile.getAbsolutePath(), Arrays.asList("1"));
+        baseline.addResults("startToEnd", "1", 100, 1000, createHistogram(100, 10));
+        Output faster = new Output(outputFile.getAbsolutePath(), Arrays.asList("1"));
+        faster.addResults("startToEnd", "1", 100, 500, createHistogram(100, 5));
+        
+        Output.writeCombinedOutput(outputFile.getAbsolutePath(), Arrays.asList("history-level=audit", "history-level=none"), Arrays.asList(baseline, faster), 0);
+        
+        File combinedOutputFile = new File(baseline.getDetailFileName("matrix"));
+        combinedOutputFile.deleteOnExit();
+        List<String> lines = Files.readAllLines(combinedOutputFile.toPath(), Charset.forName("UTF-8"));
+        assertEquals("configuration,process,metric,1,", lines.get(0));
+        assertTrue(lines.contains("history-level=audit (baseline),startToEnd,throughputPerSecondSpeedup,1.0,"));
+        assertTrue(lines.contains("history-level=none,startToEnd,throughputPerSecondSpeedup,2.0,"));
+        assertTrue(lines.contains("history-level=none,startToEnd,averageSpeedup,2.0,"));
+    }
+    
+    protected Histogram createHistogram(int count, long latencyInMs) {
+        Histogram histogram = Output.createHistogram();
+        for (int i = 0; i < count; i++) {
+            Output.recordLatency(histogram, latencyInMs * 1000000L);
+        }
+        return histogram;
+    }
+
+}
@@ -0,0 +1,52 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import static org.junit.Assert.assertEquals;
+
+import org.flowable.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.flowable.runnable.TerminateUserTasksRunnable;
+import org.flowable.task.api.Task;
+import org.junit.Test;
+
+public class TestDataPopulator extends AbstractTest {
+
+    @Test
+    public void testPopulate() {
+        flowableRule.getRepositoryService().createDeployment()
+            .addClasspathResource("populatedUserTask.bpmn20.xml")
+            .addClasspathResource("terminateUserTasks.bpmn20.xml")
+            .deploy();
+
+        ProcessEngineConfigurationImpl processEngineConfiguration = (ProcessEngineConfigurationImpl) flowableRule.getProcessEngine().getProcessEngineConfiguration();
+        new DataPopulator(250, 0.1, 3, 100, true).populate(flowableRule.getProcessEngine(), processEngineConfiguration.getDataSource());
+
+        assertEquals(25, flowableRule.getRuntimeService().createProcessInstanceQuery().count());
+        assertEquals(25, flowableRule.getTaskService().createTaskQuery().count());
+        assertEquals(3, flowableRule.getRuntimeService().getVariables("bulk-0").size());
+        assertEquals(250, flowableRule.getHistoryService().createHistoricProcessInstanceQuery().count());
+        assertEquals(225, flowableRule.getHistoryService().createHistoricProcessInstanceQuery().finished().count());
+        assertEquals(750, flowableRule.getHistoryService().createHistoricVariableInstanceQuery().count());
+
+        // The populated tasks can be completed by the engine, which ends their process instances
+        Task task = flowableRule.getTaskService().createTaskQuery().processInstanceId("bulk-0").singleResult();
+        flowableRule.getTaskService().complete(task.getId());
+        assertEquals(24, flowableRule.getRuntimeService().createProcessInstanceQuery().count());
+
+        // And the scenarios run next to them
+        runIteration(new TerminateUserTasksRunnable());
+        assertEquals(24, flowableRule.getTaskService().createTaskQuery().count());
+    }
+
+}
@@ -0,0 +1,83 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.flowable.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.flowable.runnable.ManyVariablesRunnable;
+import org.flowable.runnable.SubprocessesRunnable;
+import org.junit.Test;
+
+public class TestDatabaseReset extends AbstractTest {
+    
+    @Test
+    public void testTruncate() {
+        flowableRule.getRepositoryService().createDeployment()
+            .addClasspathResource("manyVariables.bpmn20.xml")
+            .addClasspathResource("parallelSubprocesses.bpmn20.xml")
+            .deploy();
+        
+        runIteration(new ManyVariablesRunnable());
+        runIteration(new SubprocessesRunnable());
+        flowableRule.getRuntimeService().startProcessInstanceByKey("parallelSubprocesses"); // leaves open tasks behind
+        
+        DatabaseReset.truncateRuntimeAndHistoryTables(flowableRule.getProcessEngine());
+        
+        Map<String, Long> tableCount = flowableRule.getManagementService().getTableCount();
+        for (String table : tableCount.keySet()) {
+            if (table.startsWith("ACT_RU_") || table.startsWith("ACT_HI_")) {
+                assertEquals(table, 0L, tableCount.get(table).longValue());
+            }
+        }
+        assertEquals(2, flowableRule.getRepositoryService().createProcessDefinitionQuery().count());
+        
+        // The deployment is still usable
+        runIteration(new ManyVariablesRunnable());
+        assertEquals(1, flowableRule.getHistoryService().createHistoricProcessInstanceQuery().finished().count());
+    }
+    
+    @Test
+    public void testKeepPopulatedRows() {
+        flowableRule.getRepositoryService().createDeployment()
+            .addClasspathResource("manyVariables.bpmn20.xml")
+            .addClasspathResource("parallelSubprocesses.bpmn20.xml")
+            .addClasspathResource("populatedUserTask.bpmn20.xml")
+            .deploy();
+        ProcessEngineConfigurationImpl processEngineConfiguration = (ProcessEngineConfigurationImpl) flowableRule.getProcessEngine().getProcessEngineConfiguration();
+        DataPopulator dataPopulator = new DataPopulator(50, 0.2, 2, 20, true);
+        dataPopulator.populate(flowableRule.getProcessEngine(), processEngineConfiguration.getDataSource());
+        
+        runIteration(new ManyVariablesRunnable());
+        runIteration(new SubprocessesRunnable());
+        flowableRule.getRuntimeService().startProcessInstanceByKey("parallelSubprocesses");
+        
+        DatabaseReset.deleteNonPopulatedRows(flowableRule.getProcessEngine());
+        
+        assertTrue(dataPopulator.isPopulated(processEngineConfiguration.getDataSource()));
+        assertEquals(10, flowableRule.getRuntimeService().createProcessInstanceQuery().count());
+        assertEquals(50, flowableRule.getHistoryService().createHistoricProcessInstanceQuery().count());
+        assertEquals(0, flowableRule.getHistoryService().createHistoricProcessInstanceQuery().processDefinitionKey("manyVariables").count());
+        
+        // A cell completing a populated task changes the populated data, it has to be populated again
+        String taskId = flowableRule.getTaskService().createTaskQuery().processInstanceId("bulk-0").singleResult().getId();
+        flowableRule.getTaskService().complete(taskId);
+        assertFalse(dataPopulator.isPopulated(processEngineConfiguration.getDataSource()));
+    }
+
+}
@@ -0,0 +1,89 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.flowable.engine.impl.persistence.deploy.ProcessDefinitionCacheEntry;
+import org.flowable.runnable.DefinitionCacheRunnable;
+import org.junit.Test;
+
+public class TestDefinitionCache extends AbstractTest {
+    
+    @Test
+    public void testDeployAndStart() {
+        DefinitionCacheRunnable runnable = new DefinitionCacheRunnable(5, 2, DefinitionCacheRunnable.ZIPFIAN, 1.0);
+        runnable.prepare();
+        assertEquals(10, flowableRule.getRepositoryService().createProcessDefinitionQuery().processDefinitionKeyLike("definitionCache%").count());
+        assertEquals(10, runnable.getProcessDefinitionIds().size());
+        
+        for (int i = 0; i < 20; i++) {
+            runIteration(runnable);
+        }
+        assertEquals(20, flowableRule.getHistoryService().createHistoricProcessInstanceQuery().finished().count());
+        
+        Output output = new Output("results.csv", Arrays.asList("1"));
+        runnable.addResults(output, "definitionCache", "1", 20);
+        assertTrue(output.getProcessOutput("definitionCache").getMetric("deploymentsPerSecond")[0] > 0);
+    }
+    
+    @Test
+    public void testKeyDistribution() {
+        DefinitionCacheRunnable uniform = new DefinitionCacheRunnable(4, 1, DefinitionCacheRunnable.UNIFORM, 1.0);
+        assertEquals(0, uniform.pickDefinition(0.1));
+        assertEquals(1, uniform.pickDefinition(0.3));
+        assertEquals(3, uniform.pickDefinition(0.99));
+        
+        // Weights 1, 1/2, 1/3 and 1/4: the first definition is picked 48% of the time
+        DefinitionCacheRunnable zipfian = new DefinitionCacheRunnable(4, 1, DefinitionCacheRunnable.ZIPFIAN, 1.0);
+        assertEquals(0, zipfian.pickDefinition(0.47));
+        assertEquals(1, zipfian.pickDefinition(0.5));
+        assertEquals(3, zipfian.pickDefinition(1.0));
+    }
+    
+    @Test
+    public void testMeteredCache() {
+        MeteredProcessDefinitionCache cache = new MeteredProcessDefinitionCache(2);
+        ProcessDefinitionCacheEntry cacheEntry = new ProcessDefinitionCacheEntry(null, null, null);
+        
+        // A miss, looked up twice before loading and once after, like the engine does
+        assertNull(cache.get("one"));
+        assertNull(cache.get("one"));
+        cache.add("one", cacheEntry);
+        cache.get("one");
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        
+        cache.get("one");
+        assertEquals(1, cache.getHits());
+        
+        // The least recently used definition is evicted
+        cache.add("two", cacheEntry);
+        cache.add("three", cacheEntry);
+        assertEquals(2, cache.size());
+        assertNull(cache.get("one"));
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.getMissHistogram().getTotalCount());
+        
+        // The load failed, the end of the command clears the miss so the next one is counted
+        cache.clearMiss();
+        assertNull(cache.get("one"));
+        assertEquals(3, cache.getMisses());
+    }
+
+}
@@ -0,0 +1,50 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.flowable.runnable.StartToEndRunnable;
+import org.junit.Test;
+
+public class TestFlightRecording extends AbstractTest {
+
+    @Test
+    public void testRecordCell() throws Exception {
+        flowableRule.getRepositoryService().createDeployment().addClasspathResource("startToEnd.bpmn20.xml").deploy();
+
+        File recordingFile = File.createTempFile("startToEnd", ".jfr");
+        recordingFile.deleteOnExit();
+        FlightRecording flightRecording = new FlightRecording("profile", recordingFile.toPath(), 5);
+        flightRecording.start();
+        StartToEndRunnable runnable = new StartToEndRunnable();
+        for (int i = 0; i < 500; i++) {
+            runIteration(runnable);
+        }
+        flightRecording.stop();
+        flightRecording.save();
+        assertTrue(Files.size(recordingFile.toPath()) > 0);
+
+        Output output = new Output("results.csv", Arrays.asList("1"));
+        flightRecording.addResults(output, "startToEnd", "1", 500);
+        assertEquals(0.0, output.getProcessOutput("startToEnd").getMetric("socketReadsPerInstance")[0], 0.001); // in-memory H2
+        assertTrue(flightRecording.getTop(FlightRecording.ALLOCATION).size() <= 5);
+    }
+
+}
@@ -0,0 +1,91 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.flowable.Output.ProcessOutput;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.impl.cfg.StandaloneProcessEngineConfiguration;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Test;
+
+public class TestHistoryMonitor {
+    
+    @Test
+    public void testBacklogAndDrain() throws Exception {
+        StandaloneProcessEngineConfiguration processEngineConfiguration = new StandaloneProcessEngineConfiguration();
+        processEngineConfiguration.setJdbcUrl("jdbc:h2:mem:historymonitor;DB_CLOSE_DELAY=-1");
+        processEngineConfiguration.setDatabaseSchemaUpdate("drop-create");
+        processEngineConfiguration.setAsyncHistoryEnabled(true);
+        ProcessEngine processEngine = processEngineConfiguration.buildProcessEngine();
+        
+        try {
+            processEngine.getRepositoryService().createDeployment().addClasspathResource("startToEnd.bpmn20.xml").deploy();
+            
+            HistoryMonitor historyMonitor = HistoryMonitor.create(processEngine);
+            historyMonitor.sampleIntervalInMs = 50;
+            historyMonitor.start();
+            
+            // The history executor isn't running yet, so the history jobs pile up
+            for (int i = 0; i < 10; i++) {
+                processEngine.getRuntimeService().startProcessInstanceByKey("startToEnd");
+            }
+            Thread.sleep(200);
+            
+            processEngineConfiguration.getAsyncHistoryExecutor().start();
+            historyMonitor.drain();
+            
+            long backlog = historyMonitor.getBacklogAtLoadEnd();
+            assertTrue(backlog >= 10); // at least one history job per process instance, more without grouping
+            assertTrue(historyMonitor.getMaxLagInMs() >= 150);
+            assertEquals(0, processEngine.getManagementService().createHistoryJobQuery().count());
+            assertEquals(10, processEngine.getHistoryService().createHistoricProcessInstanceQuery().finished().count());
+            
+            Output output = new Output("results.csv", Arrays.asList("1"));
+            historyMonitor.addResults(output, "startToEnd", "1", 10, 1000);
+            ProcessOutput processOutput = output.getProcessOutput("startToEnd");
+            assertEquals(backlog, processOutput.getMetric(HistoryMonitor.BACKLOG_AT_LOAD_END)[0], 0.01);
+            assertTrue(processOutput.getMetric(HistoryMonitor.THROUGHPUT_INCLUDING_HISTORY)[0] < 10.0);
+            assertEquals(historyMonitor.getSamples().size(), output.getDetails().get("history").size());
+            
+        } finally {
+            processEngineConfiguration.getAsyncHistoryExecutor().shutdown();
+            processEngine.close();
+        }
+    }
+    
+    @Test
+    public void testFailedSamples() throws Exception {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:nohistoryjobs;DB_CLOSE_DELAY=-1"); // no ACT_RU_HISTORY_JOB table, every sample fails
+        
+        HistoryMonitor historyMonitor = new HistoryMonitor(dataSource, 20, 100);
+        historyMonitor.start();
+        Thread.sleep(150);
+        historyMonitor.drain();
+        
+        // Sampling went on after the first failure
+        assertTrue(historyMonitor.getFailedSamples() > 5);
+        assertEquals(0, historyMonitor.getSamples().size());
+        
+        Output output = new Output("results.csv", Arrays.asList("1"));
+        historyMonitor.addResults(output, "startToEnd", "1", 10, 1000);
+        assertEquals(historyMonitor.getFailedSamples(), output.getProcessOutput("startToEnd").getMetric(HistoryMonitor.FAILED_SAMPLES)[0], 0.01);
+    }
+
+}
@@ -14,7 +14,6 @@
 package org.flowable;
 
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertTrue;
 
 import org.flowable.runnable.ManyVariablesRunnable;
 import org.flowable.task.api.history.HistoricTaskInstance;
@@ -28,10 +27,7 @@ public class TestManyVariables extends AbstractTest {
         assertEquals(0, flowableRule.getHistoryService().createHistoricProcessInstanceQuery().count());
         
         ManyVariablesRunnable runnable = new ManyVariablesRunnable();
-        runnable.run();
-        
-        assertTrue(runnable.getStartTime() > 0);
-        assertTrue(runnable.getEndTime() > 0);
+        assertEquals(1, runIteration(runnable).getTotalCount());
         assertEquals(1, flowableRule.getHistoryService().createHistoricProcessInstanceQuery().finished().count());
         assertEquals(1, flowableRule.getHistoryService().createHistoricTaskInstanceQuery().finished().count());
         
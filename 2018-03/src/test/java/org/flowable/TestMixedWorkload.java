@@ -0,0 +1,79 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+
+import org.flowable.Output.ProcessOutput;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestMixedWorkload extends AbstractTest {
+    
+    protected Properties originalProperties;
+    
+    @Before
+    public void setMix() {
+        originalProperties = Benchmark.properties;
+        Benchmark.properties = new Properties();
+        Benchmark.properties.put("mix", "startToEnd:3, allSequentialServiceTasks:1");
+    }
+    
+    @After
+    public void restoreProperties() {
+        Benchmark.properties = originalProperties;
+    }
+    
+    @Test
+    public void testWeights() {
+        Map<String, Double> weights = MixedWorkloadBenchmark.getWeights();
+        assertEquals(Arrays.asList("startToEnd", "allSequentialServiceTasks"), Arrays.asList(weights.keySet().toArray()));
+        assertEquals(3.0, weights.get("startToEnd"), 0.001);
+        
+        Benchmark.properties.put("mix", "startToEnd:3,allSequentialServiceTasks");
+        try {
+            MixedWorkloadBenchmark.getWeights();
+            throw new AssertionError("Expected an invalid mix entry");
+        } catch (RuntimeException e) {
+            assertEquals("Invalid mix entry : allSequentialServiceTasks", e.getMessage());
+        }
+    }
+    
+    @Test
+    public void testInterleavedProcesses() throws Exception {
+        flowableRule.getRepositoryService().createDeployment()
+            .addClasspathResource("startToEnd.bpmn20.xml")
+            .addClasspathResource("allSequentialServiceTasks.bpmn20.xml")
+            .deploy();
+        
+        Output output = new Output("results.csv", Arrays.asList("2"));
+        MixedWorkloadBenchmark.executeCell(output, MixedWorkloadBenchmark.getWeights(), "mix", BenchmarkExecutors.FIXED, 2, 400);
+        
+        long startToEnd = flowableRule.getHistoryService().createHistoricProcessInstanceQuery().processDefinitionKey("startToEnd").finished().count();
+        long allSequentialServiceTasks = flowableRule.getHistoryService().createHistoricProcessInstanceQuery().processDefinitionKey("allSequentialServiceTasks").finished().count();
+        assertEquals(400, startToEnd + allSequentialServiceTasks);
+        assertTrue(startToEnd > allSequentialServiceTasks);
+        
+        ProcessOutput processOutput = output.getProcessOutput("mix[startToEnd]");
+        assertEquals(100.0 * startToEnd / 400, processOutput.getMetric(MixedWorkloadBenchmark.SHARE)[0], 0.001);
+        assertTrue(output.getProcessOutput("mix").getMetric(ProcessOutput.THROUGHPUT)[0] > 0);
+    }
+
+}
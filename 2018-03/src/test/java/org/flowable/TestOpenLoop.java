@@ -0,0 +1,43 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.flowable.Output.ProcessOutput;
+import org.junit.Test;
+
+public class TestOpenLoop extends AbstractTest {
+    
+    @Test
+    public void testConstantArrivalRate() throws Exception {
+        flowableRule.getRepositoryService().createDeployment().addClasspathResource("startToEnd.bpmn20.xml").deploy();
+        
+        Output output = new Output("results.csv", Arrays.asList("20"));
+        long startTime = System.currentTimeMillis();
+        OpenLoopBenchmark.executeStep(output, "startToEnd", null, "startToEnd", BenchmarkExecutors.FIXED, 2, 20, 1, 0.5);
+        
+        // 20 instances spread over one second
+        assertTrue(System.currentTimeMillis() - startTime >= 900);
+        assertEquals(20, flowableRule.getHistoryService().createHistoricProcessInstanceQuery().finished().count());
+        
+        ProcessOutput processOutput = output.getProcessOutput("startToEnd");
+        assertEquals(20.0, processOutput.getMetric(OpenLoopBenchmark.OFFERED_THROUGHPUT)[0], 0.01);
+        assertEquals(1.0, processOutput.getMetric(OpenLoopBenchmark.KEEPING_UP)[0], 0.01);
+    }
+
+}
@@ -0,0 +1,82 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.HdrHistogram.Histogram;
+import org.flowable.Output.ProcessOutput;
+import org.junit.Test;
+
+public class TestOutput {
+
+    @Test
+    public void testPercentiles() throws Exception {
+        File outputFile = File.createTempFile("results", ".csv");
+        outputFile.deleteOnExit();
+
+        // 1..1000 microseconds
+        Histogram histogram = Output.createHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            Output.recordLatency(histogram, i * 1000L);
+        }
+
+        Output output = new Output(outputFile.getAbsolutePath(), 2);
+        output.addResults("startToEnd", "2", 1000, 500L, histogram);
+
+        ProcessOutput processOutput = output.getProcessOutput("startToEnd");
+        assertEquals(0.5, processOutput.getMetric(ProcessOutput.P50)[1], 0.01);
+        assertEquals(0.99, processOutput.getMetric(ProcessOutput.P99)[1], 0.01);
+        assertEquals(1.0, processOutput.getMetric(ProcessOutput.MAX)[1], 0.01);
+        assertEquals(2000.0, processOutput.getThroughputPerSeconds()[1], 0.01);
+
+        output.writeOutput();
+        List<String> lines = Files.readAllLines(outputFile.toPath(), Charset.forName("UTF-8"));
+        assertEquals("process,metric,1,2,", lines.get(0));
+        assertEquals(9, lines.size()); // header + 8 metric rows
+
+        File histogramLog = new File(output.getHistogramLogFileName());
+        histogramLog.deleteOnExit();
+        assertTrue(histogramLog.exists());
+    }
+
+    @Test
+    public void testNamesWithCommas() throws Exception {
+        File outputFile = File.createTempFile("results", ".csv");
+        outputFile.deleteOnExit();
+
+        Histogram histogram = Output.createHistogram();
+        Output.recordLatency(histogram, 1000000L);
+        Output output = new Output(outputFile.getAbsolutePath(), 1);
+        output.addResults("model[a,b] x", "1", 1, 1L, histogram.copy());
+        output.addResults("startToEnd", "1", 1, 1L, histogram.copy());
+        output.writeOutput();
+
+        List<String> lines = Files.readAllLines(outputFile.toPath(), Charset.forName("UTF-8"));
+        assertTrue(lines.get(1).startsWith("\"model[a,b] x\",average,"));
+
+        File histogramLog = new File(output.getHistogramLogFileName());
+        histogramLog.deleteOnExit();
+        assertEquals(Arrays.asList("model[a_b]_x-1", "startToEnd-1"), new ArrayList<>(ResultComparison.readHistograms(histogramLog.getPath()).keySet()));
+    }
+
+}
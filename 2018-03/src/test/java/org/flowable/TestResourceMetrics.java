@@ -0,0 +1,57 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.flowable.BenchmarkExecutors.BoundedExecutorService;
+import org.junit.Test;
+
+public class TestResourceMetrics {
+
+    protected static volatile Object allocated;
+
+    @Test
+    public void testAllocationOfExecutorThreads() {
+        ResourceMetrics resourceMetrics = ResourceMetrics.create();
+        assertNotNull(resourceMetrics);
+
+        BoundedExecutorService executorService = BenchmarkExecutors.createExecutorService(BenchmarkExecutors.FIXED, 2);
+        resourceMetrics.start();
+        for (int i = 0; i < 10; i++) {
+            executorService.execute(new Runnable() {
+                public void run() {
+                    allocated = new byte[1000000];
+                }
+            });
+        }
+        executorService.awaitIdle();
+        resourceMetrics.stop();
+        executorService.shutdown();
+
+        // The pool threads were started during the measurement and are counted completely
+        assertTrue(resourceMetrics.getAllocatedBytes() >= 10 * 1000000);
+        assertTrue(resourceMetrics.getCpuTimeInNanos() > 0);
+
+        Output output = new Output("results.csv", Arrays.asList("2"));
+        resourceMetrics.addResults(output, "test", "2", 10);
+        assertTrue(output.getProcessOutput("test").getMetric("allocatedBytesPerInstance")[0] >= 1000000);
+        assertEquals(5, output.getProcessOutput("test").getMetrics().size());
+    }
+
+}
@@ -0,0 +1,94 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Map;
+import java.util.Random;
+
+import org.HdrHistogram.Histogram;
+import org.flowable.ResultComparison.CellComparison;
+import org.junit.Test;
+
+public class TestResultComparison {
+
+    @Test
+    public void testRegression() throws Exception {
+        Map<String, Histogram> baseline = writeAndRead(1.0, 1.0);
+        
+        // Same distribution: no significant difference
+        ResultComparison comparison = new ResultComparison(5.0, 0.01, 0.95);
+        comparison.compare(baseline, writeAndRead(1.0, 1.0));
+        assertEquals(2, comparison.getCellComparisons().size());
+        assertFalse(comparison.hasRegression());
+        
+        // Only the second process is 20% slower
+        comparison = new ResultComparison(5.0, 0.01, 0.95);
+        comparison.compare(baseline, writeAndRead(1.0, 1.2));
+        assertTrue(comparison.hasRegression());
+        CellComparison faster = comparison.getCellComparisons().get(0);
+        CellComparison slower = comparison.getCellComparisons().get(1);
+        assertFalse(faster.isRegression());
+        assertTrue(slower.isRegression());
+        assertTrue(slower.getPValue() < 0.01);
+        assertTrue(slower.getCiLowPercent() > 10.0 && slower.getCiHighPercent() < 30.0);
+        
+        // Slower, but not by more than the threshold
+        comparison = new ResultComparison(25.0, 0.01, 0.95);
+        comparison.compare(baseline, writeAndRead(1.0, 1.2));
+        assertFalse(comparison.hasRegression());
+    }
+    
+    @Test
+    public void testUnmatchedCells() {
+        Map<String, Histogram> baseline = writeAndRead(1.0, 1.0);
+        Map<String, Histogram> candidate = writeAndRead(1.0, 1.0);
+        candidate.remove("allSequentialServiceTasks-4");
+        
+        ResultComparison comparison = new ResultComparison(5.0, 0.01, 0.95);
+        comparison.compare(baseline, candidate);
+        assertEquals(1, comparison.getCellComparisons().size());
+        assertEquals(1, comparison.getUnmatchedTags().size());
+    }
+    
+    // Writes two cells of normally distributed latencies (mean 1ms times the factor) to a histogram log and reads them back
+    protected Map<String, Histogram> writeAndRead(double startToEndFactor, double allSequentialServiceTasksFactor) {
+        try {
+            File outputFile = File.createTempFile("results", ".csv");
+            outputFile.deleteOnExit();
+            Output output = new Output(outputFile.getAbsolutePath(), 4);
+            output.addResults("startToEnd", "4", 5000, 1000L, createHistogram(startToEndFactor));
+            output.addResults("allSequentialServiceTasks", "4", 5000, 1000L, createHistogram(allSequentialServiceTasksFactor));
+            output.writeOutput();
+            new File(output.getHistogramLogFileName()).deleteOnExit();
+            return ResultComparison.readHistograms(output.getHistogramLogFileName());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+    
+    protected Histogram createHistogram(double factor) {
+        Random random = new Random();
+        Histogram histogram = Output.createHistogram();
+        for (int i = 0; i < 5000; i++) {
+            Output.recordLatency(histogram, (long) (factor * (1000000 + 100000 * random.nextGaussian())));
+        }
+        return histogram;
+    }
+
+}
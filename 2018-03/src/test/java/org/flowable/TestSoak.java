@@ -0,0 +1,99 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.flowable.SoakBenchmark.SoakWindow;
+import org.junit.Test;
+
+public class TestSoak extends AbstractTest {
+    
+    @Test
+    public void testDecayTrend() {
+        SoakBenchmark decaying = new SoakBenchmark(60000, 0.01, 10);
+        SoakBenchmark flat = new SoakBenchmark(60000, 0.01, 10);
+        long decayingInstances = 0;
+        long flatInstances = 0;
+        for (int i = 0; i < 30; i++) {
+            long decayingCount = 60000 - i * 1000 + (i % 3) * 100;
+            decayingInstances += decayingCount;
+            decaying.addWindow(createWindow(i, decayingCount, decayingInstances));
+            long flatCount = 60000 + (i % 3) * 1000;
+            flatInstances += flatCount;
+            flat.addWindow(createWindow(i, flatCount, flatInstances));
+        }
+        decaying.addWindow(new SoakWindow(TimeUnit.MINUTES.toNanos(30), TimeUnit.MINUTES.toNanos(30) + 1000000, 1, decayingInstances + 1, 1, 1, 1)); // partial, left out
+        
+        assertTrue(decaying.isDecaying());
+        assertEquals(30, decaying.getThroughputTrend().getN());
+        assertTrue(decaying.getThroughputTrend().getSlope() < 0);
+        assertFalse(flat.isDecaying());
+        
+        Output output = new Output("results.csv", Arrays.asList("4"));
+        decaying.addResults(output, "startToEnd", "4");
+        assertEquals(1.0, output.getProcessOutput("startToEnd").getMetric(SoakBenchmark.DECAYING)[0], 0.001);
+        assertTrue(output.getProcessOutput("startToEnd").getMetric(SoakBenchmark.THROUGHPUT_CHANGE)[0] < 0);
+        assertEquals(31, output.getDetails().get("soak").size());
+    }
+    
+    @Test
+    public void testCorrelatedWindowsWithoutTrend() {
+        // Two slow cycles: neighbouring windows are alike, so the regression p-value finds a trend that isn't there
+        SoakBenchmark cyclic = new SoakBenchmark(60000, 0.01, 10);
+        long completedInstances = 0;
+        for (int i = 0; i < 60; i++) {
+            long count = Math.round(60000 + 3000 * Math.sin(2 * Math.PI * i / 30) + (i % 3) * 100);
+            completedInstances += count;
+            cyclic.addWindow(createWindow(i, count, completedInstances));
+        }
+        
+        assertTrue(cyclic.getThroughputTrend().getSignificance() < 0.01);
+        assertTrue(cyclic.getThroughputTrendPValue() > 0.1);
+        assertFalse(cyclic.isDecaying());
+    }
+    
+    @Test
+    public void testMannKendall() {
+        assertEquals(1.0, SoakBenchmark.getMannKendallPValue(new double[] { 2, 1 }, true), 0.0);
+        assertEquals(0.5, SoakBenchmark.getMannKendallPValue(new double[] { 1, 1, 1, 1 }, true), 0.0);
+        double[] decreasing = new double[] { 10, 9, 8, 7, 6, 5, 4, 3, 2, 1 };
+        assertTrue(SoakBenchmark.getMannKendallPValue(decreasing, true) < 0.001);
+        assertTrue(SoakBenchmark.getMannKendallPValue(decreasing, false) > 0.999);
+    }
+    
+    @Test
+    public void testHistoryCleanup() {
+        flowableRule.getRepositoryService().createDeployment().addClasspathResource("startToEnd.bpmn20.xml").deploy();
+        for (int i = 0; i < 5; i++) {
+            flowableRule.getRuntimeService().startProcessInstanceByKey("startToEnd");
+        }
+        
+        HistoryCleaner historyCleaner = new HistoryCleaner(flowableRule.getHistoryService(), 1000, 0, 2);
+        historyCleaner.cleanup();
+        assertEquals(0, flowableRule.getHistoryService().createHistoricProcessInstanceQuery().count());
+        assertEquals(5, historyCleaner.getDeletedInstances());
+        assertEquals(1, historyCleaner.getRuns());
+    }
+    
+    protected SoakWindow createWindow(int minute, long count, long completedInstances) {
+        return new SoakWindow(TimeUnit.MINUTES.toNanos(minute), TimeUnit.MINUTES.toNanos(minute + 1), count, completedInstances, 1000000, 5000000, 10000000);
+    }
+
+}
@@ -14,7 +14,6 @@
 package org.flowable;
 
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertTrue;
 
 import org.flowable.runnable.StartToEndRunnable;
 import org.junit.Test;
@@ -27,10 +26,7 @@ public class TestStartToEnd extends AbstractTest {
         assertEquals(0, flowableRule.getHistoryService().createHistoricProcessInstanceQuery().count());
         
         StartToEndRunnable startToEndRunnable = new StartToEndRunnable();
-        startToEndRunnable.run();
-        
-        assertTrue(startToEndRunnable.getStartTime() > 0);
-        assertTrue(startToEndRunnable.getEndTime() > 0);
+        assertEquals(1, runIteration(startToEndRunnable).getTotalCount());
         assertEquals(1, flowableRule.getHistoryService().createHistoricProcessInstanceQuery().finished().count());
     }
 
@@ -14,7 +14,6 @@
 package org.flowable;
 
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertTrue;
 
 import org.flowable.runnable.SubprocessesRunnable;
 import org.junit.Test;
@@ -27,10 +26,7 @@ public class TestSubprocesses extends AbstractTest {
         assertEquals(0, flowableRule.getHistoryService().createHistoricProcessInstanceQuery().count());
         
         SubprocessesRunnable runnable = new SubprocessesRunnable();
-        runnable.run();
-        
-        assertTrue(runnable.getStartTime() > 0);
-        assertTrue(runnable.getEndTime() > 0);
+        assertEquals(1, runIteration(runnable).getTotalCount());
         assertEquals(1, flowableRule.getHistoryService().createHistoricProcessInstanceQuery().finished().count());
         assertEquals(3, flowableRule.getHistoryService().createHistoricTaskInstanceQuery().finished().count());
     }
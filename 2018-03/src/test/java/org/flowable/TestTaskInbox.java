@@ -0,0 +1,106 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.HdrHistogram.Histogram;
+import org.flowable.runnable.TaskInboxRunnable;
+import org.flowable.task.api.Task;
+import org.junit.Test;
+
+public class TestTaskInbox extends AbstractTest {
+    
+    @Test
+    public void testReadFraction() {
+        assertEquals(0.9, TaskInboxRunnable.getReadFraction("9:1"), 0.001);
+        assertEquals(1.0, TaskInboxRunnable.getReadFraction("1:0"), 0.001);
+        try {
+            TaskInboxRunnable.getReadFraction("9");
+            throw new AssertionError("Expected an invalid ratio");
+        } catch (RuntimeException e) {
+            assertEquals("Invalid read/write ratio : 9", e.getMessage());
+        }
+    }
+    
+    @Test
+    public void testReadersAndWriters() {
+        flowableRule.getRepositoryService().createDeployment().addClasspathResource("taskInbox.bpmn20.xml").deploy();
+        
+        TaskInboxRunnable runnable = new TaskInboxRunnable(50, 3, 5, 0.5, 0.5, 
+                Arrays.asList(TaskInboxRunnable.CANDIDATE_GROUP, TaskInboxRunnable.ASSIGNEE, TaskInboxRunnable.CANDIDATE_OR_ASSIGNED, TaskInboxRunnable.COUNT), 
+                Arrays.asList(10));
+        runnable.prepare();
+        assertEquals(50, flowableRule.getTaskService().createTaskQuery().count());
+        int assigned = 0;
+        for (Task task : flowableRule.getTaskService().createTaskQuery().list()) {
+            if (task.getAssignee() != null) {
+                assigned++;
+            }
+        }
+        assertTrue(assigned > 0 && assigned < 50);
+        assertTrue(flowableRule.getTaskService().createTaskQuery().taskCandidateGroup("group0").count() > 0);
+        
+        for (int i = 0; i < 200; i++) {
+            runIteration(runnable);
+        }
+        
+        // Every completion started a new instance
+        assertEquals(50, flowableRule.getTaskService().createTaskQuery().count());
+        long completions = flowableRule.getHistoryService().createHistoricProcessInstanceQuery().finished().count();
+        assertTrue(completions > 0);
+        
+        Output output = new Output("results.csv", Arrays.asList("1"));
+        runnable.addResults(output, "taskInbox", "1", 200);
+        assertEquals(6, output.getDetails().get("inbox").size());
+        for (String row : output.getDetails().get("inbox")) {
+            // Both halves of every write are timed
+            if (row.startsWith("taskInbox,1," + TaskInboxRunnable.INSTANCE_START + ",") || row.startsWith("taskInbox,1," + TaskInboxRunnable.COMPLETION + ",")) {
+                assertEquals(String.valueOf(completions), row.split(",")[3]);
+            }
+        }
+        assertEquals(100.0 * (200 - completions) / 200, output.getProcessOutput("taskInbox").getMetric("readPercentage")[0], 0.01);
+        assertEquals(50.0, output.getProcessOutput("taskInbox").getMetric("openTasks")[0], 0.001);
+        
+        runIteration(runnable);
+        Map<String, Histogram> histograms = runnable.getHistograms();
+        long total = 0;
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            if (!TaskInboxRunnable.INSTANCE_START.equals(entry.getKey())) { // a write records its instance start as well
+                total += entry.getValue().getTotalCount();
+            }
+        }
+        assertEquals(1, total); // reset by the results of the previous iterations
+    }
+    
+    @Test
+    public void testAttachToPreparedBacklog() {
+        flowableRule.getRepositoryService().createDeployment().addClasspathResource("taskInbox.bpmn20.xml").deploy();
+        TaskInboxRunnable preparingNode = new TaskInboxRunnable(5, 3, 5, 0.5, 0.0, Arrays.asList(TaskInboxRunnable.COUNT), Arrays.asList(10));
+        preparingNode.prepare();
+        
+        // Writes only: the second of two nodes completes its share of the backlog (2 of the 5 tasks) right away
+        TaskInboxRunnable otherNode = new TaskInboxRunnable(5, 3, 5, 0.5, 0.0, Arrays.asList(TaskInboxRunnable.COUNT), Arrays.asList(10));
+        otherNode.attach(1, 2);
+        runIteration(otherNode);
+        runIteration(otherNode);
+        assertEquals(2, flowableRule.getHistoryService().createHistoricProcessInstanceQuery().finished().count());
+        assertEquals(5, flowableRule.getTaskService().createTaskQuery().count());
+    }
+
+}
@@ -0,0 +1,80 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.flowable.Output.ProcessOutput;
+import org.junit.Test;
+
+public class TestTimeSeries {
+    
+    @Test
+    public void testSteadyStateDetection() throws Exception {
+        TimeSeries timeSeries = new TimeSeries(1000, 3, 0.1);
+        
+        // Slow start, then stable around 100/s, and a partial last window while the last iterations drain
+        int[] completionsPerWindow = { 10, 40, 80, 100, 95, 105, 100, 20 };
+        for (int windowIndex = 0; windowIndex < completionsPerWindow.length; windowIndex++) {
+            Histogram histogram = Output.createHistogram();
+            for (int i = 0; i < completionsPerWindow[windowIndex]; i++) {
+                Output.recordLatency(histogram, TimeUnit.MILLISECONDS.toNanos(windowIndex < 3 ? 50 : 10));
+            }
+            long startTime = TimeUnit.SECONDS.toNanos(windowIndex);
+            long endTime = windowIndex < completionsPerWindow.length - 1 ? TimeUnit.SECONDS.toNanos(windowIndex + 1) : startTime + TimeUnit.MILLISECONDS.toNanos(500);
+            timeSeries.addWindow(startTime, endTime, histogram, windowIndex == completionsPerWindow.length - 1);
+            
+            if (windowIndex == 4) {
+                assertFalse(timeSeries.isSteady());
+            }
+        }
+        
+        assertTrue(timeSeries.isSteady());
+        assertEquals(3, timeSeries.getSteadyStateStartIndex());
+        assertEquals(4, timeSeries.getSteadyStateWindows().size());
+        
+        Output output = new Output("results.csv", Arrays.asList("1"));
+        timeSeries.addResults(output, "test", "1", 550, 7500);
+        ProcessOutput processOutput = output.getProcessOutput("test");
+        assertEquals(100.0, processOutput.getMetric(ProcessOutput.THROUGHPUT)[0], 0.01);
+        assertEquals(10.0, processOutput.getMetric(ProcessOutput.MAX)[0], 0.1);
+        assertEquals(3.0, processOutput.getMetric(TimeSeries.STEADY_STATE_START)[0], 0.001);
+        assertEquals(completionsPerWindow.length, output.getDetails().get("timeseries").size());
+        assertEquals(550, timeSeries.getHistogram().getTotalCount());
+        assertEquals(1, timeSeries.recentHistograms.size()); // only the newest window's histogram is kept after the steady state start
+    }
+    
+    @Test
+    public void testNoSteadyState() throws Exception {
+        TimeSeries timeSeries = new TimeSeries(100, 5, 0.1);
+        timeSeries.start();
+        timeSeries.getRecorder().recordValue(TimeUnit.MILLISECONDS.toNanos(1));
+        Thread.sleep(250);
+        timeSeries.stop();
+        
+        assertFalse(timeSeries.isSteady());
+        assertEquals(1, timeSeries.getHistogram().getTotalCount());
+        
+        Output output = new Output("results.csv", Arrays.asList("1"));
+        timeSeries.addResults(output, "test", "1", 1, 250);
+        assertEquals(-1.0, output.getProcessOutput("test").getMetric(TimeSeries.STEADY_STATE_START)[0], 0.001);
+    }
+
+}
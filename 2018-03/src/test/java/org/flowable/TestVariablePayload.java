@@ -0,0 +1,51 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.flowable.runnable.VariablePayloadRunnable;
+import org.junit.Test;
+
+public class TestVariablePayload extends AbstractTest {
+    
+    @Test
+    public void testAllTypesAndSizes() {
+        flowableRule.getRepositoryService().createDeployment().addClasspathResource("variablePayload.bpmn20.xml").deploy();
+        
+        Benchmark.properties = new Properties();
+        Benchmark.properties.put("payload-sizes", "100,10000");
+        assertEquals(8, VariablePayload.getSweep().size());
+        
+        // Both sizes of every type: the small strings and JSON nodes are stored in the variable row, the large ones as byte arrays
+        for (VariablePayload payload : VariablePayload.getSweep()) {
+            VariablePayloadRunnable runnable = new VariablePayloadRunnable(payload);
+            runIteration(runnable);
+            
+            Output output = new Output("results.csv", Arrays.asList("1"));
+            runnable.addResults(output, "variablePayload", "1", 1);
+            double valueBytes = output.getProcessOutput("variablePayload").getMetric("valueBytes")[0];
+            assertTrue(payload + " : " + valueBytes, valueBytes >= payload.getSize() * 0.9);
+            assertTrue(output.getProcessOutput("variablePayload").getMetric("readAverageMs")[0] > 0);
+        }
+        
+        assertEquals(8, flowableRule.getHistoryService().createHistoricProcessInstanceQuery().finished().count());
+        assertEquals(0, flowableRule.getRuntimeService().createProcessInstanceQuery().count());
+    }
+
+}
@@ -0,0 +1,73 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable.command;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.flowable.Output;
+import org.flowable.command.CommandMetrics.CommandStatistics;
+import org.flowable.engine.ProcessEngine;
+import org.flowable.engine.impl.cfg.StandaloneProcessEngineConfiguration;
+import org.flowable.engine.common.impl.interceptor.CommandInterceptor;
+import org.junit.Test;
+
+public class TestCommandMetrics {
+    
+    @Test
+    public void testCommandBreakdown() {
+        CommandMetrics commandMetrics = new CommandMetrics();
+        StandaloneProcessEngineConfiguration processEngineConfiguration = new StandaloneProcessEngineConfiguration();
+        processEngineConfiguration.setJdbcUrl("jdbc:h2:mem:commandmetrics;DB_CLOSE_DELAY=-1");
+        processEngineConfiguration.setDatabaseSchemaUpdate("drop-create");
+        processEngineConfiguration.setCustomPreCommandInterceptors(Collections.<CommandInterceptor>singletonList(commandMetrics.createTimingInterceptor()));
+        processEngineConfiguration.setCustomPostCommandInterceptors(Collections.<CommandInterceptor>singletonList(commandMetrics.createExecutionTimingInterceptor()));
+        ProcessEngine processEngine = processEngineConfiguration.buildProcessEngine();
+        
+        try {
+            processEngine.getRepositoryService().createDeployment().addClasspathResource("startToEnd.bpmn20.xml").deploy();
+            commandMetrics.reset();
+            
+            for (int i = 0; i < 10; i++) {
+                processEngine.getRuntimeService().startProcessInstanceByKey("startToEnd");
+            }
+            
+            CommandStatistics statistics = null;
+            for (CommandStatistics commandStatistics : commandMetrics.getCommandStatistics()) {
+                if (commandStatistics.getCommandName().equals("StartProcessInstanceCmd")) {
+                    statistics = commandStatistics;
+                }
+            }
+            
+            // Nested commands (e.g. fetching the process definition) are part of the outer one
+            assertEquals(1, commandMetrics.getCommandStatistics().size());
+            assertEquals(10, statistics.getTotal().getTotalCount());
+            assertEquals(10, statistics.getFlush().getTotalCount());
+            assertTrue(statistics.getExecution().getMean() > 0);
+            assertTrue(statistics.getFlush().getMean() > 0);
+            assertTrue(statistics.getTotal().getMean() >= statistics.getExecution().getMean() + statistics.getFlush().getMean());
+            
+            Output output = new Output("results.csv", Arrays.asList("1"));
+            commandMetrics.addResults(output, "startToEnd", "1", 10);
+            assertEquals(1, output.getDetails().get("commands").size());
+            
+        } finally {
+            processEngine.close();
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import org.flowable.Output;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Test;
+
+public class TestJdbcMetrics {
+    
+    @Test
+    public void testStatementsRowsAndBatches() throws Exception {
+        JdbcDataSource h2DataSource = new JdbcDataSource();
+        h2DataSource.setURL("jdbc:h2:mem:jdbcmetrics;DB_CLOSE_DELAY=-1");
+        
+        JdbcMetrics jdbcMetrics = new JdbcMetrics();
+        InstrumentedDataSource dataSource = new InstrumentedDataSource(h2DataSource, jdbcMetrics);
+        
+        try (Connection connection = dataSource.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("create table TEST_TABLE (ID_ int, NAME_ varchar(255))");
+            }
+            jdbcMetrics.reset();
+            
+            // The way MyBatis executes an insert
+            try (PreparedStatement statement = connection.prepareStatement("insert into TEST_TABLE values (?, ?)")) {
+                statement.setInt(1, 1);
+                statement.setString(2, "one");
+                statement.execute();
+                assertEquals(1, statement.getUpdateCount());
+            }
+            
+            try (PreparedStatement statement = connection.prepareStatement("insert into TEST_TABLE values (?, ?)")) {
+                for (int i = 2; i <= 4; i++) {
+                    statement.setInt(1, i);
+                    statement.setString(2, "value");
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+            
+            try (PreparedStatement statement = connection.prepareStatement("update TEST_TABLE set NAME_ = ? where NAME_ = ?")) {
+                statement.setString(1, "other");
+                statement.setString(2, "value");
+                assertEquals(3, statement.executeUpdate());
+            }
+            
+            try (PreparedStatement statement = connection.prepareStatement("select count(*) from TEST_TABLE")) {
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    assertEquals(4, resultSet.getInt(1));
+                }
+            }
+        }
+        
+        assertEquals(2, jdbcMetrics.getStatementCount(JdbcMetrics.INSERT));
+        assertEquals(1, jdbcMetrics.getStatementCount(JdbcMetrics.UPDATE));
+        assertEquals(1, jdbcMetrics.getStatementCount(JdbcMetrics.SELECT));
+        assertEquals(4, jdbcMetrics.getRowCount(JdbcMetrics.INSERT));
+        assertEquals(3, jdbcMetrics.getRowCount(JdbcMetrics.UPDATE));
+        assertEquals(1, jdbcMetrics.getBatchCount());
+        assertEquals(28, jdbcMetrics.getBytesWritten()); // the string parameters of the inserts and the update
+        assertTrue(jdbcMetrics.getJdbcTimeInNanos() > 0);
+        assertEquals(3, jdbcMetrics.getSlowestStatementShapes().size());
+        
+        Output output = new Output("results.csv", Arrays.asList("1"));
+        jdbcMetrics.addResults(output, "test", "1", 2, 1000000.0);
+        assertEquals(1.0, output.getProcessOutput("test").getMetric("sqlInsertsPerInstance")[0], 0.001);
+        assertEquals(2.0, output.getProcessOutput("test").getMetric("rowsInsertedPerInstance")[0], 0.001);
+        assertEquals(3.0, output.getProcessOutput("test").getMetric("averageBatchSize")[0], 0.001);
+        assertEquals(3, output.getDetails().get("statements").size());
+        
+        // Reset in place for the next cell
+        jdbcMetrics.reset();
+        assertEquals(0, jdbcMetrics.getStatementCount(JdbcMetrics.INSERT));
+        assertEquals(0, jdbcMetrics.getRowCount(JdbcMetrics.UPDATE));
+        assertEquals(0, jdbcMetrics.getSlowestStatementShapes().size());
+    }
+
+}
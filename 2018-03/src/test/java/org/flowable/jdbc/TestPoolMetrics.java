@@ -0,0 +1,108 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+import org.flowable.Output;
+import org.flowable.Output.ProcessOutput;
+import org.junit.Test;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+public class TestPoolMetrics {
+
+    @Test
+    public void testAcquisitionWaitAndSamples() throws Exception {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:poolmetrics;DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setMaximumPoolSize(1);
+        PoolMetrics poolMetrics = new PoolMetrics(dataSource, 20);
+
+        try {
+            dataSource.getConnection().close(); // starts the pool
+            poolMetrics.start();
+
+            // The second thread has to wait for the only connection
+            final CountDownLatch borrowed = new CountDownLatch(1);
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    try (Connection connection = dataSource.getConnection()) {
+                        borrowed.countDown();
+                        Thread.sleep(200);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            thread.start();
+            borrowed.await();
+            dataSource.getConnection().close();
+            thread.join();
+
+            Output output = new Output("results.csv", Arrays.asList("2"));
+            poolMetrics.addResults(output, "startToEnd", "2", 2);
+            ProcessOutput processOutput = output.getProcessOutput("startToEnd");
+            assertEquals(1, processOutput.getMetric("poolSize")[0], 0.01);
+            assertEquals(1, processOutput.getMetric("poolAcquiresPerInstance")[0], 0.01);
+            assertTrue(processOutput.getMetric("poolAcquireMaxMs")[0] >= 100);
+            assertTrue(processOutput.getMetric("poolUsageP99Ms")[0] >= 150);
+            assertEquals(1, processOutput.getMetric("poolActiveMax")[0], 0.01);
+            assertEquals(1, processOutput.getMetric("poolPendingMax")[0], 0.01);
+            assertEquals(poolMetrics.getSamples().size(), output.getDetails().get("pool").size());
+
+        } finally {
+            poolMetrics.stop();
+            dataSource.close();
+        }
+    }
+
+    @Test
+    public void testSummaries() throws Exception {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:poolsummaries;DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setMaximumPoolSize(1);
+        PoolMetrics poolMetrics = new PoolMetrics(dataSource, 10);
+        poolMetrics.setSummaryIntervalInMs(100);
+
+        try {
+            dataSource.getConnection().close(); // starts the pool
+            poolMetrics.start();
+            try (Connection connection = dataSource.getConnection()) {
+                Thread.sleep(250);
+            }
+
+            Output output = new Output("results.csv", Arrays.asList("2"));
+            poolMetrics.addResults(output, "startToEnd", "2", 1);
+            assertTrue(poolMetrics.getSamples().isEmpty());
+            assertTrue(poolMetrics.getSummaries().size() >= 3);
+            assertTrue(poolMetrics.getSummaries().get(0).getCount() > 1);
+            assertEquals(poolMetrics.getSummaries().size(), output.getDetails().get("pool-summary").size());
+            assertEquals(null, output.getDetails().get("pool"));
+            assertEquals(1, output.getProcessOutput("startToEnd").getMetric("poolActiveMax")[0], 0.01);
+
+        } finally {
+            poolMetrics.stop();
+            dataSource.close();
+        }
+    }
+
+}
@@ -0,0 +1,173 @@
+/* Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flowable.scenario;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+
+import org.flowable.AbstractTest;
+import org.flowable.Benchmark;
+import org.flowable.engine.repository.DeploymentBuilder;
+import org.flowable.runnable.BatchStartRunnable;
+import org.flowable.runnable.BenchmarkRunnable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TestScenarios extends AbstractTest {
+    
+    protected static final String MODEL = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<definitions xmlns=\"http://www.omg.org/spec/BPMN/20100524/MODEL\" targetNamespace=\"http://www.flowable.org/processdef\">\n"
+            + "  <process id=\"externalModel\" isExecutable=\"true\">\n"
+            + "    <startEvent id=\"start\" />\n"
+            + "    <userTask id=\"first\" />\n"
+            + "    <userTask id=\"second\" />\n"
+            + "    <endEvent id=\"end\" />\n"
+            + "    <sequenceFlow id=\"flow1\" sourceRef=\"start\" targetRef=\"first\" />\n"
+            + "    <sequenceFlow id=\"flow2\" sourceRef=\"first\" targetRef=\"second\" />\n"
+            + "    <sequenceFlow id=\"flow3\" sourceRef=\"second\" targetRef=\"end\" />\n"
+            + "  </process>\n"
+            + "  <process id=\"notExecutable\" isExecutable=\"false\" />\n"
+            + "</definitions>";
+    
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+    
+    protected Properties originalProperties;
+    
+    @Before
+    public void saveProperties() {
+        originalProperties = Benchmark.properties;
+    }
+    
+    @After
+    public void restoreProperties() {
+        Benchmark.properties = originalProperties;
+    }
+    
+    @Test
+    public void testBuiltInAndServiceLoaderScenarios() {
+        Benchmark.properties = new Properties();
+        Map<String, Scenario> scenarios = Scenarios.getScenarios();
+        assertTrue(scenarios.containsKey("startToEnd"));
+        assertTrue(scenarios.containsKey("variablePayload"));
+        assertEquals(LoadedScenario.class, scenarios.get("loaded").getClass());
+        assertTrue(scenarios.get("asyncServiceTasks").isAsync());
+        assertTrue(!scenarios.get("startToEnd").isAsync());
+    }
+    
+    @Test
+    public void testVariants() {
+        Benchmark.properties = new Properties();
+        Benchmark.properties.put("batch-sizes", "5,50");
+        Benchmark.properties.put("definition-cache-limits", "-1,10");
+        Map<String, Scenario> scenarios = Scenarios.getScenarios();
+        
+        Scenario batch = scenarios.get("startToEndBatch");
+        assertEquals(Arrays.asList(5, 50), batch.getVariants());
+        assertEquals("[batch=50]", batch.getVariantName(50));
+        assertEquals(50, ((BatchStartRunnable) batch.createRunnable(50)).getBatchSize());
+        
+        Scenario definitionCache = scenarios.get("definitionCache");
+        assertEquals("[cache=unlimited]", definitionCache.getVariantName(-1));
+        assertEquals(Integer.valueOf(10), definitionCache.getDefinitionCacheLimit(10));
+        
+        // Scenarios without variants run once, with the engine defaults
+        Scenario startToEnd = scenarios.get("startToEnd");
+        assertEquals(Collections.singletonList(null), startToEnd.getVariants());
+        assertEquals("", startToEnd.getVariantName(null));
+        assertNull(startToEnd.getDefinitionCacheLimit(null));
+    }
+    
+    @Test
+    public void testModelsDirectory() throws Exception {
+        File modelsDirectory = temporaryFolder.newFolder("models");
+        Files.write(new File(modelsDirectory, "external.bpmn20.xml").toPath(), MODEL.getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(modelsDirectory, "readme.txt").toPath(), "not a model".getBytes(StandardCharsets.UTF_8));
+        
+        Benchmark.properties = new Properties();
+        Benchmark.properties.put("models-directory", modelsDirectory.getAbsolutePath());
+        Benchmark.properties.put("scenario.externalModel.variable-generator", CountingVariableGenerator.class.getName());
+        
+        Map<String, Scenario> scenarios = Scenarios.getScenarios();
+        assertTrue(scenarios.containsKey("externalModel"));
+        assertTrue(!scenarios.containsKey("notExecutable"));
+        
+        DeploymentBuilder deploymentBuilder = flowableRule.getRepositoryService().createDeployment();
+        Scenarios.addResources(deploymentBuilder);
+        deploymentBuilder.deploy();
+        
+        // The generic driver starts the instance with the generated variables and completes both user tasks
+        BenchmarkRunnable runnable = scenarios.get("externalModel").createRunnable(null);
+        runIteration(runnable);
+        runIteration(runnable);
+        assertEquals(2, flowableRule.getHistoryService().createHistoricProcessInstanceQuery().processDefinitionKey("externalModel").finished().count());
+        assertEquals(2, flowableRule.getHistoryService().createHistoricVariableInstanceQuery().variableName("counter").count());
+        
+        runIteration(new LoadedScenario().createRunnable(null));
+        assertEquals(1, flowableRule.getHistoryService().createHistoricProcessInstanceQuery().processDefinitionKey("startToEnd").finished().count());
+    }
+    
+    @Test(expected = RuntimeException.class)
+    public void testModelWithDoctype() throws Exception {
+        File model = temporaryFolder.newFile("doctype.bpmn20.xml");
+        String doctype = "<!DOCTYPE definitions [ <!ENTITY secret SYSTEM \"file:///etc/hostname\"> ]>\n";
+        Files.write(model.toPath(), MODEL.replace("<definitions", doctype + "<definitions").getBytes(StandardCharsets.UTF_8));
+        
+        Scenarios.getExecutableProcessKeys(model);
+    }
+    
+    public static class LoadedScenario extends ClasspathScenario {
+        
+        public LoadedScenario() {
+            super("loaded", "startToEnd.bpmn20.xml");
+        }
+        
+        public BenchmarkRunnable createRunnable(Object variant) {
+            return new BenchmarkRunnable() {
+                
+                protected void executeRun() {
+                    Benchmark.runtimeService.startProcessInstanceByKey("startToEnd");
+                }
+                
+                public String getDescription() {
+                    return "loaded";
+                }
+            };
+        }
+        
+    }
+    
+    public static class CountingVariableGenerator implements VariableGenerator {
+        
+        protected int counter;
+        
+        public synchronized Map<String, Object> createVariables() {
+            return Collections.<String, Object>singletonMap("counter", ++counter);
+        }
+        
+    }
+
+}